@@ -0,0 +1,45 @@
+package io.github.kjrg.mgr.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and saves the results in the JSON format of JMH, so
+ * that the results of different versions can be compared. The results include
+ * the allocation rate and the GC time (gc.alloc.rate.norm, gc.time).
+ *
+ * Usage: BenchmarkRunner [result_filepath [benchmark_regex ...]]
+ *
+ * The options of JMH itself (java -jar benchmarks.jar -h) are not available
+ * here, the main class of JMH can be used for them instead:
+ * java -cp benchmarks.jar org.openjdk.jmh.Main
+ *
+ * @author Krzysztof Gałka
+ */
+public class BenchmarkRunner {
+
+	private static final String DEFAULT_RESULT_FILEPATH = "benchmark_results.json";
+
+	public static void main(String[] args) throws RunnerException {
+		String resultFilepath = args.length > 0 ? args[0] : DEFAULT_RESULT_FILEPATH;
+
+		ChainedOptionsBuilder options = new OptionsBuilder()
+				.resultFormat(ResultFormatType.JSON)
+				.result(resultFilepath)
+				.addProfiler(GCProfiler.class);
+		if (args.length > 1) {
+			for (int i = 1; i < args.length; i++) {
+				options.include(args[i]);
+			}
+		} else {
+			options.include(BenchmarkRunner.class.getPackage().getName() + ".*Benchmark");
+		}
+
+		new Runner(options.build()).run();
+		System.out.println("Results saved to " + resultFilepath);
+	}
+}
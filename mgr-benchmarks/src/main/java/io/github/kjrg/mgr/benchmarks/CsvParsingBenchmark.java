@@ -0,0 +1,70 @@
+package io.github.kjrg.mgr.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.datavec.api.records.reader.RecordReader;
+import org.datavec.api.records.reader.impl.csv.CSVRecordReader;
+import org.datavec.api.split.FileSplit;
+import org.deeplearning4j.datasets.datavec.RecordReaderDataSetIterator;
+import org.nd4j.linalg.dataset.DataSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.kjrg.mgr.NumericCsvReader;
+
+/**
+ * Parsing of a whole CSV file, with the CSVRecordReader of DataVec (as before)
+ * and with the NumericCsvReader (as in DataProvider.readDatasetFromFile). The
+ * score is the number of files parsed per second.
+ *
+ * @author Krzysztof Gałka
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CsvParsingBenchmark {
+
+	private static final char SEPARATOR = ';';
+
+	@Param({ "10000", "100000" })
+	private int numberOfRows;
+
+	@Param({ "13", "200" })
+	private int numberOfInputs;
+
+	private File file;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		file = SyntheticData.createCsvFile(numberOfRows, numberOfInputs);
+	}
+
+	@Benchmark
+	public DataSet readWithRecordReader() throws IOException, InterruptedException {
+		RecordReader recordReader = new CSVRecordReader(0, String.valueOf(SEPARATOR));
+		recordReader.initialize(new FileSplit(file));
+		return new RecordReaderDataSetIterator(recordReader, numberOfRows, numberOfInputs,
+				SyntheticData.NUMBER_OF_CLASSES).next();
+	}
+
+	@Benchmark
+	public DataSet readWithNumericCsvReader() throws IOException {
+		return new NumericCsvReader(SEPARATOR, 0).read(file.getPath(), numberOfRows, numberOfInputs,
+				SyntheticData.NUMBER_OF_CLASSES);
+	}
+}
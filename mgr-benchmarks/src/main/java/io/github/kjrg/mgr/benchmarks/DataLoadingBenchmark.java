@@ -0,0 +1,69 @@
+package io.github.kjrg.mgr.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.nd4j.linalg.dataset.DataSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.kjrg.mgr.DataProvider;
+import io.github.kjrg.mgr.DatasetCache;
+
+/**
+ * Loading of a dataset with DataProvider.readDatasetFromFile, from the CSV
+ * file and from the binary cache.
+ *
+ * @author Krzysztof Gałka
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DataLoadingBenchmark {
+
+	@Param({ "1000", "10000", "100000" })
+	private int numberOfRows;
+
+	@Param({ "false", "true" })
+	private boolean cached;
+
+	private String filepath;
+	private DataProvider dataProvider;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, InterruptedException {
+		File file = SyntheticData.createCsvFile(numberOfRows);
+		filepath = file.getPath();
+
+		if (cached) {
+			File cacheDirectory = Files.createTempDirectory("mgr_benchmark_cache_").toFile();
+			cacheDirectory.deleteOnExit();
+			dataProvider = new DataProvider(new DatasetCache(cacheDirectory.getPath()));
+			// Fill the cache before measuring
+			readDataset();
+		} else {
+			dataProvider = new DataProvider();
+		}
+	}
+
+	@Benchmark
+	public DataSet readDataset() throws IOException, InterruptedException {
+		return dataProvider.readDatasetFromFile(filepath, numberOfRows, SyntheticData.LABEL_COLUMN_INDEX,
+				SyntheticData.NUMBER_OF_CLASSES);
+	}
+}
@@ -0,0 +1,87 @@
+package io.github.kjrg.mgr.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.deeplearning4j.eval.Evaluation;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.kjrg.mgr.ConfusionMatrixAccumulator;
+import io.github.kjrg.mgr.NeuralNetworkConfigurationProvider;
+import io.github.kjrg.mgr.ParallelEvaluator;
+import io.github.kjrg.mgr.TestRunner;
+
+/**
+ * Inference of a trained network (model.output) and its evaluation on the
+ * test dataset, in chunks on a single thread (TestRunner.evaluate) and on
+ * several threads (ParallelEvaluator).
+ *
+ * @author Krzysztof Gałka
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EvaluationBenchmark {
+
+	private static final int NUMBER_OF_TRAINING_EPOCHS = 5;
+	private static final int NUMBER_OF_EVALUATION_THREADS = 4;
+
+	@Param({ "100", "1000", "10000" })
+	private int numberOfRows;
+
+	@Param({ "13", "200" })
+	private int numberOfNeuronsInHiddenLayer;
+
+	private TestRunner testRunner;
+	private DataSet dataset;
+	private MultiLayerNetwork model;
+	private ParallelEvaluator parallelEvaluator;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		testRunner = new TestRunner();
+		dataset = SyntheticData.createDataset(numberOfRows);
+
+		MultiLayerConfiguration configuration = new NeuralNetworkConfigurationProvider()
+				.readConfigurationGridFromProperties(
+						SyntheticData.createConfigurationProperties(numberOfNeuronsInHiddenLayer, "tanh", "sgd"))
+				.get(0);
+		model = testRunner.createModel(configuration);
+		testRunner.train(model, dataset, NUMBER_OF_TRAINING_EPOCHS);
+		parallelEvaluator = new ParallelEvaluator(ParallelEvaluator.DEFAULT_CHUNK_SIZE,
+				NUMBER_OF_EVALUATION_THREADS);
+	}
+
+	@Benchmark
+	public INDArray output() {
+		return model.output(dataset.getFeatureMatrix(), false);
+	}
+
+	@Benchmark
+	public Evaluation evaluate() {
+		return testRunner.evaluate(model, dataset, SyntheticData.NUMBER_OF_CLASSES);
+	}
+
+	@Benchmark
+	public ConfusionMatrixAccumulator evaluateInParallel() {
+		return parallelEvaluator.evaluate(model, dataset.getFeatureMatrix(), dataset.getLabels(),
+				SyntheticData.NUMBER_OF_CLASSES);
+	}
+}
@@ -0,0 +1,71 @@
+package io.github.kjrg.mgr.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.dataset.DataSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.kjrg.mgr.NeuralNetworkConfigurationProvider;
+import io.github.kjrg.mgr.ParameterPool;
+import io.github.kjrg.mgr.TestRunner;
+
+/**
+ * Creation of a network followed by a short training, as in a sweep of many
+ * small networks, with and without the pool of the parameter buffers. The
+ * allocation rate is reported by the GC profiler of the BenchmarkRunner.
+ *
+ * @author Krzysztof Gałka
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModelCreationBenchmark {
+
+	@Param({ "100" })
+	private int numberOfRows;
+
+	@Param({ "13", "200" })
+	private int numberOfNeuronsInHiddenLayer;
+
+	@Param({ "false", "true" })
+	private boolean pooled;
+
+	private TestRunner testRunner;
+	private DataSet dataset;
+	private MultiLayerConfiguration configuration;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		testRunner = new TestRunner(null, pooled ? new ParameterPool() : null, null, null, null, null);
+		dataset = SyntheticData.createDataset(numberOfRows);
+		configuration = new NeuralNetworkConfigurationProvider()
+				.readConfigurationGridFromProperties(SyntheticData.createConfigurationProperties(
+						numberOfNeuronsInHiddenLayer, "tanh", "sgd"))
+				.get(0);
+	}
+
+	@Benchmark
+	public double createAndTrainModel() {
+		MultiLayerNetwork model = testRunner.createModel(configuration);
+		testRunner.train(model, dataset, 1);
+		double score = model.score();
+		testRunner.releaseModel(model);
+		return score;
+	}
+}
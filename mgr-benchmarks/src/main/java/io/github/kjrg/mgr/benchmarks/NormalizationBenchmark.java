@@ -0,0 +1,68 @@
+package io.github.kjrg.mgr.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.preprocessor.NormalizerStandardize;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Fitting of the NormalizerStandardize and the transformation of a dataset
+ * with it.
+ *
+ * The transformation works in place, so it is applied to a copy of the
+ * dataset. The cost of the copy alone is measured by copyDataset.
+ *
+ * @author Krzysztof Gałka
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NormalizationBenchmark {
+
+	@Param({ "1000", "10000", "100000" })
+	private int numberOfRows;
+
+	private DataSet dataset;
+	private NormalizerStandardize fittedNormalizer;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		dataset = SyntheticData.createDataset(numberOfRows);
+		fittedNormalizer = new NormalizerStandardize();
+		fittedNormalizer.fit(dataset);
+	}
+
+	@Benchmark
+	public NormalizerStandardize fit() {
+		NormalizerStandardize normalizer = new NormalizerStandardize();
+		normalizer.fit(dataset);
+		return normalizer;
+	}
+
+	@Benchmark
+	public DataSet transform() {
+		DataSet copy = dataset.copy();
+		fittedNormalizer.transform(copy);
+		return copy;
+	}
+
+	@Benchmark
+	public DataSet copyDataset() {
+		return dataset.copy();
+	}
+}
@@ -0,0 +1,90 @@
+package io.github.kjrg.mgr.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.nd4j.linalg.dataset.DataSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.kjrg.mgr.NeuralNetworkConfigurationProvider;
+import io.github.kjrg.mgr.PopulationTrainer;
+import io.github.kjrg.mgr.TestRunner;
+import io.github.kjrg.mgr.dto.TestResultDTO;
+
+/**
+ * Training and testing of a group of small networks of the same shape, one by
+ * one with the TestRunner and at once with the PopulationTrainer. The time is
+ * the time of the whole group.
+ *
+ * @author Krzysztof Gałka
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PopulationTrainingBenchmark {
+
+	private static final int NUMBER_OF_EPOCHS = 10;
+
+	@Param({ "300" })
+	private int numberOfRows;
+
+	@Param({ "13" })
+	private int numberOfNeuronsInHiddenLayer;
+
+	@Param({ "4", "16", "64" })
+	private int populationSize;
+
+	private TestRunner testRunner;
+	private PopulationTrainer populationTrainer;
+	private DataSet dataset;
+	private List<MultiLayerConfiguration> configurations;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		testRunner = new TestRunner();
+		populationTrainer = new PopulationTrainer(testRunner, null);
+		dataset = SyntheticData.createDataset(numberOfRows);
+
+		// The networks differ in the updater, as the neighbours in the grid
+		String[] updaters = { "sgd", "nesterovs", "adam", "adadelta" };
+		configurations = new ArrayList<>();
+		for (int i = 0; i < populationSize; i++) {
+			configurations.add(new NeuralNetworkConfigurationProvider()
+					.readConfigurationGridFromProperties(SyntheticData.createConfigurationProperties(
+							numberOfNeuronsInHiddenLayer, "tanh", updaters[i % updaters.length]))
+					.get(0));
+		}
+	}
+
+	@Benchmark
+	public List<TestResultDTO> trainOneByOne() {
+		List<TestResultDTO> results = new ArrayList<>();
+		for (MultiLayerConfiguration configuration : configurations) {
+			results.add(testRunner.runTest(dataset, dataset, configuration, NUMBER_OF_EPOCHS,
+					SyntheticData.NUMBER_OF_CLASSES));
+		}
+		return results;
+	}
+
+	@Benchmark
+	public List<TestResultDTO> trainPopulation() {
+		return populationTrainer.runTest(dataset, null, dataset, configurations, NUMBER_OF_EPOCHS,
+				SyntheticData.NUMBER_OF_CLASSES);
+	}
+}
@@ -0,0 +1,126 @@
+package io.github.kjrg.mgr.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.deeplearning4j.eval.Evaluation;
+import org.deeplearning4j.nn.conf.Updater;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.kjrg.mgr.ColumnarResultSink;
+import io.github.kjrg.mgr.JsonLinesResultSink;
+import io.github.kjrg.mgr.ReportCreator;
+import io.github.kjrg.mgr.ResultSink;
+import io.github.kjrg.mgr.dto.ExperimentInfoDTO;
+
+/**
+ * Creation of the XLSX report with ReportCreator.createReport and writing the
+ * results with the JSON lines and the columnar sinks, for several numbers of
+ * rows.
+ *
+ * @author Krzysztof Gałka
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReportBenchmark {
+
+	private static final int NUMBER_OF_EVALUATED_EXAMPLES = 100;
+	private static final String[] ACTIVATION_FUNCTIONS = { "tanh", "relu", "sigmoid", "softmax" };
+
+	@Param({ "100", "1000", "10000" })
+	private int numberOfRows;
+
+	private List<ExperimentInfoDTO> experimentResults;
+	private File outputDirectory;
+	private ReportCreator reportCreator;
+	private int sinkCounter;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		Random random = new Random(SyntheticData.SEED);
+		Updater[] updaters = Updater.values();
+
+		experimentResults = new ArrayList<>();
+		for (int i = 0; i < numberOfRows; i++) {
+			Evaluation evaluation = new Evaluation(SyntheticData.NUMBER_OF_CLASSES);
+			for (int j = 0; j < NUMBER_OF_EVALUATED_EXAMPLES; j++) {
+				evaluation.eval(random.nextInt(SyntheticData.NUMBER_OF_CLASSES),
+						random.nextInt(SyntheticData.NUMBER_OF_CLASSES));
+			}
+			experimentResults.add(new ExperimentInfoDTO(1 + random.nextInt(SyntheticData.NUMBER_OF_INPUTS),
+					ACTIVATION_FUNCTIONS[random.nextInt(ACTIVATION_FUNCTIONS.length)],
+					updaters[random.nextInt(updaters.length)], 1 + random.nextInt(100), evaluation));
+		}
+
+		outputDirectory = Files.createTempDirectory("mgr_benchmark_report_").toFile();
+		reportCreator = new ReportCreator();
+	}
+
+	@TearDown(Level.Iteration)
+	public void deleteReports() {
+		File[] reports = outputDirectory.listFiles();
+		if (reports != null) {
+			for (File report : reports) {
+				File[] columns = report.listFiles();
+				if (columns != null) {
+					for (File column : columns) {
+						column.delete();
+					}
+				}
+				report.delete();
+			}
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		deleteReports();
+		outputDirectory.delete();
+	}
+
+	@Benchmark
+	public void createReport() throws IOException {
+		reportCreator.createReport(experimentResults, outputDirectory.getPath());
+	}
+
+	@Benchmark
+	public void writeJsonLines() throws IOException {
+		File file = new File(outputDirectory, "results_" + sinkCounter++ + ".jsonl");
+		writeResults(new JsonLinesResultSink(file.getPath()));
+	}
+
+	@Benchmark
+	public void writeColumnar() throws IOException {
+		File file = new File(outputDirectory, "results_" + sinkCounter++ + "_columns");
+		writeResults(new ColumnarResultSink(file.getPath()));
+	}
+
+	private void writeResults(ResultSink sink) throws IOException {
+		try (ResultSink openedSink = sink) {
+			for (ExperimentInfoDTO result : experimentResults) {
+				openedSink.append(result);
+			}
+		}
+	}
+}
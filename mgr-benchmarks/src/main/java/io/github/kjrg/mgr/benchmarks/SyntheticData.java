@@ -0,0 +1,122 @@
+package io.github.kjrg.mgr.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Random;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+
+/**
+ * Synthetic data of the same shape as the heart disease dataset, so that the
+ * benchmarks do not depend on the files of the experiments.
+ *
+ * @author Krzysztof Gałka
+ */
+final class SyntheticData {
+
+	static final int NUMBER_OF_INPUTS = 13;
+	static final int NUMBER_OF_CLASSES = 2;
+	static final int LABEL_COLUMN_INDEX = NUMBER_OF_INPUTS;
+	static final long SEED = 123;
+
+	private static final String SEPARATOR = ";";
+
+	private SyntheticData() {
+	}
+
+	/**
+	 * Create a dataset with random features and random labels.
+	 *
+	 * @param numberOfExamples number of examples
+	 * @return the dataset
+	 */
+	static DataSet createDataset(int numberOfExamples) {
+		Random random = new Random(SEED);
+		INDArray features = Nd4j.zeros(numberOfExamples, NUMBER_OF_INPUTS);
+		INDArray labels = Nd4j.zeros(numberOfExamples, NUMBER_OF_CLASSES);
+		for (int i = 0; i < numberOfExamples; i++) {
+			for (int j = 0; j < NUMBER_OF_INPUTS; j++) {
+				features.putScalar(i, j, createFeature(random, j));
+			}
+			labels.putScalar(i, random.nextInt(NUMBER_OF_CLASSES), 1.0);
+		}
+		return new DataSet(features, labels);
+	}
+
+	/**
+	 * Write a CSV file in the format read by the DataProvider, the label is in
+	 * the last column.
+	 *
+	 * @param numberOfExamples number of rows
+	 * @return the file, deleted on exit
+	 * @throws IOException
+	 */
+	static File createCsvFile(int numberOfExamples) throws IOException {
+		return createCsvFile(numberOfExamples, NUMBER_OF_INPUTS);
+	}
+
+	/**
+	 * Write a CSV file with the given number of features, the label is in the
+	 * last column.
+	 *
+	 * @param numberOfExamples number of rows
+	 * @param numberOfInputs number of features
+	 * @return the file, deleted on exit
+	 * @throws IOException
+	 */
+	static File createCsvFile(int numberOfExamples, int numberOfInputs) throws IOException {
+		File file = File.createTempFile("mgr_benchmark_", ".csv");
+		file.deleteOnExit();
+
+		Random random = new Random(SEED);
+		try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+			StringBuilder line = new StringBuilder();
+			for (int i = 0; i < numberOfExamples; i++) {
+				line.setLength(0);
+				for (int j = 0; j < numberOfInputs; j++) {
+					line.append(String.format(Locale.ROOT, "%.1f", createFeature(random, j))).append(SEPARATOR);
+				}
+				line.append(random.nextInt(NUMBER_OF_CLASSES));
+				writer.println(line);
+			}
+		}
+		return file;
+	}
+
+	/**
+	 * Create the properties of a grid containing a single configuration.
+	 *
+	 * @param numberOfNeuronsInHiddenLayer number of neurons in the hidden layer
+	 * @param activationFunction activation function of the hidden layer
+	 * @param updater updater
+	 * @return the properties read by the NeuralNetworkConfigurationProvider
+	 */
+	static Properties createConfigurationProperties(int numberOfNeuronsInHiddenLayer, String activationFunction,
+			String updater) {
+		Properties properties = new Properties();
+		properties.setProperty("network_architecture.number_of_inputs", String.valueOf(NUMBER_OF_INPUTS));
+		properties.setProperty("network_architecture.numbers_of_neurons_in_hidden_layer",
+				String.valueOf(numberOfNeuronsInHiddenLayer));
+		properties.setProperty("network_architecture.number_of_outputs", String.valueOf(NUMBER_OF_CLASSES));
+		properties.setProperty("seed", String.valueOf(SEED));
+		// A single iteration per fit, so that an epoch is a single pass over the data
+		properties.setProperty("iterations", "1");
+		properties.setProperty("learning_rate", "0.05");
+		properties.setProperty("activation_functions", activationFunction);
+		properties.setProperty("updaters", updater);
+		return properties;
+	}
+
+	/*
+	 * Values in ranges similar to the attributes of the real dataset (age,
+	 * blood pressure, cholesterol, ...), so that the normalization matters.
+	 */
+	private static double createFeature(Random random, int column) {
+		return (column + 1) * 10.0 * random.nextDouble();
+	}
+}
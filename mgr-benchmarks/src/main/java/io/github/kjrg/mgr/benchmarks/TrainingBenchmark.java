@@ -0,0 +1,71 @@
+package io.github.kjrg.mgr.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.dataset.DataSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.kjrg.mgr.NeuralNetworkConfigurationProvider;
+import io.github.kjrg.mgr.TestRunner;
+
+/**
+ * A single training epoch of a network, as run by the TestRunner, across the
+ * sizes of the hidden layer and the updaters.
+ *
+ * @author Krzysztof Gałka
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TrainingBenchmark {
+
+	@Param({ "1000" })
+	private int numberOfRows;
+
+	@Param({ "5", "13", "50", "200" })
+	private int numberOfNeuronsInHiddenLayer;
+
+	@Param({ "sgd", "nesterovs", "adam", "adadelta" })
+	private String updater;
+
+	@Param({ "tanh" })
+	private String activationFunction;
+
+	private TestRunner testRunner;
+	private DataSet dataset;
+	private MultiLayerNetwork model;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		testRunner = new TestRunner();
+		dataset = SyntheticData.createDataset(numberOfRows);
+
+		MultiLayerConfiguration configuration = new NeuralNetworkConfigurationProvider()
+				.readConfigurationGridFromProperties(SyntheticData.createConfigurationProperties(
+						numberOfNeuronsInHiddenLayer, activationFunction, updater))
+				.get(0);
+		model = testRunner.createModel(configuration);
+	}
+
+	@Benchmark
+	public MultiLayerNetwork trainEpoch() {
+		testRunner.train(model, dataset, 1);
+		return model;
+	}
+}
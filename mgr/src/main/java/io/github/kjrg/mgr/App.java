@@ -1,120 +1,836 @@
-package io.github.kjrg.mgr;
-
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Properties;
-
-import org.deeplearning4j.eval.Evaluation;
-import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
-import org.nd4j.linalg.dataset.DataSet;
-import org.nd4j.linalg.dataset.api.preprocessor.DataNormalization;
-import org.nd4j.linalg.dataset.api.preprocessor.NormalizerStandardize;
-
-import io.github.kjrg.mgr.dto.ExperimentInfoDTO;
-
-/**
- * Main class of application.
- * 
- * @author Krzysztof Gaka
- */
-public class App {
-
-	private static final String DEFAULT_CONFIGURATION_FILEPATH = "configuration.properties";
-	private static final String DEFAULT_DIRECTORY_PATH_FOR_REPORT = "";
-	
-	public static void main(String[] args) {
-		
-		System.out.println("Starting the application...");
-		Integer numberOfClasses = null;
-		Integer numberOfEpochs = null;
-		String outputDirectoryPath = DEFAULT_DIRECTORY_PATH_FOR_REPORT;
-
-		Properties properties = null;
-        DataSet trainDataset = null;
-    	DataSet testDataset = null;
-    	String configurationFilepath = (args[0] == null || args[0].isEmpty()) ? DEFAULT_CONFIGURATION_FILEPATH : args[0];
-    	
-		try(FileInputStream fileInputStream = new FileInputStream(configurationFilepath)) {
-			/*
-			 * Load configuration.
-			 */
-			System.out.println("Loading configuration from " + configurationFilepath);
-			properties = new Properties();
-			properties.load(fileInputStream);
-			
-			String trainingDatasetFilepath = properties.getProperty("data.training_dataset_filepath");
-			String testDatasetFilepath = properties.getProperty("data.test_dataset_filepath");
-			int trainingDatasetSize = Integer.parseInt(properties.getProperty("data.training_dataset_size"));
-			int testDatasetSize = Integer.parseInt(properties.getProperty("data.test_dataset_size"));
-			int labelColumnIndex = Integer.parseInt(properties.getProperty("data.label_column_index"));
-			numberOfClasses = Integer.parseInt(properties.getProperty("data.number_of_labels"));
-			numberOfEpochs = Integer.parseInt(properties.getProperty("number_of_epochs"));
-			outputDirectoryPath = properties.getProperty("report_directory_path");
-			
-			/*
-			 * Load data.
-			 */
-			DataProvider dataProvider = new DataProvider();
-			
-			System.out.println("Loading training data from " + trainingDatasetFilepath);
-			trainDataset = dataProvider.readDatasetFromFile(trainingDatasetFilepath, trainingDatasetSize, labelColumnIndex, numberOfClasses);
-			System.out.println("Loading test data from " + testDatasetFilepath);
-			testDataset = dataProvider.readDatasetFromFile(testDatasetFilepath, testDatasetSize, labelColumnIndex, numberOfClasses);
-
-			if (trainDataset == null) {
-				System.err.println("The training data could not be read.");
-				System.exit(1);
-			}
-			if (testDataset == null) {
-				System.err.println("The test data could not be read.");
-				System.exit(1);
-			}
-		} catch (IOException | InterruptedException e) {
-			e.printStackTrace();
-			System.exit(1);
-		}
-
-		/*
-		 * Normalize data.
-		 */
-		DataNormalization normalizer = new NormalizerStandardize();
-		normalizer.fit(trainDataset);
-		normalizer.transform(trainDataset);
-		normalizer.transform(testDataset);
-		
-		/*
-		 * Get list of neural network configurations for experiments.
-		 */
-		NeuralNetworkConfigurationProvider neuralNetworkConfigurationProvider = new NeuralNetworkConfigurationProvider();
-		List<MultiLayerConfiguration> neuralNetworkConfigurations =
-				neuralNetworkConfigurationProvider.readConfigurationsFromProperties(properties);
-		
-		/*
-		 * Run experiments.
-		 */
-		TestRunner testRunner = new TestRunner();
-		ExperimentInfoCreator experimentInfoCreator = new ExperimentInfoCreator();
-		List<ExperimentInfoDTO> experimentResultList = new ArrayList<>();
-
-		for (MultiLayerConfiguration configuration : neuralNetworkConfigurations) {	
-			Evaluation result = testRunner.runTest(trainDataset, testDataset, configuration, numberOfEpochs, numberOfClasses);
-			ExperimentInfoDTO experimentResult = experimentInfoCreator.createInfo(configuration, result);
-			experimentResultList.add(experimentResult);
-			System.out.println(System.lineSeparator() + experimentResult.getInformationText());
-		}
-		
-		/*
-		 * Create report.
-		 */
-		ReportCreator reportCreator = new ReportCreator();
-		try {
-			System.out.println(System.lineSeparator() + "Saving report");
-			reportCreator.createReport(experimentResultList, outputDirectoryPath);
-			System.out.println("Report saved in directory " + outputDirectoryPath);
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-	}
-}
+package io.github.kjrg.mgr;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.SplitTestAndTrain;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+
+import io.github.kjrg.mgr.dto.ExperimentInfoDTO;
+import io.github.kjrg.mgr.dto.TestResultDTO;
+
+/**
+ * Main class of application.
+ * 
+ * @author Krzysztof Gałka
+ */
+public class App {
+
+	private static final String DEFAULT_CONFIGURATION_FILEPATH = "configuration.properties";
+	private static final String DEFAULT_DIRECTORY_PATH_FOR_REPORT = "";
+	private static final String GRID_SEARCH_MODE = "grid";
+	private static final String SUCCESSIVE_HALVING_SEARCH_MODE = "successive_halving";
+	private static final String CROSS_VALIDATION_SEARCH_MODE = "cross_validation";
+	private static final String DISTRIBUTED_SEARCH_MODE = "distributed";
+	private static final String DL4J_TRAINING_ENGINE = "dl4j";
+	private static final String POPULATION_TRAINING_ENGINE = "population";
+	private static final String COST_SCHEDULING_ORDER = "cost";
+	private static final long BYTES_IN_MEGABYTE = 1024 * 1024;
+	
+	public static void main(String[] args) {
+		
+		System.out.println("Starting the application...");
+		long startTime = System.currentTimeMillis();
+		Integer numberOfClasses = null;
+		Integer numberOfEpochs = null;
+		int numberOfWorkers = 1;
+		int numberOfThreadsPerWorker = 0;
+		int miniBatchSize = 0;
+		int labelColumnIndex = 0;
+		String trainingDatasetFilepath = null;
+		String testDatasetFilepath = null;
+		String validationDatasetFilepath = null;
+		EarlyStoppingSettings earlyStoppingSettings = null;
+		String outputDirectoryPath = DEFAULT_DIRECTORY_PATH_FOR_REPORT;
+
+		Properties properties = null;
+        DataSet trainDataset = null;
+    	DataSet testDataset = null;
+		DataSet validationDataset = null;
+		DataSet crossValidationDataset = null;
+		DataProvider dataProvider = null;
+		StandardizationStatistics normalizationStatistics = null;
+		int prefetchDepth = 0;
+    	String configurationFilepath = (args[0] == null || args[0].isEmpty()) ? DEFAULT_CONFIGURATION_FILEPATH : args[0];
+    	
+		try(FileInputStream fileInputStream = new FileInputStream(configurationFilepath)) {
+			/*
+			 * Load configuration.
+			 */
+			System.out.println("Loading configuration from " + configurationFilepath);
+			properties = new Properties();
+			properties.load(fileInputStream);
+			
+			trainingDatasetFilepath = properties.getProperty("data.training_dataset_filepath");
+			testDatasetFilepath = properties.getProperty("data.test_dataset_filepath");
+			labelColumnIndex = Integer.parseInt(properties.getProperty("data.label_column_index"));
+			miniBatchSize = Integer.parseInt(properties.getProperty("data.mini_batch_size", "0"));
+			numberOfClasses = Integer.parseInt(properties.getProperty("data.number_of_labels"));
+			numberOfEpochs = Integer.parseInt(properties.getProperty("number_of_epochs"));
+			outputDirectoryPath = properties.getProperty("report_directory_path");
+			numberOfWorkers = Integer.parseInt(properties.getProperty("number_of_workers", "1"));
+			numberOfThreadsPerWorker = Integer.parseInt(properties.getProperty("number_of_threads_per_worker", "0"));
+			String datasetCacheDirectoryPath = properties.getProperty("data.cache_directory_path", "");
+			validationDatasetFilepath = properties.getProperty("data.validation_dataset_filepath", "");
+			System.out.println("Data type: " + DataTypes.getName(
+					DataTypes.apply(properties.getProperty("data_type", DataTypes.DEFAULT_DATA_TYPE))));
+			prefetchDepth = Integer.parseInt(properties.getProperty("data.prefetch_depth", "2"));
+			earlyStoppingSettings = readEarlyStoppingSettings(properties);
+			
+			/*
+			 * Load data.
+			 */
+			dataProvider = datasetCacheDirectoryPath.isEmpty()
+					? new DataProvider()
+					: new DataProvider(new DatasetCache(datasetCacheDirectoryPath));
+
+			if (miniBatchSize > 0) {
+				/*
+				 * Streaming mode - the data is read in mini-batches for every
+				 * experiment, only the normalization statistics are computed
+				 * up front.
+				 */
+				System.out.println("Reading data in mini-batches of " + miniBatchSize + " rows");
+				System.out.println("Computing normalization statistics from " + trainingDatasetFilepath);
+				DataSetIterator statisticsIterator = dataProvider.readDatasetIteratorFromFile(
+						trainingDatasetFilepath, miniBatchSize, labelColumnIndex, numberOfClasses);
+				if (prefetchDepth > 0) {
+					statisticsIterator = new PrefetchingDataSetIterator(statisticsIterator, prefetchDepth);
+				}
+				normalizationStatistics = StandardizationStatistics.fit(statisticsIterator);
+
+				if (earlyStoppingSettings != null && validationDatasetFilepath.isEmpty()) {
+					System.out.println("Warning: no validation dataset was provided (data.validation_dataset_filepath),"
+							+ " only the training time limit will be used for early stopping");
+				}
+			} else {
+				int trainingDatasetSize = Integer.parseInt(properties.getProperty("data.training_dataset_size"));
+				int testDatasetSize = Integer.parseInt(properties.getProperty("data.test_dataset_size"));
+
+				System.out.println("Loading training data from " + trainingDatasetFilepath);
+				trainDataset = dataProvider.readDatasetFromFile(trainingDatasetFilepath, trainingDatasetSize, labelColumnIndex, numberOfClasses);
+				System.out.println("Loading test data from " + testDatasetFilepath);
+				testDataset = dataProvider.readDatasetFromFile(testDatasetFilepath, testDatasetSize, labelColumnIndex, numberOfClasses);
+
+				if (trainDataset == null) {
+					System.err.println("The training data could not be read.");
+					System.exit(1);
+				}
+				if (testDataset == null) {
+					System.err.println("The test data could not be read.");
+					System.exit(1);
+				}
+
+				if (CROSS_VALIDATION_SEARCH_MODE.equals(properties.getProperty("search_mode", GRID_SEARCH_MODE))) {
+					/*
+					 * The folds of the cross-validation are drawn from all
+					 * the examples and every fold is normalized separately.
+					 */
+					crossValidationDataset = DataSet.merge(Arrays.asList(trainDataset, testDataset));
+					System.out.println("Cross-validating on " + crossValidationDataset.numExamples() + " examples");
+				} else {
+					/*
+					 * Normalize data.
+					 */
+					normalizationStatistics = dataProvider.readStandardizationStatistics(trainingDatasetFilepath,
+							trainDataset, labelColumnIndex, numberOfClasses);
+					normalizationStatistics.transform(trainDataset);
+					normalizationStatistics.transform(testDataset);
+
+					/*
+					 * Hold out the validation data for early stopping.
+					 */
+					if (earlyStoppingSettings != null && earlyStoppingSettings.getValidationFraction() > 0) {
+						long seed = Long.parseLong(properties.getProperty("seed"));
+						SplitTestAndTrain split = dataProvider.splitDataset(trainDataset,
+								earlyStoppingSettings.getValidationFraction(), seed);
+						trainDataset = split.getTrain();
+						validationDataset = split.getTest();
+						System.out.println("Holding out " + validationDataset.numExamples()
+								+ " training examples for validation");
+					}
+				}
+			}
+		} catch (IOException | InterruptedException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+		
+		/*
+		 * Get the grid of neural network configurations for experiments (or
+		 * the shard of the grid run by this process).
+		 */
+		NeuralNetworkConfigurationProvider neuralNetworkConfigurationProvider = new NeuralNetworkConfigurationProvider();
+		int shardIndex = Integer.parseInt(properties.getProperty("shard.index", "0"));
+		int numberOfShards = Integer.parseInt(properties.getProperty("shard.number_of_shards", "1"));
+		ConfigurationGrid neuralNetworkConfigurations = neuralNetworkConfigurationProvider
+				.readConfigurationGridFromProperties(properties)
+				.shard(shardIndex, numberOfShards);
+		System.out.println("Number of configurations: " + neuralNetworkConfigurations.size()
+				+ (numberOfShards > 1 ? " (shard " + shardIndex + " of " + numberOfShards + ")" : ""));
+		
+		String searchMode = properties.getProperty("search_mode", GRID_SEARCH_MODE);
+
+		/*
+		 * Run experiments. The parameter buffers of the networks are reused
+		 * by the next experiments, except for the successive halving search,
+		 * which keeps its networks between the rounds.
+		 */
+		ParameterPool parameterPool = Boolean.parseBoolean(properties.getProperty("reuse_network_parameters", "true"))
+				&& !SUCCESSIVE_HALVING_SEARCH_MODE.equals(searchMode) ? new ParameterPool() : null;
+		String resultCacheDirectoryPath = properties.getProperty("result_cache.directory_path", "");
+		ResultCache resultCache = resultCacheDirectoryPath.isEmpty() ? null
+				: new ResultCache(resultCacheDirectoryPath,
+						Long.parseLong(properties.getProperty("result_cache.max_size", "100")) * BYTES_IN_MEGABYTE,
+						new ExperimentInfoCodec(numberOfClasses));
+		if (resultCache != null) {
+			System.out.println("Result cache " + resultCacheDirectoryPath + " contains " + resultCache.size()
+					+ " result(s)");
+		}
+
+		/*
+		 * Report the progress of the sweep on localhost, if requested.
+		 */
+		int progressPort = Integer.parseInt(properties.getProperty("progress.port", "0"));
+		boolean userInterfaceEnabled = Boolean.parseBoolean(properties.getProperty("progress.dl4j_ui", "false"));
+		SweepProgress sweepProgress = progressPort > 0 || userInterfaceEnabled ? new SweepProgress() : null;
+		ProgressServer progressServer = null;
+		if (sweepProgress != null) {
+			if (!DISTRIBUTED_SEARCH_MODE.equals(searchMode)) {
+				sweepProgress.setNumberOfExperiments(neuralNetworkConfigurations.size());
+			}
+			if (userInterfaceEnabled) {
+				sweepProgress.enableUserInterface();
+				System.out.println("Training statistics sent to the DL4J user interface (http://localhost:9000)");
+			}
+			if (progressPort > 0) {
+				try {
+					progressServer = new ProgressServer(sweepProgress, progressPort);
+					System.out.println("Progress available on http://localhost:" + progressPort + "/progress");
+				} catch (IOException e) {
+					System.out.println("Warning: the progress server could not be started on port " + progressPort
+							+ ": " + e.getMessage());
+				}
+			}
+		}
+		final SweepProgress progress = sweepProgress;
+		ParallelEvaluator evaluator = new ParallelEvaluator(
+				Integer.parseInt(properties.getProperty("evaluation.chunk_size",
+						String.valueOf(ParallelEvaluator.DEFAULT_CHUNK_SIZE))),
+				Integer.parseInt(properties.getProperty("evaluation.number_of_threads", "1")));
+		WarmStart warmStart = Boolean.parseBoolean(properties.getProperty("warm_start.enabled", "false"))
+				? new WarmStart(Integer.parseInt(properties.getProperty("warm_start.max_networks", "16")),
+						properties.getProperty("warm_start.network_directory_path", ""))
+				: null;
+		TestRunner testRunner = new TestRunner(earlyStoppingSettings, parameterPool, resultCache, sweepProgress,
+				evaluator, warmStart);
+
+		/*
+		 * Train the networks of the grid in populations, if the population
+		 * training engine is selected (in-memory data only).
+		 */
+		boolean populationTraining = POPULATION_TRAINING_ENGINE
+				.equals(properties.getProperty("training_engine", DL4J_TRAINING_ENGINE));
+		if (populationTraining && miniBatchSize > 0) {
+			System.out.println("Warning: the population training engine requires the whole dataset in memory,"
+					+ " the networks are trained one by one");
+		}
+		PopulationTrainer populationTrainer = populationTraining && miniBatchSize == 0
+				? new PopulationTrainer(testRunner, earlyStoppingSettings) : null;
+		int maxPopulationSize = Integer.parseInt(properties.getProperty("population.max_size", "64"));
+		ExperimentInfoCreator experimentInfoCreator = new ExperimentInfoCreator();
+		ExperimentScheduler experimentScheduler = new ExperimentScheduler(numberOfWorkers, numberOfThreadsPerWorker);
+
+		final DataProvider provider = dataProvider;
+		final StandardizationStatistics statistics = normalizationStatistics;
+		final DataSet trainingData = trainDataset;
+		final DataSet validationData = validationDataset;
+		final DataSet testData = testDataset;
+		final DataSet crossValidationData = crossValidationDataset;
+		final String trainingDataFilepath = trainingDatasetFilepath;
+		final String validationDataFilepath = validationDatasetFilepath;
+		final String testDataFilepath = testDatasetFilepath;
+		final int batchSize = miniBatchSize;
+		final int batchPrefetchDepth = prefetchDepth;
+		final int labelIndex = labelColumnIndex;
+		final int epochs = numberOfEpochs;
+		final int classes = numberOfClasses;
+
+		/*
+		 * Open the journal of the results, the experiments which have already
+		 * been journaled are not repeated.
+		 */
+		ExperimentJournal journal = null;
+		String datasetFingerprint = null;
+		String journalFilepath = properties.getProperty("journal_filepath", "");
+		if (!journalFilepath.isEmpty()) {
+			try {
+				journal = new ExperimentJournal(journalFilepath, new ExperimentInfoCodec(numberOfClasses));
+				datasetFingerprint = createDatasetFingerprint(properties);
+				System.out.println("Journal " + journalFilepath + " contains " + journal.size() + " experiment(s)");
+			} catch (IOException e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+		}
+		final ExperimentJournal experimentJournal = journal;
+		final String dataFingerprint = datasetFingerprint;
+
+		/*
+		 * Start the experiments of the grid in the order of their estimated
+		 * cost, the most expensive first (the results are still reported in
+		 * the order of the grid), and stop starting new experiments when the
+		 * time budget is exceeded (grid search only).
+		 */
+		boolean costOrder = COST_SCHEDULING_ORDER.equals(properties.getProperty("scheduling.order",
+				COST_SCHEDULING_ORDER));
+		long timeBudgetSeconds = Long.parseLong(properties.getProperty("scheduling.time_budget", "0"));
+		long deadline = timeBudgetSeconds > 0 ? startTime + TimeUnit.SECONDS.toMillis(timeBudgetSeconds) : 0;
+		CostEstimator costEstimator = null;
+		if (costOrder) {
+			// Only the journaled results of the same data and settings (and
+			// training engine) are used, the other ones have different times
+			List<ExperimentInfoDTO> previousResults = new ArrayList<>();
+			if (experimentJournal != null) {
+				for (MultiLayerConfiguration configuration : neuralNetworkConfigurations) {
+					ExperimentInfoDTO previousResult = experimentJournal
+							.get(ExperimentJournal.createKey(configuration, dataFingerprint, epochs));
+					if (previousResult != null) {
+						previousResults.add(previousResult);
+					}
+				}
+			}
+			costEstimator = new CostEstimator(previousResults);
+			System.out.println("Cost estimates based on " + costEstimator.getNumberOfResults()
+					+ " previous result(s)");
+		}
+		// The results wait for the results of the earlier experiments of the
+		// grid, which are started last, so the sinks get most of them at the
+		// end of the run and only the journal keeps them, if it is interrupted
+		if (costOrder && GRID_SEARCH_MODE.equals(searchMode) && experimentScheduler.getNumberOfWorkers() > 1
+				&& experimentJournal == null) {
+			System.out.println("Warning: with scheduling.order=cost the results are reported in the order of the"
+					+ " grid, mostly at the end of the run - set journal_filepath to keep the finished experiments,"
+					+ " if the run is interrupted");
+		}
+		final CostEstimator estimator = costEstimator;
+		int numberOfSkippedExperiments = 0;
+
+		/*
+		 * Keep the best network, if it is to be exported.
+		 */
+		String bestModelDirectoryPath = properties.getProperty("best_model.directory_path", "");
+		final BestModelTracker bestModelTracker = bestModelDirectoryPath.isEmpty() ? null : new BestModelTracker();
+
+		/*
+		 * Open the report and the other sinks of the results, the results are
+		 * appended to them as soon as the experiments finish. The results are
+		 * also saved when the application is terminated before all the
+		 * experiments are finished.
+		 */
+		int reportFlushInterval = Integer.parseInt(properties.getProperty("report.flush_interval", "100"));
+		CompositeResultSink resultSink = null;
+		try {
+			resultSink = ResultSinks.open(properties.getProperty("report.sinks", ResultSinks.DEFAULT_SINKS),
+					outputDirectoryPath, reportFlushInterval);
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+		final CompositeResultSink resultSinks = resultSink;
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> saveResults(resultSinks)));
+
+		/*
+		 * A single experiment of the grid, also run by the workers of a
+		 * distributed sweep.
+		 */
+		Function<MultiLayerConfiguration, TestResultDTO> gridTest = configuration -> {
+			if (batchSize > 0) {
+				DataSetIterator trainIterator = createNormalizedIterator(provider, trainingDataFilepath, batchSize,
+						labelIndex, classes, statistics, batchPrefetchDepth);
+				DataSetIterator validationIterator = validationDataFilepath.isEmpty() ? null
+						: createNormalizedIterator(provider, validationDataFilepath, batchSize, labelIndex, classes,
+								statistics, batchPrefetchDepth);
+				DataSetIterator testIterator = createNormalizedIterator(provider, testDataFilepath, batchSize,
+						labelIndex, classes, statistics, batchPrefetchDepth);
+				return testRunner.runTest(trainIterator, validationIterator, testIterator, configuration, epochs,
+						classes);
+			}
+			return testRunner.runTest(trainingData, validationData, testData, configuration, epochs, classes);
+		};
+
+		System.out.println("Running experiments on " + experimentScheduler.getNumberOfWorkers() + " worker(s), "
+				+ experimentScheduler.getNumberOfThreadsPerWorker() + " thread(s) per worker");
+		try {
+			if (SUCCESSIVE_HALVING_SEARCH_MODE.equals(searchMode)) {
+				if (batchSize > 0) {
+					System.err.println("The successive halving search requires the whole dataset in memory.");
+					System.exit(1);
+				}
+
+				SuccessiveHalvingSearch search = new SuccessiveHalvingSearch(testRunner, experimentScheduler,
+						Integer.parseInt(properties.getProperty("successive_halving.min_epochs")),
+						Integer.parseInt(properties.getProperty("successive_halving.reduction_factor")),
+						properties.getProperty("successive_halving.state_directory_path", ""));
+				List<TestResultDTO> results = search.run(
+						neuralNetworkConfigurations.stream().collect(Collectors.toList()), trainingData,
+						validationData, testData, epochs, classes, createDatasetFingerprint(properties));
+
+				for (int i = 0; i < results.size(); i++) {
+					ExperimentInfoDTO experimentResult = experimentInfoCreator
+							.createInfo(neuralNetworkConfigurations.get(i), results.get(i));
+					if (bestModelTracker != null) {
+						bestModelTracker.offer(results.get(i).getModel(), experimentResult);
+					}
+					reportFinishedExperiment(progress, experimentResult);
+					appendResult(resultSinks, experimentResult);
+				}
+			} else if (CROSS_VALIDATION_SEARCH_MODE.equals(searchMode)) {
+				if (batchSize > 0) {
+					System.err.println("The cross-validation requires the whole dataset in memory.");
+					System.exit(1);
+				}
+				if (experimentJournal != null) {
+					System.out.println("Warning: the journal is not used in the cross-validation mode");
+				}
+
+				CrossValidation crossValidation = new CrossValidation(
+						Integer.parseInt(properties.getProperty("cross_validation.number_of_folds", "5")),
+						Integer.parseInt(properties.getProperty("cross_validation.number_of_repetitions", "1")),
+						Boolean.parseBoolean(properties.getProperty("cross_validation.stratified", "true")),
+						earlyStoppingSettings == null ? 0 : earlyStoppingSettings.getValidationFraction(),
+						Long.parseLong(properties.getProperty("seed")));
+				List<CrossValidation.Fold> folds = crossValidation.createFolds(crossValidationData);
+
+				/*
+				 * Every fold of every configuration is a separate experiment.
+				 * The results are delivered in order, so the results of the
+				 * folds of a configuration come one after another.
+				 */
+				Iterable<FoldExperiment> foldExperiments = () -> neuralNetworkConfigurations.stream()
+						.flatMap(configuration -> folds.stream().map(fold -> new FoldExperiment(configuration, fold)))
+						.iterator();
+				List<TestResultDTO> foldResults = new ArrayList<>();
+
+				experimentScheduler.runExperiments(foldExperiments, foldExperiment -> {
+					// The folds of a configuration run at the same time, each
+					// network gets its own copy of the configuration
+					foldExperiment.result = testRunner.runTest(foldExperiment.fold,
+							foldExperiment.configuration.clone(), epochs, classes);
+					// The networks of the folds are not exported
+					testRunner.releaseModel(foldExperiment.result.getModel());
+					foldExperiment.result.setModel(null);
+					return foldExperiment;
+				}, foldExperiment -> {
+					foldResults.add(foldExperiment.result);
+					if (foldResults.size() < folds.size()) {
+						return;
+					}
+
+					ExperimentInfoDTO experimentResult = experimentInfoCreator.createInfo(
+							foldExperiment.configuration, CrossValidation.combineResults(foldResults, classes));
+					experimentResult.setCrossValidationStatistics(CrossValidation.computeStatistics(foldResults));
+					foldResults.clear();
+
+					reportFinishedExperiment(progress, experimentResult);
+					appendResult(resultSinks, experimentResult);
+				});
+			} else if (DISTRIBUTED_SEARCH_MODE.equals(searchMode)) {
+				/*
+				 * Worker of a distributed sweep - the tasks are claimed from
+				 * the shared work directory until none are left, the results
+				 * are written back to it (see DistributedSweep).
+				 */
+				if (experimentJournal != null) {
+					System.out.println("Warning: the journal is not used in the distributed mode");
+				}
+
+				WorkQueue workQueue = new WorkQueue(DistributedSweep.readWorkDirectoryPath(properties));
+				// The fingerprint covers the whole grid, not only the shard
+				workQueue.verifyFingerprint(DistributedSweep.createSweepFingerprint(properties,
+						neuralNetworkConfigurationProvider.readConfigurationGridFromProperties(properties)));
+				ExperimentInfoCodec codec = new ExperimentInfoCodec(classes);
+				long heartbeatIntervalSeconds = Long
+						.parseLong(properties.getProperty("distributed.heartbeat_interval", "30"));
+				long staleClaimTimeoutSeconds = Long
+						.parseLong(properties.getProperty("distributed.stale_claim_timeout", "300"));
+				System.out.println("Worker " + workQueue.getWorkerId() + " claiming tasks from "
+						+ DistributedSweep.readWorkDirectoryPath(properties));
+
+				workQueue.startHeartbeat(TimeUnit.SECONDS.toMillis(heartbeatIntervalSeconds));
+				try {
+					experimentScheduler.runExperiments(
+							workQueue.claimAll(TimeUnit.SECONDS.toMillis(staleClaimTimeoutSeconds)), task -> {
+								ExperimentInfoDTO experimentResult;
+								try {
+									TestResultDTO result = gridTest.apply(task.getConfiguration());
+									experimentResult = experimentInfoCreator.createInfo(task.getConfiguration(),
+											result);
+									if (bestModelTracker != null) {
+										bestModelTracker.offer(result.getModel(), experimentResult);
+									}
+									testRunner.releaseModel(result.getModel());
+									result.setModel(null);
+									workQueue.complete(task, codec.encode(experimentResult));
+								} catch (IOException e) {
+									releaseTask(workQueue, task, e);
+									throw new UncheckedIOException(e);
+								} catch (RuntimeException | Error e) {
+									releaseTask(workQueue, task, e);
+									throw e;
+								}
+								return experimentResult;
+							}, experimentResult -> {
+								reportFinishedExperiment(progress, experimentResult);
+								appendResult(resultSinks, experimentResult);
+							});
+				} finally {
+					workQueue.stopHeartbeat();
+				}
+			} else if (GRID_SEARCH_MODE.equals(searchMode) && populationTrainer != null) {
+				/*
+				 * The neighbouring configurations of the grid which differ
+				 * only in the updater (the fastest changing parameter) are
+				 * trained together, as a population.
+				 */
+				int[] populationBoundaries = findPopulationBoundaries(neuralNetworkConfigurations,
+						maxPopulationSize);
+				numberOfSkippedExperiments = experimentScheduler.runExperiments(populationBoundaries.length - 1,
+						population -> neuralNetworkConfigurations.get(populationBoundaries[population],
+								populationBoundaries[population + 1]),
+						estimator == null ? null : population -> {
+							double cost = 0;
+							for (MultiLayerConfiguration configuration : population) {
+								cost += estimateCost(estimator, experimentJournal, dataFingerprint, configuration,
+										epochs);
+							}
+							// The journaled populations take no time, they are delivered first
+							return cost == 0 ? Double.POSITIVE_INFINITY : cost;
+						}, deadline, population -> {
+							List<ExperimentInfoDTO> experimentResults = new ArrayList<>();
+							List<MultiLayerConfiguration> trainedConfigurations = new ArrayList<>();
+							List<String> keys = new ArrayList<>();
+							for (MultiLayerConfiguration configuration : population) {
+								String key = experimentJournal == null ? null
+										: ExperimentJournal.createKey(configuration, dataFingerprint, epochs);
+								ExperimentInfoDTO journaledResult = key == null ? null : experimentJournal.get(key);
+								experimentResults.add(journaledResult);
+								if (journaledResult == null) {
+									trainedConfigurations.add(configuration);
+									keys.add(key);
+								}
+							}
+							if (trainedConfigurations.isEmpty()) {
+								return experimentResults;
+							}
+
+							List<TestResultDTO> results = PopulationTrainer.isSupported(trainedConfigurations.get(0))
+									? populationTrainer.runTest(trainingData, validationData, testData,
+											trainedConfigurations, epochs, classes)
+									: Arrays.asList(gridTest.apply(trainedConfigurations.get(0)));
+							for (int i = 0, j = 0; i < experimentResults.size(); i++) {
+								if (experimentResults.get(i) != null) {
+									continue;
+								}
+								TestResultDTO result = results.get(j);
+								ExperimentInfoDTO experimentResult = experimentInfoCreator
+										.createInfo(trainedConfigurations.get(j), result);
+								if (bestModelTracker != null) {
+									bestModelTracker.offer(result.getModel(), experimentResult);
+								}
+								testRunner.releaseModel(result.getModel());
+								result.setModel(null);
+								if (experimentJournal != null) {
+									appendToJournal(experimentJournal, keys.get(j), experimentResult);
+								}
+								experimentResults.set(i, experimentResult);
+								j++;
+							}
+							return experimentResults;
+						}, experimentResults -> {
+							for (ExperimentInfoDTO experimentResult : experimentResults) {
+								reportFinishedExperiment(progress, experimentResult);
+							}
+						}, experimentResults -> {
+							for (ExperimentInfoDTO experimentResult : experimentResults) {
+								appendResult(resultSinks, experimentResult);
+							}
+						});
+			} else if (GRID_SEARCH_MODE.equals(searchMode)) {
+				numberOfSkippedExperiments = experimentScheduler.runExperiments(neuralNetworkConfigurations.size(),
+						neuralNetworkConfigurations::get, estimator == null ? null : configuration -> {
+							double cost = estimateCost(estimator, experimentJournal, dataFingerprint, configuration,
+									epochs);
+							// The journaled experiments take no time, they are delivered first
+							return cost == 0 ? Double.POSITIVE_INFINITY : cost;
+						}, deadline, configuration -> {
+							String key = null;
+							if (experimentJournal != null) {
+								key = ExperimentJournal.createKey(configuration, dataFingerprint, epochs);
+								ExperimentInfoDTO journaledResult = experimentJournal.get(key);
+								if (journaledResult != null) {
+									return journaledResult;
+								}
+							}
+
+							TestResultDTO result = gridTest.apply(configuration);
+							ExperimentInfoDTO experimentResult = experimentInfoCreator.createInfo(configuration,
+									result);
+							if (bestModelTracker != null) {
+								bestModelTracker.offer(result.getModel(), experimentResult);
+							}
+							testRunner.releaseModel(result.getModel());
+							result.setModel(null);
+							if (experimentJournal != null) {
+								appendToJournal(experimentJournal, key, experimentResult);
+							}
+							return experimentResult;
+						}, experimentResult -> reportFinishedExperiment(progress, experimentResult),
+						experimentResult -> appendResult(resultSinks, experimentResult));
+			} else {
+				System.err.println("Unknown search mode: " + searchMode);
+				System.exit(1);
+			}
+		} catch (InterruptedException | ExecutionException | IOException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+		if (numberOfSkippedExperiments > 0) {
+			System.out.println("Warning: the time budget was exceeded, " + numberOfSkippedExperiments
+					+ " experiment(s) (or population(s)) were not run");
+		}
+		
+		if (resultCache != null) {
+			System.out.println("Result cache: " + resultCache.getNumberOfHits() + " hit(s), "
+					+ resultCache.getNumberOfMisses() + " miss(es), " + resultCache.getNumberOfEvictions()
+					+ " eviction(s)");
+		}
+		if (parameterPool != null) {
+			System.out.println("Parameter buffers: " + parameterPool.getNumberOfAllocatedBuffers() + " allocated, "
+					+ parameterPool.getNumberOfReusedBuffers() + " reused");
+		}
+		if (warmStart != null) {
+			System.out.println("Warm start: " + warmStart.getNumberOfTransfers() + " network(s) initialized from "
+					+ "another network, " + warmStart.getNumberOfResumes() + " resumed");
+		}
+
+		/*
+		 * Save report.
+		 */
+		saveResults(resultSinks);
+
+		/*
+		 * Export the best network.
+		 */
+		if (bestModelTracker != null) {
+			try {
+				if (bestModelTracker.save(bestModelDirectoryPath, statistics)) {
+					System.out.println("Best network saved in " + bestModelDirectoryPath);
+				} else {
+					System.out.println("Warning: no network was trained in this run, the best network was not saved");
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		if (experimentJournal != null) {
+			try {
+				experimentJournal.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		if (progressServer != null) {
+			progressServer.stop();
+		}
+	}
+
+	/*
+	 * The journaled experiments take no time, their cost is 0.
+	 */
+	private static double estimateCost(CostEstimator costEstimator, ExperimentJournal journal,
+			String datasetFingerprint, MultiLayerConfiguration configuration, int numberOfEpochs) {
+		if (journal != null && journal
+				.get(ExperimentJournal.createKey(configuration, datasetFingerprint, numberOfEpochs)) != null) {
+			return 0;
+		}
+		return costEstimator.estimate(configuration, numberOfEpochs);
+	}
+
+	/*
+	 * The fingerprint covers the content of the data files and the settings
+	 * which change the results, but are not part of the network configuration
+	 * - including the training engine, as the population engine gives results
+	 * close to, but not the same as, the ones of DL4J, and the warm start, as
+	 * the results of the warm-started networks depend on the other networks.
+	 */
+	static String createDatasetFingerprint(Properties properties) throws IOException {
+		String validationDatasetFilepath = properties.getProperty("data.validation_dataset_filepath", "");
+		return Hashes.ofText(
+				Hashes.ofFile(properties.getProperty("data.training_dataset_filepath")),
+				Hashes.ofFile(properties.getProperty("data.test_dataset_filepath")),
+				validationDatasetFilepath.isEmpty() ? "" : Hashes.ofFile(validationDatasetFilepath),
+				properties.getProperty("data.label_column_index"),
+				properties.getProperty("data.mini_batch_size", "0"),
+				properties.getProperty("data_type", DataTypes.DEFAULT_DATA_TYPE),
+				properties.getProperty("early_stopping.validation_fraction", "0"),
+				properties.getProperty("early_stopping.patience", "10"),
+				properties.getProperty("early_stopping.min_improvement", "0"),
+				properties.getProperty("early_stopping.max_training_time", "0"),
+				properties.getProperty("training_engine", DL4J_TRAINING_ENGINE),
+				Boolean.parseBoolean(properties.getProperty("warm_start.enabled", "false"))
+						? properties.getProperty("warm_start.max_networks", "16") : "");
+	}
+
+	private static void appendToJournal(ExperimentJournal journal, String key, ExperimentInfoDTO experimentResult) {
+		try {
+			journal.append(key, experimentResult);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/*
+	 * The task of a failed experiment is given back at once, so that another
+	 * worker does not have to wait until its claim becomes stale.
+	 */
+	private static void releaseTask(WorkQueue workQueue, WorkQueue.Task task, Throwable failure) {
+		try {
+			workQueue.release(task);
+		} catch (IOException e) {
+			failure.addSuppressed(e);
+		}
+	}
+
+	private static void reportFinishedExperiment(SweepProgress sweepProgress, ExperimentInfoDTO experimentResult) {
+		if (sweepProgress != null) {
+			sweepProgress.experimentFinished();
+		}
+		System.out.println(System.lineSeparator() + experimentResult.getInformationText());
+	}
+
+	private static void appendResult(ResultSink resultSink, ExperimentInfoDTO experimentResult) {
+		try {
+			resultSink.append(experimentResult);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static void saveResults(CompositeResultSink resultSink) {
+		if (resultSink.isClosed()) {
+			return;
+		}
+
+		try {
+			System.out.println(System.lineSeparator() + "Saving report");
+			resultSink.close();
+			for (ResultSink sink : resultSink.getSinks()) {
+				System.out.println("Results saved in " + sink.getOutputFilepath());
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/*
+	 * Early stopping is enabled, when either the validation data or the
+	 * training time limit is configured.
+	 */
+	private static EarlyStoppingSettings readEarlyStoppingSettings(Properties properties) {
+		double validationFraction = Double
+				.parseDouble(properties.getProperty("early_stopping.validation_fraction", "0"));
+		long maxTrainingTimeSeconds = Long.parseLong(properties.getProperty("early_stopping.max_training_time", "0"));
+		boolean validationDatasetProvided = !properties.getProperty("data.validation_dataset_filepath", "").isEmpty();
+
+		if (validationFraction == 0 && maxTrainingTimeSeconds == 0 && !validationDatasetProvided) {
+			return null;
+		}
+
+		int patience = Integer.parseInt(properties.getProperty("early_stopping.patience", "10"));
+		double minImprovement = Double.parseDouble(properties.getProperty("early_stopping.min_improvement", "0"));
+		return new EarlyStoppingSettings(validationFraction, patience, minImprovement,
+				TimeUnit.SECONDS.toMillis(maxTrainingTimeSeconds));
+	}
+
+	/*
+	 * Every experiment gets its own iterators, because the iterators keep
+	 * the position in the file and cannot be shared between the workers.
+	 * With a prefetch depth the mini-batches are read and normalized on a
+	 * background thread of the iterator.
+	 */
+	private static DataSetIterator createNormalizedIterator(DataProvider dataProvider, String filepath,
+			int miniBatchSize, int labelColumnIndex, int numberOfClasses, StandardizationStatistics statistics,
+			int prefetchDepth) {
+		try {
+			DataSetIterator iterator = dataProvider.readDatasetIteratorFromFile(filepath, miniBatchSize,
+					labelColumnIndex, numberOfClasses);
+			if (prefetchDepth > 0) {
+				iterator = new PrefetchingDataSetIterator(iterator, prefetchDepth);
+			}
+			iterator.setPreProcessor(statistics);
+			return iterator;
+		} catch (IOException | InterruptedException e) {
+			throw new IllegalStateException("The data could not be read from " + filepath, e);
+		}
+	}
+
+	/*
+	 * Groups the consecutive configurations which can be trained in one
+	 * population, the configurations which cannot be trained in a population
+	 * form groups of one. Only the boundaries of the groups (the index of the
+	 * first configuration of every group and the size of the grid) are kept,
+	 * the configurations are built again when their group is run.
+	 */
+	private static int[] findPopulationBoundaries(ConfigurationGrid configurations, int maxPopulationSize) {
+		List<Integer> boundaries = new ArrayList<>();
+		String populationKey = null;
+		int populationSize = 0;
+		for (int i = 0; i < configurations.size(); i++) {
+			MultiLayerConfiguration configuration = configurations.get(i);
+			String key = PopulationTrainer.isSupported(configuration)
+					? PopulationTrainer.createPopulationKey(configuration) : null;
+			if (key == null || !key.equals(populationKey) || populationSize == maxPopulationSize) {
+				boundaries.add(i);
+				populationSize = 0;
+			}
+			populationKey = key;
+			populationSize++;
+		}
+		boundaries.add(configurations.size());
+
+		int[] boundaryArray = new int[boundaries.size()];
+		for (int i = 0; i < boundaryArray.length; i++) {
+			boundaryArray[i] = boundaries.get(i);
+		}
+		return boundaryArray;
+	}
+
+	/*
+	 * A fold of the cross-validation of a configuration.
+	 */
+	private static class FoldExperiment {
+
+		private final MultiLayerConfiguration configuration;
+		private final CrossValidation.Fold fold;
+		private TestResultDTO result;
+
+		public FoldExperiment(MultiLayerConfiguration configuration, CrossValidation.Fold fold) {
+			this.configuration = configuration;
+			this.fold = fold;
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package io.github.kjrg.mgr;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import io.github.kjrg.mgr.dto.ExperimentInfoDTO;
+
+/**
+ * A sink writing the results to another sink on a background thread, so that
+ * the threads running the experiments do not wait for the files to be
+ * written. The appending thread waits only when the queue of the results is
+ * full. A failure of the other sink is thrown by the next call of append or
+ * close.
+ *
+ * @author Krzysztof Gałka
+ */
+public class AsyncResultSink implements ResultSink {
+
+	private static final ExperimentInfoDTO END_OF_RESULTS = new ExperimentInfoDTO(0, null, null, 0, null);
+
+	private final ResultSink sink;
+	private final BlockingQueue<ExperimentInfoDTO> queue;
+	private final Thread writer;
+	private volatile Exception failure;
+	private boolean closed;
+
+	/**
+	 * Create a sink and start its thread.
+	 *
+	 * @param sink the sink the results are written to
+	 * @param queueCapacity maximal number of results waiting to be written
+	 */
+	public AsyncResultSink(ResultSink sink, int queueCapacity) {
+		this.sink = sink;
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.writer = new Thread(this::writeResults, "result-sink");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Queue the result of an experiment to be written. The result must not be
+	 * modified afterwards.
+	 */
+	@Override
+	public synchronized void append(ExperimentInfoDTO experimentResult) throws IOException {
+		if (closed) {
+			throw new IllegalStateException("The sink has already been closed.");
+		}
+		throwFailure();
+
+		try {
+			queue.put(experimentResult);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while queueing the result for " + getOutputFilepath());
+		}
+	}
+
+	@Override
+	public String getOutputFilepath() {
+		return sink.getOutputFilepath();
+	}
+
+	/**
+	 * Write the queued results and close the other sink.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+
+		try {
+			queue.put(END_OF_RESULTS);
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while writing the results to " + getOutputFilepath());
+		} finally {
+			sink.close();
+		}
+		throwFailure();
+	}
+
+	/*
+	 * After a failure the results are still taken from the queue, so that
+	 * the appending thread is not blocked, but they are not written.
+	 */
+	private void writeResults() {
+		while (true) {
+			ExperimentInfoDTO experimentResult;
+			try {
+				experimentResult = queue.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			if (experimentResult == END_OF_RESULTS) {
+				return;
+			}
+
+			if (failure == null) {
+				try {
+					sink.append(experimentResult);
+				} catch (IOException | RuntimeException e) {
+					failure = e;
+				}
+			}
+		}
+	}
+
+	private void throwFailure() throws IOException {
+		if (failure != null) {
+			throw new IOException("The results could not be written to " + getOutputFilepath() + ".", failure);
+		}
+	}
+}
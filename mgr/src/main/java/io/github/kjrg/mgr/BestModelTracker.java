@@ -0,0 +1,115 @@
+package io.github.kjrg.mgr;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import org.deeplearning4j.eval.Evaluation;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.util.ModelSerializer;
+
+import io.github.kjrg.mgr.dto.ExperimentInfoDTO;
+
+/**
+ * A class keeping the best network trained in a sweep, so that it can be
+ * exported together with the normalization statistics and served later. The
+ * networks are compared by the F1 score on the test dataset, then by the
+ * accuracy.
+ *
+ * @author Krzysztof Gałka
+ */
+public class BestModelTracker {
+
+	public static final String MODEL_FILENAME = "best_model.zip";
+	public static final String STATISTICS_FILENAME = "best_model.statistics";
+	public static final String INFORMATION_FILENAME = "best_model.txt";
+
+	private MultiLayerNetwork bestModel;
+	private ExperimentInfoDTO bestExperimentInfo;
+
+	/**
+	 * Offer a trained network. Only the best network offered so far is kept.
+	 * The network is copied, because the parameters of the offered network
+	 * may be reused by the next experiment.
+	 *
+	 * @param model the trained network
+	 * @param experimentInfo information about the experiment in which the
+	 *            network was trained
+	 */
+	public synchronized void offer(MultiLayerNetwork model, ExperimentInfoDTO experimentInfo) {
+		if (model == null || experimentInfo.getExperimentResult() == null) {
+			return;
+		}
+
+		if (bestExperimentInfo == null || isBetter(experimentInfo.getExperimentResult(),
+				bestExperimentInfo.getExperimentResult())) {
+			bestModel = model.clone();
+			bestExperimentInfo = experimentInfo;
+		}
+	}
+
+	/**
+	 * Save the best network, the normalization statistics and the information
+	 * about the experiment.
+	 *
+	 * @param directoryPath directory in which the files are saved
+	 * @param statistics statistics used to normalize the data of the network
+	 * @return false, if no network has been offered
+	 * @throws IOException
+	 */
+	public synchronized boolean save(String directoryPath, StandardizationStatistics statistics) throws IOException {
+		if (bestModel == null) {
+			return false;
+		}
+
+		File directory = new File(directoryPath);
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("The directory " + directoryPath + " could not be created.");
+		}
+
+		// The updater state is not needed for inference
+		ModelSerializer.writeModel(bestModel, new File(directory, MODEL_FILENAME), false);
+		statistics.save(new File(directory, STATISTICS_FILENAME));
+		try (PrintWriter writer = new PrintWriter(new File(directory, INFORMATION_FILENAME), "UTF-8")) {
+			writer.print(bestExperimentInfo.getInformationText());
+		}
+		return true;
+	}
+
+	/**
+	 * @return information about the experiment of the best network, null if
+	 *         no network has been offered
+	 */
+	public synchronized ExperimentInfoDTO getBestExperimentInfo() {
+		return bestExperimentInfo;
+	}
+
+	/**
+	 * Read a network saved with {@link #save(String, StandardizationStatistics)}.
+	 *
+	 * @param directoryPath directory in which the files were saved
+	 * @return the network
+	 * @throws IOException
+	 */
+	public static MultiLayerNetwork loadModel(String directoryPath) throws IOException {
+		return ModelSerializer.restoreMultiLayerNetwork(new File(directoryPath, MODEL_FILENAME));
+	}
+
+	/**
+	 * Read the statistics saved with {@link #save(String, StandardizationStatistics)}.
+	 *
+	 * @param directoryPath directory in which the files were saved
+	 * @return the normalization statistics
+	 * @throws IOException
+	 */
+	public static StandardizationStatistics loadStatistics(String directoryPath) throws IOException {
+		return StandardizationStatistics.load(new File(directoryPath, STATISTICS_FILENAME));
+	}
+
+	private boolean isBetter(Evaluation evaluation, Evaluation bestEvaluation) {
+		if (evaluation.f1() != bestEvaluation.f1()) {
+			return evaluation.f1() > bestEvaluation.f1();
+		}
+		return evaluation.accuracy() > bestEvaluation.accuracy();
+	}
+}
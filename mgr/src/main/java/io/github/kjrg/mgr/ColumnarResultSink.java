@@ -0,0 +1,156 @@
+package io.github.kjrg.mgr;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import io.github.kjrg.mgr.dto.ExperimentInfoDTO;
+
+/**
+ * A sink writing the results column by column: every column of
+ * {@link ResultColumns} is a separate file in the output directory, with a
+ * value per result, so that a single column can be read without parsing the
+ * others (e.g. with numpy.fromfile).
+ *
+ * name.f64 - doubles (little-endian), NaN for the unknown values
+ * name.i64 - longs (little-endian), Long.MIN_VALUE for the unknown values
+ * name.txt - strings or values of the classes (separated by spaces), a line
+ * per result, an empty line for the unknown values
+ *
+ * The files are complete when the sink is closed.
+ *
+ * @author Krzysztof Gałka
+ */
+public class ColumnarResultSink implements ResultSink {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final long UNKNOWN_LONG = Long.MIN_VALUE;
+
+	private final String outputDirectoryPath;
+	private final OutputStream[] outputStreams;
+	private final ByteBuffer valueBuffer = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+	private boolean closed;
+
+	/**
+	 * Create the directory and the files of the columns.
+	 *
+	 * @param outputDirectoryPath path of the directory, it must not exist
+	 * @throws IOException
+	 */
+	public ColumnarResultSink(String outputDirectoryPath) throws IOException {
+		File outputDirectory = new File(outputDirectoryPath);
+		if (!outputDirectory.mkdirs()) {
+			throw new IOException("The directory " + outputDirectoryPath + " could not be created.");
+		}
+
+		this.outputDirectoryPath = outputDirectoryPath;
+		this.outputStreams = new OutputStream[ResultColumns.NAMES.length];
+		try {
+			for (int i = 0; i < outputStreams.length; i++) {
+				File file = new File(outputDirectory, ResultColumns.NAMES[i] + getExtension(ResultColumns.TYPES[i]));
+				outputStreams[i] = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+			}
+		} catch (IOException e) {
+			try {
+				closeStreams();
+			} catch (IOException closingFailure) {
+				e.addSuppressed(closingFailure);
+			}
+			throw e;
+		}
+	}
+
+	@Override
+	public synchronized void append(ExperimentInfoDTO experimentResult) throws IOException {
+		if (closed) {
+			throw new IllegalStateException("The directory " + outputDirectoryPath + " has already been closed.");
+		}
+
+		Object[] values = ResultColumns.getValues(experimentResult);
+		for (int i = 0; i < values.length; i++) {
+			switch (ResultColumns.TYPES[i]) {
+			case ResultColumns.LONG:
+				valueBuffer.clear();
+				valueBuffer.putLong(values[i] == null ? UNKNOWN_LONG : ((Number) values[i]).longValue());
+				outputStreams[i].write(valueBuffer.array());
+				break;
+			case ResultColumns.DOUBLE:
+				valueBuffer.clear();
+				valueBuffer.putDouble(values[i] == null ? Double.NaN : ((Number) values[i]).doubleValue());
+				outputStreams[i].write(valueBuffer.array());
+				break;
+			default:
+				outputStreams[i].write((formatText(values[i]) + "\n").getBytes(StandardCharsets.UTF_8));
+				break;
+			}
+		}
+	}
+
+	@Override
+	public String getOutputFilepath() {
+		return outputDirectoryPath;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			closeStreams();
+		}
+	}
+
+	private void closeStreams() throws IOException {
+		IOException failure = null;
+		for (OutputStream outputStream : outputStreams) {
+			if (outputStream == null) {
+				continue;
+			}
+			try {
+				outputStream.close();
+			} catch (IOException e) {
+				if (failure == null) {
+					failure = e;
+				}
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	private static String getExtension(char type) {
+		switch (type) {
+		case ResultColumns.LONG:
+			return ".i64";
+		case ResultColumns.DOUBLE:
+			return ".f64";
+		default:
+			return ".txt";
+		}
+	}
+
+	/*
+	 * The line separators in the strings are replaced with spaces.
+	 */
+	private static String formatText(Object value) {
+		if (value == null) {
+			return "";
+		}
+		if (value instanceof double[]) {
+			StringBuilder textBuilder = new StringBuilder();
+			for (double classValue : (double[]) value) {
+				if (textBuilder.length() > 0) {
+					textBuilder.append(' ');
+				}
+				textBuilder.append(classValue);
+			}
+			return textBuilder.toString();
+		}
+		return value.toString().replace('\n', ' ').replace('\r', ' ');
+	}
+}
@@ -0,0 +1,89 @@
+package io.github.kjrg.mgr;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.github.kjrg.mgr.dto.ExperimentInfoDTO;
+
+/**
+ * A sink passing the results to several sinks at once.
+ *
+ * @author Krzysztof Gałka
+ */
+public class CompositeResultSink implements ResultSink {
+
+	private final List<ResultSink> sinks;
+	private boolean closed;
+
+	/**
+	 * @param sinks the sinks, at least one
+	 */
+	public CompositeResultSink(List<ResultSink> sinks) {
+		if (sinks.isEmpty()) {
+			throw new IllegalArgumentException("At least one sink is required.");
+		}
+		this.sinks = Collections.unmodifiableList(new ArrayList<>(sinks));
+	}
+
+	@Override
+	public synchronized void append(ExperimentInfoDTO experimentResult) throws IOException {
+		if (closed) {
+			throw new IllegalStateException("The sinks have already been closed.");
+		}
+		for (ResultSink sink : sinks) {
+			sink.append(experimentResult);
+		}
+	}
+
+	/**
+	 * @return path of the output of the first sink
+	 */
+	@Override
+	public String getOutputFilepath() {
+		return sinks.get(0).getOutputFilepath();
+	}
+
+	/**
+	 * @return the sinks the results are passed to
+	 */
+	public List<ResultSink> getSinks() {
+		return sinks;
+	}
+
+	/**
+	 * @return true, if the sinks have already been closed
+	 */
+	public synchronized boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Close all the sinks, also when closing some of them fails. The first
+	 * failure is thrown.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+
+		IOException failure = null;
+		for (ResultSink sink : sinks) {
+			try {
+				sink.close();
+			} catch (IOException e) {
+				if (failure == null) {
+					failure = e;
+				} else {
+					failure.addSuppressed(e);
+				}
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+}
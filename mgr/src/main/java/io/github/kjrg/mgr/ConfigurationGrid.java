@@ -0,0 +1,197 @@
+package io.github.kjrg.mgr;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.deeplearning4j.nn.api.OptimizationAlgorithm;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration.ListBuilder;
+import org.deeplearning4j.nn.conf.Updater;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+/**
+ * A grid of neural network configurations - the Cartesian product of the
+ * variable parameters of the experiments. The configurations are not stored,
+ * every configuration is built on demand from its index in the grid. The
+ * topology of the hidden layers changes the slowest, so the configurations
+ * come in the order of the given topologies.
+ *
+ * The grid can be divided into shards, so that different processes can run
+ * different parts of it. The configurations are assigned to the shards in a
+ * round-robin manner (configuration i belongs to shard i mod n).
+ *
+ * @author Krzysztof Gałka
+ */
+public class ConfigurationGrid implements Iterable<MultiLayerConfiguration> {
+
+	private final int numberOfInputs;
+	private final int numberOfClasses;
+	private final int seed;
+	private final int iterations;
+	private final double learningRate;
+	private final List<Topology> topologies;
+	private final List<String> activationFunctions;
+	private final List<Updater> updaters;
+	private final List<Double> dropOuts;
+	private final int shardIndex;
+	private final int numberOfShards;
+
+	ConfigurationGrid(int numberOfInputs, int numberOfClasses, int seed, int iterations, double learningRate,
+			List<Topology> topologies, List<String> activationFunctions, List<Updater> updaters,
+			List<Double> dropOuts) {
+		this(numberOfInputs, numberOfClasses, seed, iterations, learningRate, topologies, activationFunctions,
+				updaters, dropOuts, 0, 1);
+	}
+
+	private ConfigurationGrid(int numberOfInputs, int numberOfClasses, int seed, int iterations,
+			double learningRate, List<Topology> topologies, List<String> activationFunctions,
+			List<Updater> updaters, List<Double> dropOuts, int shardIndex, int numberOfShards) {
+		this.numberOfInputs = numberOfInputs;
+		this.numberOfClasses = numberOfClasses;
+		this.seed = seed;
+		this.iterations = iterations;
+		this.learningRate = learningRate;
+		this.topologies = topologies;
+		this.activationFunctions = activationFunctions;
+		this.updaters = updaters;
+		this.dropOuts = dropOuts;
+		this.shardIndex = shardIndex;
+		this.numberOfShards = numberOfShards;
+	}
+
+	/**
+	 * Get a shard of the grid.
+	 *
+	 * @param shardIndex index of the shard, from 0 to numberOfShards - 1
+	 * @param numberOfShards number of shards the grid is divided into
+	 * @return the configurations of the grid belonging to the shard
+	 */
+	public ConfigurationGrid shard(int shardIndex, int numberOfShards) {
+		if (this.numberOfShards != 1) {
+			throw new IllegalStateException("The grid has already been sharded.");
+		}
+		if (numberOfShards < 1 || shardIndex < 0 || shardIndex >= numberOfShards) {
+			throw new IllegalArgumentException(
+					"The shard " + shardIndex + " of " + numberOfShards + " shards is not correct.");
+		}
+
+		return new ConfigurationGrid(numberOfInputs, numberOfClasses, seed, iterations, learningRate, topologies,
+				activationFunctions, updaters, dropOuts, shardIndex, numberOfShards);
+	}
+
+	/**
+	 * @return number of configurations in the grid (or in the shard)
+	 */
+	public int size() {
+		int totalSize = topologies.size() * activationFunctions.size() * updaters.size() * dropOuts.size();
+		return totalSize / numberOfShards + (shardIndex < totalSize % numberOfShards ? 1 : 0);
+	}
+
+	/**
+	 * Build a configuration of the grid.
+	 *
+	 * @param index index of the configuration in the grid (or in the shard)
+	 * @return the configuration
+	 */
+	public MultiLayerConfiguration get(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+		}
+
+		// The last parameter changes the fastest, as in the nested loops
+		int gridIndex = shardIndex + index * numberOfShards;
+		double dropOut = dropOuts.get(gridIndex % dropOuts.size());
+		gridIndex /= dropOuts.size();
+		Updater updater = updaters.get(gridIndex % updaters.size());
+		gridIndex /= updaters.size();
+		String activationFunction = activationFunctions.get(gridIndex % activationFunctions.size());
+		gridIndex /= activationFunctions.size();
+		Topology topology = topologies.get(gridIndex);
+
+		ListBuilder layers = new NeuralNetConfiguration.Builder()
+				.seed(seed)
+				.iterations(iterations)
+				.weightInit(WeightInit.XAVIER)
+				.learningRate(learningRate)
+				.optimizationAlgo(OptimizationAlgorithm.LINE_GRADIENT_DESCENT)
+				.regularization(false)
+				.list();
+
+		int numberOfLayerInputs = numberOfInputs;
+		for (int l = 0; l < topology.getNumberOfLayers(); l++) {
+			String layerActivationFunction = topology.getActivationFunction(l);
+			DenseLayer.Builder hiddenLayer = new DenseLayer.Builder()
+					.nIn(numberOfLayerInputs)
+					.nOut(topology.getNumberOfNeurons(l))
+					.activation(layerActivationFunction == null ? activationFunction : layerActivationFunction)
+					.updater(updater);
+			if (dropOut > 0) {
+				hiddenLayer.dropOut(dropOut);
+			}
+			layers.layer(l, hiddenLayer.build());
+			numberOfLayerInputs = topology.getNumberOfNeurons(l);
+		}
+
+		return layers
+				.layer(topology.getNumberOfLayers(), new OutputLayer.Builder(
+						LossFunctions.LossFunction.NEGATIVELOGLIKELIHOOD)
+						.activation("softmax")
+						.nIn(numberOfLayerInputs)
+						.nOut(numberOfClasses)
+						.build())
+				.backprop(true)
+				.pretrain(false)
+				.build();
+	}
+
+	/**
+	 * @return stream of the configurations, built when they are consumed
+	 */
+	public Stream<MultiLayerConfiguration> stream() {
+		return IntStream.range(0, size()).mapToObj(this::get);
+	}
+
+	/**
+	 * Build the configurations of a range of the grid.
+	 *
+	 * @param fromIndex index of the first configuration (inclusive)
+	 * @param toIndex index of the last configuration (exclusive)
+	 * @return the configurations
+	 */
+	public List<MultiLayerConfiguration> get(int fromIndex, int toIndex) {
+		List<MultiLayerConfiguration> configurations = new ArrayList<>();
+		for (int i = fromIndex; i < toIndex; i++) {
+			configurations.add(get(i));
+		}
+		return configurations;
+	}
+
+	@Override
+	public Iterator<MultiLayerConfiguration> iterator() {
+		return new Iterator<MultiLayerConfiguration>() {
+
+			private int nextIndex = 0;
+
+			@Override
+			public boolean hasNext() {
+				return nextIndex < size();
+			}
+
+			@Override
+			public MultiLayerConfiguration next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return get(nextIndex++);
+			}
+		};
+	}
+}
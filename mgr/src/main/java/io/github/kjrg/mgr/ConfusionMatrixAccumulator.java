@@ -0,0 +1,151 @@
+package io.github.kjrg.mgr;
+
+import org.deeplearning4j.eval.Evaluation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+/**
+ * An accumulator of the predictions of a classifier, kept in primitive
+ * arrays: the confusion matrix and, for every class, the histograms of the
+ * predicted probabilities of the class for the examples of the class and of
+ * the other classes. The histograms give the ROC curve of every class (one
+ * versus the rest) with the resolution of a bin. The memory does not depend
+ * on the number of examples.
+ *
+ * An accumulator is used by a single thread, the accumulators of several
+ * threads are merged at the end.
+ *
+ * @author Krzysztof Gałka
+ */
+public class ConfusionMatrixAccumulator {
+
+	private static final int NUMBER_OF_BINS = 1000;
+
+	private final int numberOfClasses;
+	// Row - actual class, column - predicted class
+	private final long[] counts;
+	private final long[][] positiveHistograms;
+	private final long[][] negativeHistograms;
+
+	/**
+	 * @param numberOfClasses number of classes in the dataset
+	 */
+	public ConfusionMatrixAccumulator(int numberOfClasses) {
+		this.numberOfClasses = numberOfClasses;
+		this.counts = new long[numberOfClasses * numberOfClasses];
+		this.positiveHistograms = new long[numberOfClasses][NUMBER_OF_BINS];
+		this.negativeHistograms = new long[numberOfClasses][NUMBER_OF_BINS];
+	}
+
+	/**
+	 * Add the predictions for a part of the examples. The predicted class is
+	 * the class with the highest probability, as in the Evaluation.
+	 *
+	 * @param labels one-hot labels, one example per row
+	 * @param predicted predicted probabilities of the classes, one example per
+	 *            row
+	 */
+	public void add(INDArray labels, INDArray predicted) {
+		int numberOfExamples = labels.rows();
+		double[] labelValues = labels.dup('c').data().asDouble();
+		double[] predictedValues = predicted.dup('c').data().asDouble();
+
+		for (int i = 0; i < numberOfExamples; i++) {
+			int offset = i * numberOfClasses;
+			int actualClass = 0;
+			int predictedClass = 0;
+			for (int c = 1; c < numberOfClasses; c++) {
+				if (labelValues[offset + c] > labelValues[offset + actualClass]) {
+					actualClass = c;
+				}
+				if (predictedValues[offset + c] > predictedValues[offset + predictedClass]) {
+					predictedClass = c;
+				}
+			}
+			counts[actualClass * numberOfClasses + predictedClass]++;
+
+			for (int c = 0; c < numberOfClasses; c++) {
+				int bin = Math.max(0,
+						Math.min(NUMBER_OF_BINS - 1, (int) (predictedValues[offset + c] * NUMBER_OF_BINS)));
+				if (c == actualClass) {
+					positiveHistograms[c][bin]++;
+				} else {
+					negativeHistograms[c][bin]++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Add the predictions accumulated by another accumulator.
+	 *
+	 * @param other accumulator with the same number of classes
+	 */
+	public void merge(ConfusionMatrixAccumulator other) {
+		if (other.numberOfClasses != numberOfClasses) {
+			throw new IllegalArgumentException("The accumulators have different numbers of classes.");
+		}
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] += other.counts[i];
+		}
+		for (int c = 0; c < numberOfClasses; c++) {
+			for (int bin = 0; bin < NUMBER_OF_BINS; bin++) {
+				positiveHistograms[c][bin] += other.positiveHistograms[c][bin];
+				negativeHistograms[c][bin] += other.negativeHistograms[c][bin];
+			}
+		}
+	}
+
+	/**
+	 * @param actualClass actual class
+	 * @param predictedClass predicted class
+	 * @return number of the examples of the actual class predicted as the
+	 *         predicted class
+	 */
+	public long getCount(int actualClass, int predictedClass) {
+		return counts[actualClass * numberOfClasses + predictedClass];
+	}
+
+	/**
+	 * Create the evaluation with the accumulated confusion matrix. The
+	 * accuracy, the precision, the recall and the F1 score of every class and
+	 * of all the classes are computed by the evaluation.
+	 *
+	 * @return the evaluation
+	 */
+	public Evaluation createEvaluation() {
+		Evaluation evaluation = new Evaluation(numberOfClasses);
+		for (int actualClass = 0; actualClass < numberOfClasses; actualClass++) {
+			for (int predictedClass = 0; predictedClass < numberOfClasses; predictedClass++) {
+				for (long i = getCount(actualClass, predictedClass); i > 0; i--) {
+					evaluation.eval(predictedClass, actualClass);
+				}
+			}
+		}
+		return evaluation;
+	}
+
+	/**
+	 * Compute the area under the ROC curve of every class, against the other
+	 * classes. The examples in the same bin are treated as ties.
+	 *
+	 * @return areas under the ROC curves, NaN for a class without positive or
+	 *         negative examples
+	 */
+	public double[] computeAreasUnderRocCurve() {
+		double[] areas = new double[numberOfClasses];
+		for (int c = 0; c < numberOfClasses; c++) {
+			long positives = 0;
+			long negatives = 0;
+			double area = 0;
+			// From the highest threshold, the positives above the bin are
+			// ranked higher than the negatives in the bin
+			for (int bin = NUMBER_OF_BINS - 1; bin >= 0; bin--) {
+				area += negativeHistograms[c][bin] * (positives + positiveHistograms[c][bin] / 2.0);
+				positives += positiveHistograms[c][bin];
+				negatives += negativeHistograms[c][bin];
+			}
+			areas[c] = positives == 0 || negatives == 0 ? Double.NaN : area / positives / negatives;
+		}
+		return areas;
+	}
+}
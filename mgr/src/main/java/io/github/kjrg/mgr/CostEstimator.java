@@ -0,0 +1,114 @@
+package io.github.kjrg.mgr;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.Updater;
+
+import io.github.kjrg.mgr.dto.ExperimentInfoDTO;
+
+/**
+ * An estimator of the training time of a network, used for ordering the
+ * experiments. The time is proportional to the number of parameters and the
+ * number of epochs, the time of training a parameter for an epoch depends on
+ * the updater. It is taken from the results of the previous runs (e.g. from
+ * the journal), for the updaters without any results it is the average time
+ * scaled by the relative cost of the updater.
+ *
+ * Without any previous results the estimates are relative costs, not times.
+ *
+ * @author Krzysztof Gałka
+ */
+public class CostEstimator {
+
+	private static final double DEFAULT_UPDATER_COST = 1.5;
+	// Relative cost of an update of a parameter, growing with the state kept
+	// by the updater
+	private static final Map<Updater, Double> UPDATER_COSTS = new EnumMap<>(Updater.class);
+
+	static {
+		UPDATER_COSTS.put(Updater.NONE, 1.0);
+		UPDATER_COSTS.put(Updater.SGD, 1.0);
+		UPDATER_COSTS.put(Updater.NESTEROVS, 1.5);
+		UPDATER_COSTS.put(Updater.ADAGRAD, 1.5);
+		UPDATER_COSTS.put(Updater.RMSPROP, 1.5);
+		UPDATER_COSTS.put(Updater.ADADELTA, 2.0);
+		UPDATER_COSTS.put(Updater.ADAM, 2.0);
+	}
+
+	// Milliseconds of training of a parameter for an epoch
+	private final Map<Updater, Double> updaterTimes = new EnumMap<>(Updater.class);
+	// Milliseconds of training of a parameter for an epoch per unit of the
+	// updater cost, NaN without any previous results
+	private final double averageTime;
+	private final int numberOfResults;
+
+	/**
+	 * Create an estimator from the results of the previous experiments. The
+	 * results without the metrics or the number of parameters are ignored.
+	 *
+	 * @param previousResults results of the previous experiments
+	 */
+	public CostEstimator(Collection<ExperimentInfoDTO> previousResults) {
+		Map<Updater, double[]> updaterSums = new EnumMap<>(Updater.class);
+		double timeSum = 0;
+		double workSum = 0;
+		int numberOfResults = 0;
+
+		for (ExperimentInfoDTO result : previousResults) {
+			if (result.getMetrics() == null || result.getNumberOfParameters() <= 0 || result.getNumberOfEpochs() <= 0
+					|| result.getUpdater() == null || !(result.getMetrics().getTrainingTimeMillis() > 0)) {
+				continue;
+			}
+
+			double time = result.getMetrics().getTrainingTimeMillis();
+			double work = (double) result.getNumberOfParameters() * result.getNumberOfEpochs();
+			double[] sums = updaterSums.computeIfAbsent(result.getUpdater(), updater -> new double[2]);
+			sums[0] += time;
+			sums[1] += work;
+			timeSum += time / getUpdaterCost(result.getUpdater());
+			workSum += work;
+			numberOfResults++;
+		}
+
+		for (Map.Entry<Updater, double[]> entry : updaterSums.entrySet()) {
+			updaterTimes.put(entry.getKey(), entry.getValue()[0] / entry.getValue()[1]);
+		}
+		this.averageTime = numberOfResults == 0 ? Double.NaN : timeSum / workSum;
+		this.numberOfResults = numberOfResults;
+	}
+
+	/**
+	 * Estimate the training time of a network.
+	 *
+	 * @param configuration configuration of the network
+	 * @param numberOfEpochs maximal number of epochs
+	 * @return estimated time in milliseconds or, without any previous
+	 *         results, the relative cost
+	 */
+	public double estimate(MultiLayerConfiguration configuration, int numberOfEpochs) {
+		Updater updater = configuration.getConf(0).getLayer().getUpdater();
+		double time;
+		if (updaterTimes.containsKey(updater)) {
+			time = updaterTimes.get(updater);
+		} else if (!Double.isNaN(averageTime)) {
+			time = averageTime * getUpdaterCost(updater);
+		} else {
+			time = getUpdaterCost(updater);
+		}
+		return time * Topology.countParameters(configuration) * numberOfEpochs;
+	}
+
+	/**
+	 * @return number of the previous results the estimates are based on
+	 */
+	public int getNumberOfResults() {
+		return numberOfResults;
+	}
+
+	private static double getUpdaterCost(Updater updater) {
+		return UPDATER_COSTS.getOrDefault(updater, DEFAULT_UPDATER_COST);
+	}
+}
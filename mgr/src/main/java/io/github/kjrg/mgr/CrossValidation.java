@@ -0,0 +1,358 @@
+package io.github.kjrg.mgr;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.ToDoubleFunction;
+
+import org.deeplearning4j.eval.Evaluation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+
+import io.github.kjrg.mgr.dto.CrossValidationStatisticsDTO;
+import io.github.kjrg.mgr.dto.ExperimentMetricsDTO;
+import io.github.kjrg.mgr.dto.TestResultDTO;
+
+/**
+ * A class dividing a dataset into the folds of a (repeated, optionally
+ * stratified) k-fold cross-validation and combining the results of the folds.
+ *
+ * The folds only hold the indices of their examples and share the dataset, so
+ * the features are not copied k times up front. The examples of a fold are
+ * copied when the fold is run, because every fold is normalized with the
+ * statistics of its own training part.
+ *
+ * @author Krzysztof Gałka
+ */
+public class CrossValidation {
+
+	private final int numberOfFolds;
+	private final int numberOfRepetitions;
+	private final boolean stratified;
+	private final double validationFraction;
+	private final long seed;
+
+	/**
+	 * @param numberOfFolds number of folds (k)
+	 * @param numberOfRepetitions number of repetitions, each with a different
+	 *            division into folds
+	 * @param stratified if true, the classes are divided between the folds
+	 *            in the same proportions as in the dataset
+	 * @param validationFraction part of the training examples of a fold held
+	 *            out for early stopping, 0 means no validation
+	 * @param seed seed of the random division
+	 */
+	public CrossValidation(int numberOfFolds, int numberOfRepetitions, boolean stratified, double validationFraction,
+			long seed) {
+		if (numberOfFolds < 2) {
+			throw new IllegalArgumentException("The number of folds has to be at least 2.");
+		}
+		if (numberOfRepetitions < 1) {
+			throw new IllegalArgumentException("The number of repetitions has to be at least 1.");
+		}
+		if (validationFraction < 0 || validationFraction >= 1) {
+			throw new IllegalArgumentException("The validation fraction " + validationFraction + " is not correct.");
+		}
+
+		this.numberOfFolds = numberOfFolds;
+		this.numberOfRepetitions = numberOfRepetitions;
+		this.stratified = stratified;
+		this.validationFraction = validationFraction;
+		this.seed = seed;
+	}
+
+	/**
+	 * Divide a dataset into folds.
+	 *
+	 * @param dataset dataset with all the examples, not normalized
+	 * @return folds of all the repetitions, in the order of the repetitions
+	 */
+	public List<Fold> createFolds(DataSet dataset) {
+		int numberOfExamples = dataset.numExamples();
+		if (numberOfExamples < numberOfFolds) {
+			throw new IllegalStateException("The dataset of " + numberOfExamples + " examples cannot be divided into "
+					+ numberOfFolds + " folds.");
+		}
+
+		List<Fold> folds = new ArrayList<>();
+		for (int repetition = 0; repetition < numberOfRepetitions; repetition++) {
+			Random random = new Random(seed + repetition);
+			int[] foldOfExample = stratified ? assignStratified(dataset, random) : assign(numberOfExamples, random);
+
+			for (int fold = 0; fold < numberOfFolds; fold++) {
+				List<Integer> trainingIndices = new ArrayList<>();
+				List<Integer> testIndices = new ArrayList<>();
+				for (int i = 0; i < numberOfExamples; i++) {
+					(foldOfExample[i] == fold ? testIndices : trainingIndices).add(i);
+				}
+
+				// The validation examples are drawn from the training part
+				int numberOfValidationExamples = (int) Math.round(trainingIndices.size() * validationFraction);
+				Collections.shuffle(trainingIndices, random);
+				List<Integer> validationIndices = new ArrayList<>(trainingIndices.subList(0,
+						numberOfValidationExamples));
+				trainingIndices = trainingIndices.subList(numberOfValidationExamples, trainingIndices.size());
+				Collections.sort(trainingIndices);
+				Collections.sort(validationIndices);
+
+				folds.add(new Fold(dataset, repetition, fold, toArray(trainingIndices), toArray(validationIndices),
+						toArray(testIndices)));
+			}
+		}
+		return folds;
+	}
+
+	/**
+	 * @return number of folds in all the repetitions
+	 */
+	public int getTotalNumberOfFolds() {
+		return numberOfFolds * numberOfRepetitions;
+	}
+
+	/**
+	 * Combine the results of the folds into a single result. The evaluation
+	 * is computed from the predictions of all the folds, the number of epochs,
+	 * the areas under the ROC curves and the metrics are averaged, except for
+	 * the peaks of memory.
+	 *
+	 * @param foldResults results of the folds
+	 * @param numberOfClasses number of classes in the dataset
+	 * @return combined result
+	 */
+	public static TestResultDTO combineResults(List<TestResultDTO> foldResults, int numberOfClasses) {
+		Evaluation evaluation = new Evaluation(numberOfClasses);
+		double numberOfEpochs = 0;
+		for (TestResultDTO foldResult : foldResults) {
+			evaluation.merge(foldResult.getEvaluation());
+			numberOfEpochs += foldResult.getNumberOfEpochs();
+		}
+
+		TestResultDTO result = new TestResultDTO(evaluation, (int) Math.round(numberOfEpochs / foldResults.size()),
+				combineMetrics(foldResults));
+		result.setAreasUnderRocCurve(combineAreasUnderRocCurve(foldResults, numberOfClasses));
+		return result;
+	}
+
+	/**
+	 * Compute the mean and the standard deviation of the scores of the folds.
+	 *
+	 * @param foldResults results of the folds
+	 * @return statistics of the scores
+	 */
+	public static CrossValidationStatisticsDTO computeStatistics(List<TestResultDTO> foldResults) {
+		double[] f1 = computeMeanAndStd(foldResults, result -> result.getEvaluation().f1());
+		double[] accuracy = computeMeanAndStd(foldResults, result -> result.getEvaluation().accuracy());
+		double[] precision = computeMeanAndStd(foldResults, result -> result.getEvaluation().precision());
+		double[] recall = computeMeanAndStd(foldResults, result -> result.getEvaluation().recall());
+
+		return new CrossValidationStatisticsDTO(foldResults.size(), f1[0], f1[1], accuracy[0], accuracy[1],
+				precision[0], precision[1], recall[0], recall[1]);
+	}
+
+	/*
+	 * Returns the mean and the sample standard deviation.
+	 */
+	private static double[] computeMeanAndStd(List<TestResultDTO> foldResults,
+			ToDoubleFunction<TestResultDTO> score) {
+		double sum = 0;
+		for (TestResultDTO foldResult : foldResults) {
+			sum += score.applyAsDouble(foldResult);
+		}
+		double mean = sum / foldResults.size();
+
+		double squaredDeviationSum = 0;
+		for (TestResultDTO foldResult : foldResults) {
+			double deviation = score.applyAsDouble(foldResult) - mean;
+			squaredDeviationSum += deviation * deviation;
+		}
+		double std = foldResults.size() < 2 ? 0 : Math.sqrt(squaredDeviationSum / (foldResults.size() - 1));
+
+		return new double[] { mean, std };
+	}
+
+	/*
+	 * The folds without the area of a class (e.g. without its examples) are
+	 * skipped for that class.
+	 */
+	private static double[] combineAreasUnderRocCurve(List<TestResultDTO> foldResults, int numberOfClasses) {
+		double[] sums = new double[numberOfClasses];
+		int[] numbersOfFolds = new int[numberOfClasses];
+		for (TestResultDTO foldResult : foldResults) {
+			double[] areas = foldResult.getAreasUnderRocCurve();
+			if (areas == null) {
+				return null;
+			}
+			for (int c = 0; c < numberOfClasses; c++) {
+				if (!Double.isNaN(areas[c])) {
+					sums[c] += areas[c];
+					numbersOfFolds[c]++;
+				}
+			}
+		}
+
+		double[] areas = new double[numberOfClasses];
+		for (int c = 0; c < numberOfClasses; c++) {
+			areas[c] = numbersOfFolds[c] == 0 ? Double.NaN : sums[c] / numbersOfFolds[c];
+		}
+		return areas;
+	}
+
+	private static ExperimentMetricsDTO combineMetrics(List<TestResultDTO> foldResults) {
+		for (TestResultDTO foldResult : foldResults) {
+			if (foldResult.getMetrics() == null) {
+				return null;
+			}
+		}
+
+		double trainingTime = 0;
+		double epochTime = 0;
+		double inferenceTime = 0;
+		double inferenceLatency = 0;
+		double samplesPerSecond = 0;
+		long peakHeapBytes = 0;
+		long peakOffHeapBytes = 0;
+		long gcTime = 0;
+		long allocatedBytes = 0;
+		for (TestResultDTO foldResult : foldResults) {
+			ExperimentMetricsDTO metrics = foldResult.getMetrics();
+			trainingTime += metrics.getTrainingTimeMillis();
+			epochTime += metrics.getEpochTimeMillis();
+			inferenceTime += metrics.getInferenceTimeMillis();
+			inferenceLatency += metrics.getInferenceLatencyMicros();
+			samplesPerSecond += metrics.getTrainingSamplesPerSecond();
+			peakHeapBytes = Math.max(peakHeapBytes, metrics.getPeakHeapBytes());
+			peakOffHeapBytes = Math.max(peakOffHeapBytes, metrics.getPeakOffHeapBytes());
+			gcTime += metrics.getGcTimeMillis();
+			allocatedBytes = allocatedBytes < 0 || metrics.getAllocatedBytes() < 0 ? -1
+					: allocatedBytes + metrics.getAllocatedBytes();
+		}
+
+		int n = foldResults.size();
+		return new ExperimentMetricsDTO(trainingTime / n, epochTime / n, inferenceTime / n, inferenceLatency / n,
+				samplesPerSecond / n, peakHeapBytes, peakOffHeapBytes, gcTime / n,
+				allocatedBytes < 0 ? -1 : allocatedBytes / n, foldResults.get(0).getMetrics().getDataType());
+	}
+
+	/*
+	 * The examples are shuffled and dealt to the folds in turn.
+	 */
+	private int[] assign(int numberOfExamples, Random random) {
+		List<Integer> indices = new ArrayList<>();
+		for (int i = 0; i < numberOfExamples; i++) {
+			indices.add(i);
+		}
+		Collections.shuffle(indices, random);
+
+		int[] foldOfExample = new int[numberOfExamples];
+		for (int i = 0; i < numberOfExamples; i++) {
+			foldOfExample[indices.get(i)] = i % numberOfFolds;
+		}
+		return foldOfExample;
+	}
+
+	/*
+	 * The examples of every class are shuffled and dealt to the folds in
+	 * turn. The dealing continues from class to class, so that the sizes of
+	 * the folds differ by at most one.
+	 */
+	private int[] assignStratified(DataSet dataset, Random random) {
+		INDArray labels = dataset.getLabels();
+		int numberOfExamples = dataset.numExamples();
+
+		List<List<Integer>> indicesOfClasses = new ArrayList<>();
+		for (int c = 0; c < labels.columns(); c++) {
+			indicesOfClasses.add(new ArrayList<>());
+		}
+		for (int i = 0; i < numberOfExamples; i++) {
+			int label = 0;
+			for (int c = 1; c < labels.columns(); c++) {
+				if (labels.getDouble(i, c) > labels.getDouble(i, label)) {
+					label = c;
+				}
+			}
+			indicesOfClasses.get(label).add(i);
+		}
+
+		int[] foldOfExample = new int[numberOfExamples];
+		int position = 0;
+		for (List<Integer> indicesOfClass : indicesOfClasses) {
+			Collections.shuffle(indicesOfClass, random);
+			for (int index : indicesOfClass) {
+				foldOfExample[index] = position++ % numberOfFolds;
+			}
+		}
+		return foldOfExample;
+	}
+
+	private static int[] toArray(List<Integer> indices) {
+		int[] array = new int[indices.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = indices.get(i);
+		}
+		return array;
+	}
+
+	/**
+	 * A fold of the cross-validation - the indices of its examples in the
+	 * shared dataset.
+	 */
+	public static class Fold {
+
+		private final DataSet dataset;
+		private final int repetition;
+		private final int index;
+		private final int[] trainingIndices;
+		private final int[] validationIndices;
+		private final int[] testIndices;
+
+		private Fold(DataSet dataset, int repetition, int index, int[] trainingIndices, int[] validationIndices,
+				int[] testIndices) {
+			this.dataset = dataset;
+			this.repetition = repetition;
+			this.index = index;
+			this.trainingIndices = trainingIndices;
+			this.validationIndices = validationIndices;
+			this.testIndices = testIndices;
+		}
+
+		/**
+		 * Copy the examples of the fold and normalize them with the
+		 * statistics of the training part.
+		 *
+		 * @return training, validation (null, if there is no validation) and
+		 *         test datasets of the fold
+		 */
+		public DataSet[] createDatasets() {
+			DataSet trainDataset = selectExamples(trainingIndices);
+			DataSet validationDataset = validationIndices.length == 0 ? null : selectExamples(validationIndices);
+			DataSet testDataset = selectExamples(testIndices);
+
+			StandardizationStatistics statistics = StandardizationStatistics.fit(trainDataset);
+			statistics.transform(trainDataset);
+			if (validationDataset != null) {
+				statistics.transform(validationDataset);
+			}
+			statistics.transform(testDataset);
+
+			return new DataSet[] { trainDataset, validationDataset, testDataset };
+		}
+
+		public int getRepetition() {
+			return repetition;
+		}
+
+		public int getIndex() {
+			return index;
+		}
+
+		public int getNumberOfTestExamples() {
+			return testIndices.length;
+		}
+
+		private DataSet selectExamples(int[] indices) {
+			// getRows copies the rows
+			return new DataSet(dataset.getFeatureMatrix().getRows(indices), dataset.getLabels().getRows(indices));
+		}
+	}
+}
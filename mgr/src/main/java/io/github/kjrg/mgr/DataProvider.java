@@ -1,32 +1,171 @@
-package io.github.kjrg.mgr;
-
-import java.io.File;
-import java.io.IOException;
-
-import org.datavec.api.records.reader.RecordReader;
-import org.datavec.api.records.reader.impl.csv.CSVRecordReader;
-import org.datavec.api.split.FileSplit;
-import org.deeplearning4j.datasets.datavec.RecordReaderDataSetIterator;
-import org.nd4j.linalg.dataset.DataSet;
-import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
-
-/**
- * Class responsible for providing datasets.
- * 
- * @author Krzysztof Gaka
- */
-public class DataProvider {
-
-	private static final int LINES_TO_SKIP = 0;
-	private static final String SEPARATOR = ";";
-
-	public DataSet readDatasetFromFile(String filepath, int batchSize, int labelColumnIndex, int numberOfLabels)
-			throws IOException, InterruptedException {
-		RecordReader recordReader = new CSVRecordReader(LINES_TO_SKIP, SEPARATOR);
-		recordReader.initialize(new FileSplit(new File(filepath)));
-		DataSetIterator datasetIterator = new RecordReaderDataSetIterator(recordReader, batchSize, labelColumnIndex,
-				numberOfLabels);
-		DataSet dataset = datasetIterator.next();
-		return dataset;
-	}
-}
+package io.github.kjrg.mgr;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.datavec.api.records.reader.RecordReader;
+import org.datavec.api.records.reader.impl.csv.CSVRecordReader;
+import org.datavec.api.split.FileSplit;
+import org.deeplearning4j.datasets.datavec.RecordReaderDataSetIterator;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.SplitTestAndTrain;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+
+/**
+ * Class responsible for providing datasets.
+ * 
+ * @author Krzysztof Gałka
+ */
+public class DataProvider {
+
+	private static final int LINES_TO_SKIP = 0;
+	private static final String SEPARATOR = ";";
+
+	private final DatasetCache datasetCache;
+
+	public DataProvider() {
+		this(null);
+	}
+
+	/**
+	 * Create a data provider which stores the parsed datasets in a cache and
+	 * reads them from it on later runs.
+	 * 
+	 * @param datasetCache cache of the parsed datasets, may be null
+	 */
+	public DataProvider(DatasetCache datasetCache) {
+		this.datasetCache = datasetCache;
+	}
+
+	/**
+	 * Read the whole dataset from a CSV file into memory.
+	 * 
+	 * @param filepath path of the CSV file
+	 * @param batchSize number of rows in the file
+	 * @param labelColumnIndex index of the column containing the label
+	 * @param numberOfLabels number of classes in the dataset
+	 * @return dataset containing all the rows of the file
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public DataSet readDatasetFromFile(String filepath, int batchSize, int labelColumnIndex, int numberOfLabels)
+			throws IOException, InterruptedException {
+		if (datasetCache != null) {
+			DataSet cachedDataset = datasetCache.loadDataset(filepath, labelColumnIndex, numberOfLabels);
+			if (cachedDataset != null) {
+				System.out.println("Dataset " + filepath + " read from cache");
+				return cachedDataset;
+			}
+		}
+
+		DataSet dataset = parseDatasetFromFile(filepath, batchSize, labelColumnIndex, numberOfLabels);
+
+		if (datasetCache != null && dataset != null) {
+			datasetCache.saveDataset(filepath, labelColumnIndex, numberOfLabels, dataset);
+		}
+		return dataset;
+	}
+
+	/**
+	 * Compute the normalization statistics of a dataset read from a file. The
+	 * statistics are read from the cache, if they have been computed before.
+	 * 
+	 * @param filepath path of the CSV file the dataset was read from
+	 * @param dataset dataset read from the file
+	 * @param labelColumnIndex index of the column containing the label
+	 * @param numberOfLabels number of classes in the dataset
+	 * @return normalization statistics of the dataset
+	 * @throws IOException
+	 */
+	public StandardizationStatistics readStandardizationStatistics(String filepath, DataSet dataset,
+			int labelColumnIndex, int numberOfLabels) throws IOException {
+		if (datasetCache != null) {
+			StandardizationStatistics cachedStatistics = datasetCache.loadStatistics(filepath, labelColumnIndex,
+					numberOfLabels);
+			if (cachedStatistics != null) {
+				return cachedStatistics;
+			}
+		}
+
+		StandardizationStatistics statistics = StandardizationStatistics.fit(dataset);
+
+		if (datasetCache != null) {
+			datasetCache.saveStatistics(filepath, labelColumnIndex, numberOfLabels, statistics);
+		}
+		return statistics;
+	}
+
+	/**
+	 * Split a dataset into a training part and a validation part. The examples
+	 * are assigned to the parts randomly, but the split is the same for the
+	 * same seed.
+	 * 
+	 * @param dataset dataset to be split
+	 * @param validationFraction part of the examples put into the validation
+	 *            part
+	 * @param seed seed of the random assignment of the examples
+	 * @return training part (train) and validation part (test) of the dataset
+	 */
+	public SplitTestAndTrain splitDataset(DataSet dataset, double validationFraction, long seed) {
+		int numberOfExamples = dataset.numExamples();
+		int numberOfValidationExamples = (int) Math.round(numberOfExamples * validationFraction);
+		if (numberOfValidationExamples < 1 || numberOfValidationExamples >= numberOfExamples) {
+			throw new IllegalStateException("The validation fraction " + validationFraction
+					+ " is not correct for a dataset of " + numberOfExamples + " examples.");
+		}
+
+		List<Integer> indices = new ArrayList<>();
+		for (int i = 0; i < numberOfExamples; i++) {
+			indices.add(i);
+		}
+		Collections.shuffle(indices, new Random(seed));
+
+		int[] validationIndices = toArray(indices.subList(0, numberOfValidationExamples));
+		int[] trainingIndices = toArray(indices.subList(numberOfValidationExamples, numberOfExamples));
+
+		return new SplitTestAndTrain(selectExamples(dataset, trainingIndices),
+				selectExamples(dataset, validationIndices));
+	}
+
+	private DataSet selectExamples(DataSet dataset, int[] indices) {
+		return new DataSet(dataset.getFeatureMatrix().getRows(indices), dataset.getLabels().getRows(indices));
+	}
+
+	private int[] toArray(List<Integer> indices) {
+		int[] array = new int[indices.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = indices.get(i);
+		}
+		return array;
+	}
+
+	private DataSet parseDatasetFromFile(String filepath, int batchSize, int labelColumnIndex, int numberOfLabels)
+			throws IOException {
+		NumericCsvReader reader = new NumericCsvReader(SEPARATOR.charAt(0), LINES_TO_SKIP);
+		return reader.read(filepath, batchSize, labelColumnIndex, numberOfLabels);
+	}
+
+	/**
+	 * Create an iterator reading the dataset from a CSV file in mini-batches.
+	 * The number of rows in the file does not have to be known and only a
+	 * single mini-batch is kept in memory at a time.
+	 * 
+	 * @param filepath path of the CSV file
+	 * @param miniBatchSize number of rows in a single mini-batch
+	 * @param labelColumnIndex index of the column containing the label
+	 * @param numberOfLabels number of classes in the dataset
+	 * @return iterator over the mini-batches of the dataset
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public DataSetIterator readDatasetIteratorFromFile(String filepath, int miniBatchSize, int labelColumnIndex,
+			int numberOfLabels) throws IOException, InterruptedException {
+		RecordReader recordReader = new CSVRecordReader(LINES_TO_SKIP, SEPARATOR);
+		recordReader.initialize(new FileSplit(new File(filepath)));
+		return new RecordReaderDataSetIterator(recordReader, miniBatchSize, labelColumnIndex, numberOfLabels);
+	}
+}
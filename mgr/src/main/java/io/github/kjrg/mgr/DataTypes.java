@@ -0,0 +1,66 @@
+package io.github.kjrg.mgr;
+
+import java.util.Locale;
+
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.buffer.util.DataTypeUtil;
+import org.nd4j.linalg.factory.Nd4j;
+
+/**
+ * A class for choosing the data type of the arrays of ND4J, used for the
+ * data, the training and the inference.
+ *
+ * @author Krzysztof Gałka
+ */
+public final class DataTypes {
+
+	public static final String DEFAULT_DATA_TYPE = "float";
+
+	private DataTypes() {
+	}
+
+	/**
+	 * Set the data type of the arrays created by ND4J. It has to be set before
+	 * any array is created. The half precision is supported only by the CUDA
+	 * backend, float is used instead on the other backends.
+	 *
+	 * @param name float, double or half
+	 * @return the data type which was set
+	 */
+	public static DataBuffer.Type apply(String name) {
+		DataBuffer.Type type;
+		switch (name.trim().toLowerCase(Locale.ROOT)) {
+		case "float":
+			type = DataBuffer.Type.FLOAT;
+			break;
+		case "double":
+			type = DataBuffer.Type.DOUBLE;
+			break;
+		case "half":
+			type = DataBuffer.Type.HALF;
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown data type: " + name + " (float, double or half expected)");
+		}
+
+		if (type == DataBuffer.Type.HALF && !isHalfPrecisionSupported()) {
+			System.out.println("Warning: the half precision is supported only by the CUDA backend of ND4J,"
+					+ " float is used instead");
+			type = DataBuffer.Type.FLOAT;
+		}
+		DataTypeUtil.setDTypeForContext(type);
+		return type;
+	}
+
+	/**
+	 * @param type data type
+	 * @return name of the data type, as in the configuration
+	 */
+	public static String getName(DataBuffer.Type type) {
+		return type.name().toLowerCase(Locale.ROOT);
+	}
+
+	private static boolean isHalfPrecisionSupported() {
+		return Nd4j.getBackend().getClass().getName().toLowerCase(Locale.ROOT).contains("cuda");
+	}
+}
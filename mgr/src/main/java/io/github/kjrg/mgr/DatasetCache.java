@@ -0,0 +1,244 @@
+package io.github.kjrg.mgr;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+
+/**
+ * A cache of parsed datasets and normalization statistics. The entries are
+ * stored in a compact binary format, in files named after the hash of the
+ * content of the source file. They are read back using memory-mapped I/O, the
+ * values of an array are copied once from the mapped file to a buffer
+ * allocated by ND4J, so the arrays do not depend on the mapping and can be
+ * modified in place.
+ *
+ * @author Krzysztof Gałka
+ */
+public class DatasetCache {
+
+	private static final int MAGIC_NUMBER = 0x4D475243;
+	private static final int FORMAT_VERSION = 2;
+	private static final byte DOUBLE_VALUES = 0;
+	private static final byte FLOAT_VALUES = 1;
+	private static final String DATASET_FILE_EXTENSION = ".dataset";
+	private static final String STATISTICS_FILE_EXTENSION = ".statistics";
+	private static final String TEMPORARY_FILE_EXTENSION = ".tmp";
+	private static final int IO_BUFFER_SIZE = 1 << 16;
+
+	private final File cacheDirectory;
+
+	/**
+	 * Create a cache.
+	 *
+	 * @param cacheDirectoryPath path of the directory in which the cache
+	 *            files are stored, it is created if it does not exist
+	 */
+	public DatasetCache(String cacheDirectoryPath) {
+		this.cacheDirectory = new File(cacheDirectoryPath);
+		if (!cacheDirectory.isDirectory() && !cacheDirectory.mkdirs()) {
+			throw new IllegalStateException("The cache directory " + cacheDirectoryPath + " could not be created.");
+		}
+	}
+
+	/**
+	 * Load a dataset parsed earlier from the source file.
+	 *
+	 * @param sourceFilepath path of the CSV file
+	 * @param labelColumnIndex index of the column containing the label
+	 * @param numberOfLabels number of classes in the dataset
+	 * @return the cached dataset or null, if the file has not been cached
+	 * @throws IOException
+	 */
+	public DataSet loadDataset(String sourceFilepath, int labelColumnIndex, int numberOfLabels) throws IOException {
+		INDArray[] arrays = readArrays(getCacheFile(sourceFilepath, labelColumnIndex, numberOfLabels,
+				DATASET_FILE_EXTENSION));
+		return arrays == null ? null : new DataSet(arrays[0], arrays[1]);
+	}
+
+	/**
+	 * Save a dataset parsed from the source file.
+	 *
+	 * @param sourceFilepath path of the CSV file
+	 * @param labelColumnIndex index of the column containing the label
+	 * @param numberOfLabels number of classes in the dataset
+	 * @param dataset dataset read from the file
+	 * @throws IOException
+	 */
+	public void saveDataset(String sourceFilepath, int labelColumnIndex, int numberOfLabels, DataSet dataset)
+			throws IOException {
+		writeArrays(getCacheFile(sourceFilepath, labelColumnIndex, numberOfLabels, DATASET_FILE_EXTENSION),
+				dataset.getFeatureMatrix(), dataset.getLabels());
+	}
+
+	/**
+	 * Load the normalization statistics fitted earlier on the dataset from
+	 * the source file.
+	 *
+	 * @param sourceFilepath path of the CSV file
+	 * @param labelColumnIndex index of the column containing the label
+	 * @param numberOfLabels number of classes in the dataset
+	 * @return the cached statistics or null, if they have not been cached
+	 * @throws IOException
+	 */
+	public StandardizationStatistics loadStatistics(String sourceFilepath, int labelColumnIndex, int numberOfLabels)
+			throws IOException {
+		INDArray[] arrays = readArrays(getCacheFile(sourceFilepath, labelColumnIndex, numberOfLabels,
+				STATISTICS_FILE_EXTENSION));
+		return arrays == null ? null : new StandardizationStatistics(arrays[0], arrays[1]);
+	}
+
+	/**
+	 * Save the normalization statistics fitted on the dataset from the source
+	 * file.
+	 *
+	 * @param sourceFilepath path of the CSV file
+	 * @param labelColumnIndex index of the column containing the label
+	 * @param numberOfLabels number of classes in the dataset
+	 * @param statistics statistics of the dataset
+	 * @throws IOException
+	 */
+	public void saveStatistics(String sourceFilepath, int labelColumnIndex, int numberOfLabels,
+			StandardizationStatistics statistics) throws IOException {
+		writeArrays(getCacheFile(sourceFilepath, labelColumnIndex, numberOfLabels, STATISTICS_FILE_EXTENSION),
+				statistics.getMean(), statistics.getStd());
+	}
+
+	private File getCacheFile(String sourceFilepath, int labelColumnIndex, int numberOfLabels, String extension)
+			throws IOException {
+		String key = Hashes.ofFile(sourceFilepath, String.valueOf(labelColumnIndex), String.valueOf(numberOfLabels),
+				DataTypes.getName(Nd4j.dataType()));
+		return new File(cacheDirectory, key + extension);
+	}
+
+	/*
+	 * File format (little-endian): magic number, format version, type of the
+	 * values, number of arrays, then the shape (rows, columns) of every array
+	 * followed by the values of all the arrays in row-major order. The values
+	 * are stored as doubles for the double data type and as floats otherwise -
+	 * the values of the half precision are stored as floats too and they are
+	 * converted back when the file is read.
+	 */
+	private void writeArrays(File file, INDArray... arrays) throws IOException {
+		boolean floatValues = Nd4j.dataType() != DataBuffer.Type.DOUBLE;
+		File temporaryFile = new File(file.getPath() + TEMPORARY_FILE_EXTENSION);
+
+		try (FileChannel channel = FileChannel.open(temporaryFile.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			ByteBuffer buffer = ByteBuffer.allocate(IO_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(MAGIC_NUMBER);
+			buffer.putInt(FORMAT_VERSION);
+			buffer.put(floatValues ? FLOAT_VALUES : DOUBLE_VALUES);
+			buffer.putInt(arrays.length);
+
+			for (INDArray array : arrays) {
+				if (buffer.remaining() < 2 * Integer.BYTES) {
+					writeBuffer(channel, buffer);
+				}
+				buffer.putInt(array.rows());
+				buffer.putInt(array.columns());
+			}
+
+			for (INDArray array : arrays) {
+				DataBuffer data = array.dup('c').data();
+				if (floatValues) {
+					for (float value : data.asFloat()) {
+						if (buffer.remaining() < Float.BYTES) {
+							writeBuffer(channel, buffer);
+						}
+						buffer.putFloat(value);
+					}
+				} else {
+					for (double value : data.asDouble()) {
+						if (buffer.remaining() < Double.BYTES) {
+							writeBuffer(channel, buffer);
+						}
+						buffer.putDouble(value);
+					}
+				}
+			}
+			writeBuffer(channel, buffer);
+		}
+
+		// The entry becomes visible only when it is complete
+		Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private INDArray[] readArrays(File file) throws IOException {
+		if (!file.isFile()) {
+			return null;
+		}
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+			if (buffer.getInt() != MAGIC_NUMBER || buffer.getInt() != FORMAT_VERSION) {
+				System.out.println("Warning: the cache file " + file + " is not correct and will be ignored");
+				return null;
+			}
+
+			boolean floatValues = buffer.get() == FLOAT_VALUES;
+			INDArray[] arrays = new INDArray[buffer.getInt()];
+			int[][] shapes = new int[arrays.length][];
+			for (int i = 0; i < arrays.length; i++) {
+				shapes[i] = new int[] { buffer.getInt(), buffer.getInt() };
+			}
+
+			// The values are copied from the region of an array in the mapped
+			// file to the buffer of the array, without an intermediate Java
+			// array. The mapping is read-only and it is released after reading.
+			for (int i = 0; i < arrays.length; i++) {
+				int length = shapes[i][0] * shapes[i][1];
+				int lengthInBytes = length * (floatValues ? Float.BYTES : Double.BYTES);
+				ByteBuffer region = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+				region.limit(lengthInBytes);
+				arrays[i] = Nd4j.create(shapes[i], 'c');
+				copyValues(region, floatValues, arrays[i].data(), length);
+				buffer.position(buffer.position() + lengthInBytes);
+			}
+
+			return arrays;
+		}
+	}
+
+	/*
+	 * The values are copied in bulk, if the type of the values in the file is
+	 * the type of the array, and converted one by one otherwise (half
+	 * precision).
+	 */
+	private static void copyValues(ByteBuffer region, boolean floatValues, DataBuffer data, int length) {
+		if (floatValues && data.dataType() == DataBuffer.Type.FLOAT) {
+			data.asNioFloat().put(region.asFloatBuffer());
+		} else if (!floatValues && data.dataType() == DataBuffer.Type.DOUBLE) {
+			data.asNioDouble().put(region.asDoubleBuffer());
+		} else {
+			for (int j = 0; j < length; j++) {
+				if (floatValues) {
+					data.put(j, region.getFloat(j * Float.BYTES));
+				} else {
+					data.put(j, region.getDouble(j * Double.BYTES));
+				}
+			}
+		}
+	}
+
+	private static void writeBuffer(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+}
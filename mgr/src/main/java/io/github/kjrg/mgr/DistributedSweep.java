@@ -0,0 +1,126 @@
+package io.github.kjrg.mgr;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Properties;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+
+/**
+ * Coordinator of a sweep run by several processes, possibly on several
+ * machines, through a {@link WorkQueue} in a shared directory
+ * (distributed.work_directory_path).
+ *
+ * coordinator - create the tasks of the grid of configurations
+ * status - print the numbers of pending, claimed and finished tasks
+ * merge - create the report from the results of all the tasks
+ *
+ * The workers are started as the main application with the search mode
+ * distributed, any number of them can be started and stopped at any time.
+ *
+ * @author Krzysztof Gałka
+ */
+public class DistributedSweep {
+
+	private static final String DEFAULT_CONFIGURATION_FILEPATH = "configuration.properties";
+	private static final String COORDINATOR_COMMAND = "coordinator";
+	private static final String STATUS_COMMAND = "status";
+	private static final String MERGE_COMMAND = "merge";
+
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.err.println("Usage: DistributedSweep coordinator|status|merge [configuration_filepath]");
+			System.exit(1);
+		}
+		String command = args[0];
+		String configurationFilepath = args.length < 2 || args[1].isEmpty() ? DEFAULT_CONFIGURATION_FILEPATH
+				: args[1];
+
+		try {
+			Properties properties = new Properties();
+			try (FileInputStream fileInputStream = new FileInputStream(configurationFilepath)) {
+				properties.load(fileInputStream);
+			}
+			WorkQueue workQueue = new WorkQueue(readWorkDirectoryPath(properties));
+
+			if (COORDINATOR_COMMAND.equals(command)) {
+				ConfigurationGrid configurations = new NeuralNetworkConfigurationProvider()
+						.readConfigurationGridFromProperties(properties);
+				int numberOfCreatedTasks = workQueue.createTasks(configurations,
+						createSweepFingerprint(properties, configurations));
+				System.out.println("Created " + numberOfCreatedTasks + " of " + configurations.size()
+						+ " task(s), the other ones already exist");
+				printStatus(workQueue);
+			} else if (STATUS_COMMAND.equals(command)) {
+				printStatus(workQueue);
+			} else if (MERGE_COMMAND.equals(command)) {
+				merge(workQueue, properties);
+			} else {
+				System.err.println("Unknown command: " + command);
+				System.exit(1);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * The fingerprint of a sweep covers the data, the settings, the number of
+	 * epochs and every configuration of the grid, so that neither the workers
+	 * started with a different configuration file nor the coordinator run
+	 * again after the grid was changed mix their tasks and results into the
+	 * sweep (the tasks are named after their positions in the grid).
+	 *
+	 * @param properties the configuration
+	 * @param configurations the whole grid of configurations of the sweep
+	 * @return the fingerprint
+	 * @throws IOException
+	 */
+	static String createSweepFingerprint(Properties properties, Iterable<MultiLayerConfiguration> configurations)
+			throws IOException {
+		return Hashes.ofText(App.createDatasetFingerprint(properties), properties.getProperty("number_of_epochs"),
+				properties.getProperty("data.number_of_labels"), Hashes.ofConfigurations(configurations));
+	}
+
+	static String readWorkDirectoryPath(Properties properties) {
+		String workDirectoryPath = properties.getProperty("distributed.work_directory_path", "");
+		if (workDirectoryPath.isEmpty()) {
+			throw new IllegalStateException("The work directory (distributed.work_directory_path) is not set.");
+		}
+		return workDirectoryPath;
+	}
+
+	private static void merge(WorkQueue workQueue, Properties properties) throws IOException {
+		ExperimentInfoCodec codec = new ExperimentInfoCodec(
+				Integer.parseInt(properties.getProperty("data.number_of_labels")));
+		List<String> results = workQueue.readResults();
+		int numberOfTasks = workQueue.getNumberOfTasks();
+		if (results.size() < numberOfTasks) {
+			System.out.println("Warning: only " + results.size() + " of " + numberOfTasks
+					+ " task(s) are finished, the report is incomplete");
+		}
+
+		CompositeResultSink resultSink = ResultSinks.open(
+				properties.getProperty("report.sinks", ResultSinks.DEFAULT_SINKS),
+				properties.getProperty("report_directory_path"),
+				Integer.parseInt(properties.getProperty("report.flush_interval", "100")));
+		try {
+			for (String result : results) {
+				resultSink.append(codec.decode(result));
+			}
+		} finally {
+			resultSink.close();
+		}
+		for (ResultSink sink : resultSink.getSinks()) {
+			System.out.println("Results of " + results.size() + " experiment(s) saved in " + sink.getOutputFilepath());
+		}
+	}
+
+	private static void printStatus(WorkQueue workQueue) {
+		int[] numbersOfTasks = workQueue.countTasks();
+		System.out.println("Pending: " + numbersOfTasks[0] + ", claimed: " + numbersOfTasks[1] + ", finished: "
+				+ numbersOfTasks[2]);
+	}
+}
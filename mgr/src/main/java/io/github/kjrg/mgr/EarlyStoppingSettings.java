@@ -0,0 +1,64 @@
+package io.github.kjrg.mgr;
+
+/**
+ * A class representing the settings of early stopping of the training.
+ * 
+ * @author Krzysztof Gałka
+ */
+public class EarlyStoppingSettings {
+
+	private final double validationFraction;
+	private final int patience;
+	private final double minImprovement;
+	private final long maxTrainingTimeMillis;
+
+	/**
+	 * Create the settings of early stopping.
+	 * 
+	 * @param validationFraction part of the training dataset held out for
+	 *            validation
+	 * @param patience number of epochs without improvement of the validation
+	 *            score after which the training is stopped
+	 * @param minImprovement minimal decrease of the validation score treated
+	 *            as an improvement
+	 * @param maxTrainingTimeMillis maximal training time of a single network in
+	 *            milliseconds, 0 means no limit
+	 */
+	public EarlyStoppingSettings(double validationFraction, int patience, double minImprovement,
+			long maxTrainingTimeMillis) {
+		if (validationFraction < 0 || validationFraction >= 1) {
+			throw new IllegalArgumentException("The validation fraction has to be in range [0, 1).");
+		}
+		if (patience < 1) {
+			throw new IllegalArgumentException("The patience has to be at least 1.");
+		}
+		if (maxTrainingTimeMillis < 0) {
+			throw new IllegalArgumentException("The maximal training time cannot be negative.");
+		}
+
+		this.validationFraction = validationFraction;
+		this.patience = patience;
+		this.minImprovement = minImprovement;
+		this.maxTrainingTimeMillis = maxTrainingTimeMillis;
+	}
+
+	public double getValidationFraction() {
+		return validationFraction;
+	}
+
+	public int getPatience() {
+		return patience;
+	}
+
+	public double getMinImprovement() {
+		return minImprovement;
+	}
+
+	public long getMaxTrainingTimeMillis() {
+		return maxTrainingTimeMillis;
+	}
+
+	public boolean isTrainingTimeLimited() {
+		return maxTrainingTimeMillis > 0;
+	}
+}
@@ -0,0 +1,278 @@
+package io.github.kjrg.mgr;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.deeplearning4j.eval.ConfusionMatrix;
+import org.deeplearning4j.eval.Evaluation;
+import org.deeplearning4j.nn.conf.Updater;
+
+import io.github.kjrg.mgr.dto.ExperimentInfoDTO;
+import io.github.kjrg.mgr.dto.ExperimentMetricsDTO;
+import io.github.kjrg.mgr.dto.TestResultDTO;
+
+/**
+ * A class for converting the information about an experiment (or the result
+ * of a test) to a single line of text and back. The line consists of tab-separated name=value fields, the
+ * evaluation is stored as its confusion matrix. The metrics, the areas under
+ * the ROC curves and the topology are optional, the lines written before they
+ * were recorded have none.
+ * 
+ * @author Krzysztof Gałka
+ */
+public class ExperimentInfoCodec {
+
+	private static final String FIELD_SEPARATOR = "\t";
+	private static final String NAME_VALUE_SEPARATOR = "=";
+	private static final String VALUE_SEPARATOR = ",";
+
+	private static final String NEURONS_IN_HIDDEN_LAYER_FIELD = "neurons";
+	private static final String ACTIVATION_FUNCTION_FIELD = "activation";
+	private static final String UPDATER_FIELD = "updater";
+	private static final String EPOCHS_FIELD = "epochs";
+	private static final String CONFUSION_MATRIX_FIELD = "confusion_matrix";
+	private static final String METRICS_FIELD = "metrics";
+	private static final String AREAS_UNDER_ROC_CURVE_FIELD = "auc";
+	private static final String TOPOLOGY_FIELD = "topology";
+	private static final String PARAMETERS_FIELD = "parameters";
+	private static final String DROPOUT_FIELD = "dropout";
+	private static final int NUMBER_OF_METRICS = 10;
+	// Metrics encoded before the data type was recorded
+	private static final int NUMBER_OF_METRICS_WITHOUT_DATA_TYPE = 9;
+
+	private final int numberOfClasses;
+
+	/**
+	 * Create a codec.
+	 * 
+	 * @param numberOfClasses number of classes in the dataset
+	 */
+	public ExperimentInfoCodec(int numberOfClasses) {
+		this.numberOfClasses = numberOfClasses;
+	}
+
+	/**
+	 * Convert the information about an experiment to a line of text.
+	 * 
+	 * @param experimentInfo information about an experiment
+	 * @return line of text, without the line separator
+	 */
+	public String encode(ExperimentInfoDTO experimentInfo) {
+		Map<String, String> fields = new LinkedHashMap<>();
+		fields.put(NEURONS_IN_HIDDEN_LAYER_FIELD, String.valueOf(experimentInfo.getNumberOfNeuronsInHiddenLayer()));
+		fields.put(ACTIVATION_FUNCTION_FIELD, experimentInfo.getActivationFunction());
+		fields.put(UPDATER_FIELD, experimentInfo.getUpdater() == null ? "" : experimentInfo.getUpdater().name());
+		fields.put(EPOCHS_FIELD, String.valueOf(experimentInfo.getNumberOfEpochs()));
+		fields.put(CONFUSION_MATRIX_FIELD, encodeEvaluation(experimentInfo.getExperimentResult()));
+		if (experimentInfo.getMetrics() != null) {
+			fields.put(METRICS_FIELD, encodeMetrics(experimentInfo.getMetrics()));
+		}
+		if (experimentInfo.getAreasUnderRocCurve() != null) {
+			fields.put(AREAS_UNDER_ROC_CURVE_FIELD, encodeValues(experimentInfo.getAreasUnderRocCurve()));
+		}
+		fields.put(TOPOLOGY_FIELD, experimentInfo.getTopology());
+		fields.put(PARAMETERS_FIELD, String.valueOf(experimentInfo.getNumberOfParameters()));
+		fields.put(DROPOUT_FIELD, String.valueOf(experimentInfo.getDropOut()));
+		return joinFields(fields);
+	}
+
+	/**
+	 * Convert the result of a test to a line of text. The network is not
+	 * stored.
+	 * 
+	 * @param testResult result of a test
+	 * @return line of text, without the line separator
+	 */
+	public String encode(TestResultDTO testResult) {
+		Map<String, String> fields = new LinkedHashMap<>();
+		fields.put(EPOCHS_FIELD, String.valueOf(testResult.getNumberOfEpochs()));
+		fields.put(CONFUSION_MATRIX_FIELD, encodeEvaluation(testResult.getEvaluation()));
+		if (testResult.getMetrics() != null) {
+			fields.put(METRICS_FIELD, encodeMetrics(testResult.getMetrics()));
+		}
+		if (testResult.getAreasUnderRocCurve() != null) {
+			fields.put(AREAS_UNDER_ROC_CURVE_FIELD, encodeValues(testResult.getAreasUnderRocCurve()));
+		}
+		return joinFields(fields);
+	}
+
+	/**
+	 * Read the information about an experiment from a line of text.
+	 * 
+	 * @param line line of text created with {@link #encode(ExperimentInfoDTO)}
+	 * @return information about the experiment
+	 * @throws IllegalArgumentException if the line is not correct
+	 */
+	public ExperimentInfoDTO decode(String line) {
+		Map<String, String> fields = splitFields(line);
+		try {
+			String updater = getField(fields, UPDATER_FIELD);
+			ExperimentInfoDTO experimentInfo = new ExperimentInfoDTO(
+					Integer.parseInt(getField(fields, NEURONS_IN_HIDDEN_LAYER_FIELD)),
+					getField(fields, ACTIVATION_FUNCTION_FIELD),
+					updater.isEmpty() ? null : Updater.valueOf(updater),
+					Integer.parseInt(getField(fields, EPOCHS_FIELD)),
+					decodeEvaluation(getField(fields, CONFUSION_MATRIX_FIELD)),
+					fields.containsKey(METRICS_FIELD) ? decodeMetrics(fields.get(METRICS_FIELD)) : null);
+			if (fields.containsKey(AREAS_UNDER_ROC_CURVE_FIELD)) {
+				experimentInfo.setAreasUnderRocCurve(decodeValues(fields.get(AREAS_UNDER_ROC_CURVE_FIELD)));
+			}
+			if (fields.containsKey(TOPOLOGY_FIELD)) {
+				experimentInfo.setTopology(fields.get(TOPOLOGY_FIELD));
+				experimentInfo.setNumberOfParameters(Long.parseLong(getField(fields, PARAMETERS_FIELD)));
+				experimentInfo.setDropOut(Double.parseDouble(getField(fields, DROPOUT_FIELD)));
+			}
+			return experimentInfo;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("The line " + line + " is not correct.", e);
+		}
+	}
+
+	/**
+	 * Read the result of a test from a line of text.
+	 * 
+	 * @param line line of text created with {@link #encode(TestResultDTO)}
+	 * @return result of the test, without the network
+	 * @throws IllegalArgumentException if the line is not correct
+	 */
+	public TestResultDTO decodeTestResult(String line) {
+		Map<String, String> fields = splitFields(line);
+		try {
+			TestResultDTO testResult = new TestResultDTO(
+					decodeEvaluation(getField(fields, CONFUSION_MATRIX_FIELD)),
+					Integer.parseInt(getField(fields, EPOCHS_FIELD)),
+					fields.containsKey(METRICS_FIELD) ? decodeMetrics(fields.get(METRICS_FIELD)) : null);
+			if (fields.containsKey(AREAS_UNDER_ROC_CURVE_FIELD)) {
+				testResult.setAreasUnderRocCurve(decodeValues(fields.get(AREAS_UNDER_ROC_CURVE_FIELD)));
+			}
+			return testResult;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("The line " + line + " is not correct.", e);
+		}
+	}
+
+	private String joinFields(Map<String, String> fields) {
+		StringBuilder lineBuilder = new StringBuilder();
+		for (Map.Entry<String, String> field : fields.entrySet()) {
+			if (lineBuilder.length() > 0) {
+				lineBuilder.append(FIELD_SEPARATOR);
+			}
+			lineBuilder.append(field.getKey()).append(NAME_VALUE_SEPARATOR).append(field.getValue());
+		}
+		return lineBuilder.toString();
+	}
+
+	private Map<String, String> splitFields(String line) {
+		Map<String, String> fields = new HashMap<>();
+		for (String field : line.split(FIELD_SEPARATOR)) {
+			int separatorIndex = field.indexOf(NAME_VALUE_SEPARATOR);
+			if (separatorIndex < 0) {
+				throw new IllegalArgumentException("The field " + field + " is not correct.");
+			}
+			fields.put(field.substring(0, separatorIndex), field.substring(separatorIndex + 1));
+		}
+		return fields;
+	}
+
+	/*
+	 * The confusion matrix is stored row by row (actual class), the columns
+	 * are the predicted classes.
+	 */
+	private String encodeEvaluation(Evaluation evaluation) {
+		ConfusionMatrix<Integer> confusionMatrix = evaluation.getConfusionMatrix();
+		StringBuilder valueBuilder = new StringBuilder();
+
+		for (int actual = 0; actual < numberOfClasses; actual++) {
+			for (int predicted = 0; predicted < numberOfClasses; predicted++) {
+				if (valueBuilder.length() > 0) {
+					valueBuilder.append(VALUE_SEPARATOR);
+				}
+				valueBuilder.append(confusionMatrix.getCount(actual, predicted));
+			}
+		}
+		return valueBuilder.toString();
+	}
+
+	private Evaluation decodeEvaluation(String value) {
+		String[] counts = value.split(VALUE_SEPARATOR);
+		if (counts.length != numberOfClasses * numberOfClasses) {
+			throw new IllegalArgumentException("The confusion matrix " + value + " is not correct.");
+		}
+
+		Evaluation evaluation = new Evaluation(numberOfClasses);
+		for (int actual = 0; actual < numberOfClasses; actual++) {
+			for (int predicted = 0; predicted < numberOfClasses; predicted++) {
+				int count = Integer.parseInt(counts[actual * numberOfClasses + predicted]);
+				for (int i = 0; i < count; i++) {
+					evaluation.eval(predicted, actual);
+				}
+			}
+		}
+		return evaluation;
+	}
+
+	/*
+	 * The metrics are stored in the order of the constructor of the DTO.
+	 */
+	private String encodeMetrics(ExperimentMetricsDTO metrics) {
+		return String.join(VALUE_SEPARATOR,
+				String.valueOf(metrics.getTrainingTimeMillis()),
+				String.valueOf(metrics.getEpochTimeMillis()),
+				String.valueOf(metrics.getInferenceTimeMillis()),
+				String.valueOf(metrics.getInferenceLatencyMicros()),
+				String.valueOf(metrics.getTrainingSamplesPerSecond()),
+				String.valueOf(metrics.getPeakHeapBytes()),
+				String.valueOf(metrics.getPeakOffHeapBytes()),
+				String.valueOf(metrics.getGcTimeMillis()),
+				String.valueOf(metrics.getAllocatedBytes()),
+				metrics.getDataType() == null ? "" : metrics.getDataType());
+	}
+
+	private ExperimentMetricsDTO decodeMetrics(String value) {
+		String[] values = value.split(VALUE_SEPARATOR, -1);
+		if (values.length != NUMBER_OF_METRICS && values.length != NUMBER_OF_METRICS_WITHOUT_DATA_TYPE) {
+			throw new IllegalArgumentException("The metrics " + value + " are not correct.");
+		}
+
+		return new ExperimentMetricsDTO(
+				Double.parseDouble(values[0]),
+				Double.parseDouble(values[1]),
+				Double.parseDouble(values[2]),
+				Double.parseDouble(values[3]),
+				Double.parseDouble(values[4]),
+				Long.parseLong(values[5]),
+				Long.parseLong(values[6]),
+				Long.parseLong(values[7]),
+				Long.parseLong(values[8]),
+				values.length == NUMBER_OF_METRICS && !values[9].isEmpty() ? values[9] : null);
+	}
+
+	private String encodeValues(double[] values) {
+		StringBuilder valueBuilder = new StringBuilder();
+		for (double value : values) {
+			if (valueBuilder.length() > 0) {
+				valueBuilder.append(VALUE_SEPARATOR);
+			}
+			valueBuilder.append(value);
+		}
+		return valueBuilder.toString();
+	}
+
+	private double[] decodeValues(String value) {
+		String[] values = value.split(VALUE_SEPARATOR);
+		double[] decodedValues = new double[values.length];
+		for (int i = 0; i < values.length; i++) {
+			decodedValues[i] = Double.parseDouble(values[i]);
+		}
+		return decodedValues;
+	}
+
+	private String getField(Map<String, String> fields, String name) {
+		String value = fields.get(name);
+		if (value == null) {
+			throw new IllegalArgumentException("The field " + name + " is missing.");
+		}
+		return value;
+	}
+}
@@ -1,41 +1,50 @@
-package io.github.kjrg.mgr;
-
-import org.deeplearning4j.eval.Evaluation;
-import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
-import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
-import org.deeplearning4j.nn.conf.layers.DenseLayer;
-
-import io.github.kjrg.mgr.dto.ExperimentInfoDTO;
-
-/**
- * A class for creating the information about an experiment.
- * 
- * @author Krzysztof Gaka
- */
-public class ExperimentInfoCreator {
-
-	private static final int INDEX_OF_HIDDEN_LAYER = 0;
-
-	/**
-	 * Create information about an experiment.
-	 * 
-	 * @param neuralNetworkConfiguration configuration about the neural network
-	 * @param experimentResult result of the experiment
-	 * @return information about experiment
-	 */
-	public ExperimentInfoDTO createInfo(MultiLayerConfiguration neuralNetworkConfiguration,
-			Evaluation experimentResult) {
-
-		NeuralNetConfiguration configuration = neuralNetworkConfiguration.getConf(INDEX_OF_HIDDEN_LAYER);
-		if (configuration == null) {
-			throw new IllegalStateException("The network has no hidden layer");
-		}
-		
-		DenseLayer layer = (DenseLayer) configuration.getLayer();
-		if (layer == null) {
-			throw new IllegalStateException("The network has no hidden layer");
-		}
-
-		return new ExperimentInfoDTO(layer.getNOut(), layer.getActivationFunction(), layer.getUpdater(), experimentResult);
-	}
-}
+package io.github.kjrg.mgr;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.FeedForwardLayer;
+
+import io.github.kjrg.mgr.dto.ExperimentInfoDTO;
+import io.github.kjrg.mgr.dto.TestResultDTO;
+
+/**
+ * A class for creating the information about an experiment.
+ * 
+ * @author Krzysztof Gałka
+ */
+public class ExperimentInfoCreator {
+
+	private static final int INDEX_OF_HIDDEN_LAYER = 0;
+
+	/**
+	 * Create information about an experiment. The number of neurons, the
+	 * activation function and the updater are the ones of the first hidden
+	 * layer, the topology covers all the hidden layers.
+	 * 
+	 * @param neuralNetworkConfiguration configuration about the neural network
+	 * @param testResult result of the experiment
+	 * @return information about experiment
+	 */
+	public ExperimentInfoDTO createInfo(MultiLayerConfiguration neuralNetworkConfiguration,
+			TestResultDTO testResult) {
+
+		NeuralNetConfiguration configuration = neuralNetworkConfiguration.getConf(INDEX_OF_HIDDEN_LAYER);
+		if (configuration == null) {
+			throw new IllegalStateException("The network has no hidden layer");
+		}
+		
+		FeedForwardLayer layer = (FeedForwardLayer) configuration.getLayer();
+		if (layer == null) {
+			throw new IllegalStateException("The network has no hidden layer");
+		}
+
+		ExperimentInfoDTO experimentInfo = new ExperimentInfoDTO(layer.getNOut(), layer.getActivationFunction(),
+				layer.getUpdater(), testResult.getNumberOfEpochs(), testResult.getEvaluation(),
+				testResult.getMetrics());
+		experimentInfo.setTopology(Topology.of(neuralNetworkConfiguration).toString());
+		experimentInfo.setNumberOfParameters(Topology.countParameters(neuralNetworkConfiguration));
+		experimentInfo.setDropOut(Double.isNaN(layer.getDropOut()) ? 0 : layer.getDropOut());
+		experimentInfo.setAreasUnderRocCurve(testResult.getAreasUnderRocCurve());
+		return experimentInfo;
+	}
+}
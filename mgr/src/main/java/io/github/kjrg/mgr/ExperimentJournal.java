@@ -0,0 +1,145 @@
+package io.github.kjrg.mgr;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+
+import io.github.kjrg.mgr.dto.ExperimentInfoDTO;
+
+/**
+ * A durable, append-only journal of the results of experiments. Every result
+ * is written to the disk as soon as the experiment finishes, under a key
+ * identifying the configuration of the network and the data, so that an
+ * interrupted sweep can skip the experiments which have already been done.
+ * 
+ * Every line of the journal consists of the key and the encoded result,
+ * separated with a tab. A line which was not written completely (the
+ * application was killed while writing it) is ignored.
+ * 
+ * @author Krzysztof Gałka
+ */
+public class ExperimentJournal implements Closeable {
+
+	private static final String KEY_SEPARATOR = "\t";
+	private static final String LINE_SEPARATOR = "\n";
+
+	private final ExperimentInfoCodec codec;
+	private final Map<String, ExperimentInfoDTO> entries = new HashMap<>();
+	private final FileOutputStream outputStream;
+
+	/**
+	 * Open a journal, reading the entries which are already in it.
+	 * 
+	 * @param filepath path of the journal file, it is created if it does not
+	 *            exist
+	 * @param codec codec used for converting the results to text
+	 * @throws IOException
+	 */
+	public ExperimentJournal(String filepath, ExperimentInfoCodec codec) throws IOException {
+		this.codec = codec;
+
+		File file = new File(filepath);
+		boolean incompleteLastLine = false;
+		if (file.isFile()) {
+			readEntries(file);
+			incompleteLastLine = !endsWithLineSeparator(file);
+		}
+
+		this.outputStream = new FileOutputStream(file, true);
+		if (incompleteLastLine) {
+			// Do not let the next entry be glued to the incomplete line
+			outputStream.write(LINE_SEPARATOR.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	/**
+	 * Create the key of an experiment.
+	 * 
+	 * @param configuration configuration of the neural network
+	 * @param datasetFingerprint fingerprint of the data used in the experiment
+	 * @param numberOfEpochs number of epochs
+	 * @return key of the experiment
+	 */
+	public static String createKey(MultiLayerConfiguration configuration, String datasetFingerprint,
+			int numberOfEpochs) {
+		return Hashes.ofText(configuration.toJson(), datasetFingerprint, String.valueOf(numberOfEpochs));
+	}
+
+	/**
+	 * @param key key of an experiment
+	 * @return the journaled result of the experiment or null, if the
+	 *         experiment has not been journaled
+	 */
+	public synchronized ExperimentInfoDTO get(String key) {
+		return entries.get(key);
+	}
+
+	/**
+	 * @return number of experiments in the journal
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Append the result of an experiment to the journal and force it to the
+	 * disk.
+	 * 
+	 * @param key key of the experiment
+	 * @param experimentInfo result of the experiment
+	 * @throws IOException
+	 */
+	public synchronized void append(String key, ExperimentInfoDTO experimentInfo) throws IOException {
+		String line = key + KEY_SEPARATOR + codec.encode(experimentInfo) + LINE_SEPARATOR;
+		outputStream.write(line.getBytes(StandardCharsets.UTF_8));
+		outputStream.getChannel().force(false);
+		entries.put(key, experimentInfo);
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		outputStream.close();
+	}
+
+	private boolean endsWithLineSeparator(File file) throws IOException {
+		if (file.length() == 0) {
+			return true;
+		}
+
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+			randomAccessFile.seek(file.length() - 1);
+			return randomAccessFile.read() == LINE_SEPARATOR.charAt(0);
+		}
+	}
+
+	private void readEntries(File file) throws IOException {
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				int separatorIndex = line.indexOf(KEY_SEPARATOR);
+				try {
+					if (separatorIndex < 0) {
+						throw new IllegalArgumentException("The key is missing.");
+					}
+					entries.put(line.substring(0, separatorIndex), codec.decode(line.substring(separatorIndex + 1)));
+				} catch (IllegalArgumentException e) {
+					System.out.println("Warning: the line " + lineNumber + " of the journal " + file
+							+ " is not correct and will be ignored");
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package io.github.kjrg.mgr;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.bytedeco.javacpp.Pointer;
+import org.nd4j.linalg.factory.Nd4j;
+
+import io.github.kjrg.mgr.dto.ExperimentMetricsDTO;
+
+/**
+ * A class recording the time and the resources used by a single experiment.
+ * The recorder has to be used by the thread running the experiment.
+ *
+ * @author Krzysztof Gałka
+ */
+public class ExperimentMetricsRecorder {
+
+	private static final double NANOSECONDS_IN_MILLISECOND = 1e6;
+	private static final double NANOSECONDS_IN_MICROSECOND = 1e3;
+	private static final double NANOSECONDS_IN_SECOND = 1e9;
+
+	private final long startTime;
+	private final long gcTimeAtStart;
+	private final long allocatedBytesAtStart;
+	private long trainingTime;
+	private int numberOfEpochs;
+	private long numberOfTrainingExamples;
+	private long inferenceStartTime;
+	private long inferenceTime;
+	private long numberOfInferenceExamples;
+	private long peakHeapBytes;
+	private long peakOffHeapBytes;
+
+	/**
+	 * Create a recorder and start measuring the training.
+	 */
+	public ExperimentMetricsRecorder() {
+		this.gcTimeAtStart = getGcTime();
+		this.allocatedBytesAtStart = getAllocatedBytes();
+		sampleMemory();
+		this.startTime = System.nanoTime();
+	}
+
+	/**
+	 * Record a finished training epoch.
+	 *
+	 * @param numberOfExamples number of examples the network was trained on
+	 *            in the epoch
+	 */
+	public void epochFinished(long numberOfExamples) {
+		numberOfEpochs++;
+		numberOfTrainingExamples += numberOfExamples;
+		sampleMemory();
+	}
+
+	/**
+	 * Stop measuring the training.
+	 */
+	public void trainingFinished() {
+		trainingTime = System.nanoTime() - startTime;
+	}
+
+	/**
+	 * Start measuring the inference on a part of the test dataset.
+	 */
+	public void inferenceStarted() {
+		inferenceStartTime = System.nanoTime();
+	}
+
+	/**
+	 * Stop measuring the inference on a part of the test dataset.
+	 *
+	 * @param numberOfExamples number of examples in the part
+	 */
+	public void inferenceFinished(long numberOfExamples) {
+		inferenceTime += System.nanoTime() - inferenceStartTime;
+		numberOfInferenceExamples += numberOfExamples;
+	}
+
+	/**
+	 * @return metrics of the experiment
+	 */
+	public ExperimentMetricsDTO createMetrics() {
+		sampleMemory();
+		long allocatedBytes = getAllocatedBytes();
+
+		return new ExperimentMetricsDTO(
+				trainingTime / NANOSECONDS_IN_MILLISECOND,
+				numberOfEpochs == 0 ? 0 : trainingTime / NANOSECONDS_IN_MILLISECOND / numberOfEpochs,
+				inferenceTime / NANOSECONDS_IN_MILLISECOND,
+				numberOfInferenceExamples == 0 ? 0
+						: inferenceTime / NANOSECONDS_IN_MICROSECOND / numberOfInferenceExamples,
+				trainingTime == 0 ? 0 : numberOfTrainingExamples * NANOSECONDS_IN_SECOND / trainingTime,
+				peakHeapBytes,
+				peakOffHeapBytes,
+				getGcTime() - gcTimeAtStart,
+				allocatedBytes < 0 || allocatedBytesAtStart < 0 ? -1 : allocatedBytes - allocatedBytesAtStart,
+				DataTypes.getName(Nd4j.dataType()));
+	}
+
+	/*
+	 * The peaks are sampled instead of taken from the memory pools, because
+	 * resetting the peaks of the pools would interfere with the experiments
+	 * running at the same time.
+	 */
+	private void sampleMemory() {
+		peakHeapBytes = Math.max(peakHeapBytes, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+		peakOffHeapBytes = Math.max(peakOffHeapBytes, Pointer.totalBytes());
+	}
+
+	private static long getGcTime() {
+		long gcTime = 0;
+		for (GarbageCollectorMXBean garbageCollector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			gcTime += Math.max(0, garbageCollector.getCollectionTime());
+		}
+		return gcTime;
+	}
+
+	private static long getAllocatedBytes() {
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		if (threadBean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+			if (allocationBean.isThreadAllocatedMemorySupported() && allocationBean.isThreadAllocatedMemoryEnabled()) {
+				return allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return -1;
+	}
+}
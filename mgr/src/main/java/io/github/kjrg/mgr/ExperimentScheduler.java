@@ -0,0 +1,271 @@
+package io.github.kjrg.mgr;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.ToDoubleFunction;
+
+import org.nd4j.nativeblas.NativeOpsHolder;
+
+/**
+ * A class for running independent experiments on a bounded number of worker
+ * threads.
+ *
+ * @author Krzysztof Gałka
+ */
+public class ExperimentScheduler {
+
+	private static final String WORKER_THREAD_NAME_PREFIX = "experiment-worker-";
+	private static final int EXPERIMENTS_IN_FLIGHT_PER_WORKER = 2;
+
+	private final int numberOfWorkers;
+	private final int numberOfThreadsPerWorker;
+
+	/**
+	 * Create a scheduler.
+	 *
+	 * @param numberOfWorkers number of experiments run at the same time
+	 * @param numberOfThreadsPerWorker number of native (OpenMP) threads used by
+	 *            a single worker, 0 means that the available processors are
+	 *            divided equally between the workers
+	 */
+	public ExperimentScheduler(int numberOfWorkers, int numberOfThreadsPerWorker) {
+		if (numberOfWorkers < 1) {
+			throw new IllegalArgumentException("The number of workers has to be at least 1.");
+		}
+		if (numberOfThreadsPerWorker < 0) {
+			throw new IllegalArgumentException("The number of threads per worker cannot be negative.");
+		}
+
+		this.numberOfWorkers = numberOfWorkers;
+		this.numberOfThreadsPerWorker = numberOfThreadsPerWorker == 0
+				? Math.max(1, Runtime.getRuntime().availableProcessors() / numberOfWorkers)
+				: numberOfThreadsPerWorker;
+	}
+
+	/**
+	 * Run an experiment for every input (e.g. configuration of a neural
+	 * network). The results are passed to the consumer in the order of the
+	 * inputs, regardless of the order in which the experiments finish.
+	 *
+	 * @param inputs inputs of the experiments
+	 * @param experiment the experiment to be run for a single input
+	 * @param resultConsumer consumer of the results of the experiments
+	 * @throws InterruptedException
+	 * @throws ExecutionException if any of the experiments failed
+	 */
+	public <T, R> void runExperiments(Iterable<T> inputs, Function<T, R> experiment, Consumer<R> resultConsumer)
+			throws InterruptedException, ExecutionException {
+
+		if (numberOfWorkers == 1) {
+			limitNativeThreads();
+			for (T input : inputs) {
+				resultConsumer.accept(experiment.apply(input));
+			}
+			return;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfWorkers, new WorkerThreadFactory());
+		Deque<Future<R>> experimentsInFlight = new ArrayDeque<>();
+		int maximumNumberOfExperimentsInFlight = numberOfWorkers * EXPERIMENTS_IN_FLIGHT_PER_WORKER;
+
+		try {
+			Iterator<T> inputIterator = inputs.iterator();
+			while (inputIterator.hasNext()) {
+				T input = inputIterator.next();
+				experimentsInFlight.addLast(executor.submit(() -> experiment.apply(input)));
+
+				if (experimentsInFlight.size() >= maximumNumberOfExperimentsInFlight) {
+					resultConsumer.accept(experimentsInFlight.removeFirst().get());
+				}
+			}
+
+			while (!experimentsInFlight.isEmpty()) {
+				resultConsumer.accept(experimentsInFlight.removeFirst().get());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Run an experiment for every input of an indexed collection (e.g. a grid
+	 * of configurations), starting with the inputs of the highest estimated
+	 * cost (longest processing time first), so that the long experiments do
+	 * not end up at the end of the run, with the other workers idle. The
+	 * inputs are created from their indexes only when their experiments are
+	 * started (and, with a cost estimate, once before, for estimating their
+	 * costs), so they are never all kept in memory. A single worker runs the
+	 * inputs in their order, as the order does not change its total time.
+	 *
+	 * The results are passed to the consumer in the order of the inputs,
+	 * regardless of the order in which the experiments are started and
+	 * finish - the results finished ahead of the earlier inputs wait in a
+	 * reorder buffer. As the cheap inputs are started last, most of the
+	 * results may wait until the end of the run, so every result is also
+	 * passed to the completion listener as soon as its experiment finishes
+	 * (e.g. for reporting the progress).
+	 *
+	 * No experiment is started after the deadline, the experiments which are
+	 * already running are finished and their results are passed to the
+	 * consumer.
+	 *
+	 * @param numberOfInputs number of inputs of the experiments
+	 * @param inputs function creating the input of the given index, it is
+	 *            called by the worker threads
+	 * @param costEstimate estimated cost of the experiment for an input, null
+	 *            keeps the order of the inputs
+	 * @param deadlineMillis time (as in System.currentTimeMillis) after which
+	 *            no experiment is started, 0 means no deadline
+	 * @param experiment the experiment to be run for a single input
+	 * @param completionListener listener of the results in the order in which
+	 *            the experiments finish, called on the calling thread
+	 * @param resultConsumer consumer of the results of the experiments
+	 * @return number of the inputs for which the experiments were not
+	 *         started because of the deadline
+	 * @throws InterruptedException
+	 * @throws ExecutionException if any of the experiments failed
+	 */
+	public <T, R> int runExperiments(int numberOfInputs, IntFunction<T> inputs, ToDoubleFunction<T> costEstimate,
+			long deadlineMillis, Function<T, R> experiment, Consumer<R> completionListener,
+			Consumer<R> resultConsumer) throws InterruptedException, ExecutionException {
+
+		if (numberOfWorkers == 1) {
+			limitNativeThreads();
+			for (int i = 0; i < numberOfInputs; i++) {
+				if (isAfterDeadline(deadlineMillis)) {
+					return numberOfInputs - i;
+				}
+				R result = experiment.apply(inputs.apply(i));
+				completionListener.accept(result);
+				resultConsumer.accept(result);
+			}
+			return 0;
+		}
+
+		int[] order = costEstimate == null ? null : orderByCost(numberOfInputs, inputs, costEstimate);
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfWorkers, new WorkerThreadFactory());
+		CompletionService<IndexedResult<R>> completionService = new ExecutorCompletionService<>(executor);
+		int maximumNumberOfExperimentsInFlight = numberOfWorkers * EXPERIMENTS_IN_FLIGHT_PER_WORKER;
+		int numberOfExperimentsInFlight = 0;
+		int numberOfStartedExperiments = 0;
+		// Results finished before the results of the earlier inputs
+		Map<Integer, R> reorderBuffer = new HashMap<>();
+		int nextResultIndex = 0;
+
+		try {
+			while (true) {
+				while (numberOfStartedExperiments < numberOfInputs
+						&& numberOfExperimentsInFlight < maximumNumberOfExperimentsInFlight
+						&& !isAfterDeadline(deadlineMillis)) {
+					int index = order == null ? numberOfStartedExperiments : order[numberOfStartedExperiments];
+					completionService.submit(() -> new IndexedResult<>(index, experiment.apply(inputs.apply(index))));
+					numberOfStartedExperiments++;
+					numberOfExperimentsInFlight++;
+				}
+				if (numberOfExperimentsInFlight == 0) {
+					break;
+				}
+
+				IndexedResult<R> indexedResult = completionService.take().get();
+				numberOfExperimentsInFlight--;
+				completionListener.accept(indexedResult.result);
+				reorderBuffer.put(indexedResult.index, indexedResult.result);
+				while (reorderBuffer.containsKey(nextResultIndex)) {
+					resultConsumer.accept(reorderBuffer.remove(nextResultIndex++));
+				}
+			}
+
+			// After the deadline the inputs which were not started are skipped
+			for (; nextResultIndex < numberOfInputs && !reorderBuffer.isEmpty(); nextResultIndex++) {
+				if (reorderBuffer.containsKey(nextResultIndex)) {
+					resultConsumer.accept(reorderBuffer.remove(nextResultIndex));
+				}
+			}
+			return numberOfInputs - numberOfStartedExperiments;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	public int getNumberOfWorkers() {
+		return numberOfWorkers;
+	}
+
+	public int getNumberOfThreadsPerWorker() {
+		return numberOfThreadsPerWorker;
+	}
+
+	/*
+	 * The costs are computed once for every input, the inputs are not kept.
+	 * The sort is stable.
+	 */
+	private static <T> int[] orderByCost(int numberOfInputs, IntFunction<T> inputs, ToDoubleFunction<T> costEstimate) {
+		double[] costs = new double[numberOfInputs];
+		List<Integer> indexes = new ArrayList<>(numberOfInputs);
+		for (int i = 0; i < numberOfInputs; i++) {
+			costs[i] = costEstimate.applyAsDouble(inputs.apply(i));
+			indexes.add(i);
+		}
+		indexes.sort((first, second) -> Double.compare(costs[second], costs[first]));
+
+		int[] order = new int[numberOfInputs];
+		for (int i = 0; i < numberOfInputs; i++) {
+			order[i] = indexes.get(i);
+		}
+		return order;
+	}
+
+	private static boolean isAfterDeadline(long deadlineMillis) {
+		return deadlineMillis > 0 && System.currentTimeMillis() >= deadlineMillis;
+	}
+
+	/*
+	 * The OpenMP thread count is a per-thread setting, so it has to be applied
+	 * in the thread which runs the experiments.
+	 */
+	private void limitNativeThreads() {
+		NativeOpsHolder.getInstance().getDeviceNativeOps().setOmpNumThreads(numberOfThreadsPerWorker);
+	}
+
+	private static class IndexedResult<R> {
+
+		private final int index;
+		private final R result;
+
+		public IndexedResult(int index, R result) {
+			this.index = index;
+			this.result = result;
+		}
+	}
+
+	private class WorkerThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(() -> {
+				limitNativeThreads();
+				runnable.run();
+			}, WORKER_THREAD_NAME_PREFIX + threadNumber.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package io.github.kjrg.mgr;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+/**
+ * A class for computing the hashes (fingerprints) of files, texts, arrays and
+ * configurations of networks.
+ * 
+ * @author Krzysztof Gałka
+ */
+public final class Hashes {
+
+	private static final String HASH_ALGORITHM = "SHA-256";
+	private static final int READ_BUFFER_SIZE = 1 << 16;
+
+	private Hashes() {
+	}
+
+	/**
+	 * Compute the hash of the content of a file and, optionally, additional
+	 * texts.
+	 * 
+	 * @param filepath path of the file
+	 * @param texts additional texts included in the hash
+	 * @return hexadecimal representation of the hash
+	 * @throws IOException
+	 */
+	public static String ofFile(String filepath, String... texts) throws IOException {
+		MessageDigest digest = createDigest();
+
+		try (InputStream inputStream = new FileInputStream(filepath)) {
+			byte[] buffer = new byte[READ_BUFFER_SIZE];
+			int bytesRead;
+			while ((bytesRead = inputStream.read(buffer)) != -1) {
+				digest.update(buffer, 0, bytesRead);
+			}
+		}
+
+		return toHex(update(digest, texts).digest());
+	}
+
+	/**
+	 * Compute the hash of texts.
+	 * 
+	 * @param texts texts to be hashed
+	 * @return hexadecimal representation of the hash
+	 */
+	public static String ofText(String... texts) {
+		return toHex(update(createDigest(), texts).digest());
+	}
+
+	/**
+	 * Compute the hash of the content and the shapes of arrays.
+	 * 
+	 * @param arrays arrays to be hashed, null elements are allowed
+	 * @return hexadecimal representation of the hash
+	 */
+	public static String ofArrays(INDArray... arrays) {
+		MessageDigest digest = createDigest();
+		for (INDArray array : arrays) {
+			if (array == null) {
+				update(digest, "null");
+				continue;
+			}
+			update(digest, Arrays.toString(array.shape()));
+			// A copy in the C order, so that the views are hashed by their values
+			digest.update(array.dup('c').data().asBytes());
+		}
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * Compute the hash of the JSON and the seed of configurations, in their
+	 * order. The configurations are converted one by one, so a lazily built
+	 * grid is not kept in memory.
+	 * 
+	 * @param configurations configurations of the networks
+	 * @return hexadecimal representation of the hash
+	 */
+	public static String ofConfigurations(Iterable<MultiLayerConfiguration> configurations) {
+		MessageDigest digest = createDigest();
+		for (MultiLayerConfiguration configuration : configurations) {
+			update(digest, configuration.toJson(), String.valueOf(configuration.getConf(0).getSeed()));
+		}
+		return toHex(digest.digest());
+	}
+
+	private static MessageDigest update(MessageDigest digest, String... texts) {
+		for (String text : texts) {
+			digest.update(text.getBytes(StandardCharsets.UTF_8));
+			// Separator, so that ("ab", "c") and ("a", "bc") give different hashes
+			digest.update((byte) 0);
+		}
+		return digest;
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance(HASH_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder builder = new StringBuilder();
+		for (byte b : bytes) {
+			builder.append(String.format("%02x", b));
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,115 @@
+package io.github.kjrg.mgr;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import io.github.kjrg.mgr.dto.ExperimentInfoDTO;
+
+/**
+ * A sink writing the results to a JSON lines file: every result is a JSON
+ * object in a separate line, with the columns of {@link ResultColumns} as
+ * its fields. The unknown values and the values which are not numbers (NaN)
+ * are null. Every line is flushed as soon as it is written.
+ *
+ * @author Krzysztof Gałka
+ */
+public class JsonLinesResultSink implements ResultSink {
+
+	private final String outputFilepath;
+	private final Writer writer;
+	private boolean closed;
+
+	/**
+	 * Create the file.
+	 *
+	 * @param outputFilepath path of the JSON lines file
+	 * @throws IOException
+	 */
+	public JsonLinesResultSink(String outputFilepath) throws IOException {
+		this.outputFilepath = outputFilepath;
+		this.writer = new BufferedWriter(
+				new OutputStreamWriter(new FileOutputStream(outputFilepath), StandardCharsets.UTF_8));
+	}
+
+	@Override
+	public synchronized void append(ExperimentInfoDTO experimentResult) throws IOException {
+		if (closed) {
+			throw new IllegalStateException("The file " + outputFilepath + " has already been closed.");
+		}
+
+		Object[] values = ResultColumns.getValues(experimentResult);
+		StringBuilder lineBuilder = new StringBuilder("{");
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				lineBuilder.append(',');
+			}
+			appendString(lineBuilder, ResultColumns.NAMES[i]);
+			lineBuilder.append(':');
+			appendValue(lineBuilder, values[i]);
+		}
+		writer.write(lineBuilder.append("}\n").toString());
+		writer.flush();
+	}
+
+	@Override
+	public String getOutputFilepath() {
+		return outputFilepath;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			writer.close();
+		}
+	}
+
+	private static void appendValue(StringBuilder builder, Object value) {
+		if (value == null) {
+			builder.append("null");
+		} else if (value instanceof String) {
+			appendString(builder, (String) value);
+		} else if (value instanceof double[]) {
+			builder.append('[');
+			double[] values = (double[]) value;
+			for (int i = 0; i < values.length; i++) {
+				if (i > 0) {
+					builder.append(',');
+				}
+				appendNumber(builder, values[i]);
+			}
+			builder.append(']');
+		} else if (value instanceof Double) {
+			appendNumber(builder, (Double) value);
+		} else {
+			builder.append(value);
+		}
+	}
+
+	private static void appendNumber(StringBuilder builder, double value) {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			builder.append("null");
+		} else {
+			builder.append(value);
+		}
+	}
+
+	private static void appendString(StringBuilder builder, String value) {
+		builder.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char character = value.charAt(i);
+			if (character == '"' || character == '\\') {
+				builder.append('\\').append(character);
+			} else if (character < ' ') {
+				builder.append(String.format("\\u%04x", (int) character));
+			} else {
+				builder.append(character);
+			}
+		}
+		builder.append('"');
+	}
+}
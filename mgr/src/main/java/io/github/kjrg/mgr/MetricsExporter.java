@@ -0,0 +1,109 @@
+package io.github.kjrg.mgr;
+
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.util.Locale;
+
+import io.github.kjrg.mgr.dto.ExperimentInfoDTO;
+
+/**
+ * A class exporting the results and the metrics of experiments to a CSV file,
+ * one line per experiment, for processing by other tools. The columns are the
+ * columns of {@link ResultColumns}, the unknown values are empty and the values
+ * per class are separated by spaces. The lines are written as soon as the
+ * experiments finish.
+ *
+ * @author Krzysztof Gałka
+ */
+public class MetricsExporter implements ResultSink {
+
+	private static final String SEPARATOR = ";";
+	private static final String CLASS_SEPARATOR = " ";
+
+	private final String outputFilepath;
+	private final PrintWriter writer;
+	private boolean closed;
+
+	/**
+	 * Create the file and write the header.
+	 *
+	 * @param outputFilepath path of the CSV file
+	 * @throws FileNotFoundException
+	 * @throws UnsupportedEncodingException
+	 */
+	public MetricsExporter(String outputFilepath) throws FileNotFoundException, UnsupportedEncodingException {
+		this.outputFilepath = outputFilepath;
+		this.writer = new PrintWriter(outputFilepath, "UTF-8");
+		writer.println(String.join(SEPARATOR, ResultColumns.NAMES));
+		writer.flush();
+	}
+
+	/**
+	 * Append the result of an experiment to the file. The metrics columns and
+	 * the cross-validation columns are empty, if the metrics or the
+	 * cross-validation statistics of the experiment are not available.
+	 *
+	 * @param experimentResult result of the experiment
+	 */
+	@Override
+	public synchronized void append(ExperimentInfoDTO experimentResult) {
+		if (closed) {
+			throw new IllegalStateException("The metrics file has already been closed.");
+		}
+
+		Object[] values = ResultColumns.getValues(experimentResult);
+		StringBuilder lineBuilder = new StringBuilder();
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				lineBuilder.append(SEPARATOR);
+			}
+			appendValue(lineBuilder, values[i]);
+		}
+
+		writer.println(lineBuilder);
+		writer.flush();
+	}
+
+	/**
+	 * @return path of the CSV file
+	 */
+	@Override
+	public String getOutputFilepath() {
+		return outputFilepath;
+	}
+
+	/**
+	 * Close the file. Closing it again has no effect.
+	 */
+	@Override
+	public synchronized void close() {
+		if (!closed) {
+			closed = true;
+			writer.close();
+		}
+	}
+
+	private static void appendValue(StringBuilder builder, Object value) {
+		if (value == null) {
+			return;
+		}
+		if (value instanceof double[]) {
+			double[] values = (double[]) value;
+			for (int i = 0; i < values.length; i++) {
+				if (i > 0) {
+					builder.append(CLASS_SEPARATOR);
+				}
+				builder.append(Double.isNaN(values[i]) ? "NaN" : format(values[i]));
+			}
+		} else if (value instanceof Double) {
+			builder.append(format((Double) value));
+		} else {
+			builder.append(value);
+		}
+	}
+
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.6f", value);
+	}
+}
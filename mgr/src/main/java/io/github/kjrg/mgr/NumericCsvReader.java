@@ -0,0 +1,309 @@
+package io.github.kjrg.mgr;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+/**
+ * A reader of CSV files containing only numbers, giving the same dataset as
+ * the CSVRecordReader with the RecordReaderDataSetIterator. The file is
+ * memory-mapped and the numbers are parsed from its bytes directly into the
+ * buffers of the features and the labels, without creating any objects for
+ * the fields. The label column is one-hot encoded while reading.
+ *
+ * The numbers which cannot be parsed exactly by the fast path (e.g. with more
+ * than 15 significant digits) are parsed with Double.parseDouble.
+ *
+ * @author Krzysztof Gałka
+ */
+public class NumericCsvReader {
+
+	// The file is mapped in windows, ending at the end of a line
+	private static final long MAX_WINDOW_SIZE = 1L << 28;
+	// Integers of up to 15 digits and powers of 10 up to 22 are exact doubles
+	private static final int MAX_EXACT_DIGITS = 15;
+	private static final double[] EXACT_POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+			1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	private final byte separator;
+	private final int linesToSkip;
+
+	/**
+	 * @param separator separator of the fields, a single ASCII character
+	 * @param linesToSkip number of lines skipped at the beginning of the file
+	 */
+	public NumericCsvReader(char separator, int linesToSkip) {
+		if (separator > 127) {
+			throw new IllegalArgumentException("The separator has to be an ASCII character.");
+		}
+		this.separator = (byte) separator;
+		this.linesToSkip = linesToSkip;
+	}
+
+	/**
+	 * Read the first rows of a CSV file. The empty lines are ignored.
+	 *
+	 * @param filepath path of the CSV file
+	 * @param maxNumberOfRows maximal number of rows read
+	 * @param labelColumnIndex index of the column containing the label
+	 * @param numberOfLabels number of classes in the dataset
+	 * @return dataset containing the rows or null, if the file has no rows
+	 * @throws IOException
+	 */
+	public DataSet read(String filepath, int maxNumberOfRows, int labelColumnIndex, int numberOfLabels)
+			throws IOException {
+		Parsing parsing = new Parsing(filepath, maxNumberOfRows, labelColumnIndex, numberOfLabels);
+		try (FileChannel channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.READ)) {
+			long size = channel.size();
+			long position = 0;
+			while (position < size && !parsing.isFull()) {
+				long windowSize = Math.min(size - position, MAX_WINDOW_SIZE);
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+				int limit = (int) windowSize;
+				if (position + windowSize < size) {
+					limit = findLastLineEnd(buffer, limit) + 1;
+					if (limit == 0) {
+						throw new IllegalArgumentException("A line of " + filepath + " is longer than "
+								+ MAX_WINDOW_SIZE + " bytes.");
+					}
+				}
+				parsing.parseLines(buffer, limit);
+				position += limit;
+			}
+		}
+		return parsing.createDataset();
+	}
+
+	private static int findLastLineEnd(MappedByteBuffer buffer, int limit) {
+		for (int i = limit - 1; i >= 0; i--) {
+			if (buffer.get(i) == '\n') {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/*
+	 * State of the reading of a single file.
+	 */
+	private final class Parsing {
+
+		private final String filepath;
+		private final int maxNumberOfRows;
+		private final int labelColumnIndex;
+		private final int numberOfLabels;
+		private int numberOfColumns;
+		private INDArray features;
+		private INDArray labels;
+		private DataBuffer featureBuffer;
+		private DataBuffer labelBuffer;
+		private int numberOfRows;
+		private int lineNumber;
+
+		Parsing(String filepath, int maxNumberOfRows, int labelColumnIndex, int numberOfLabels) {
+			this.filepath = filepath;
+			this.maxNumberOfRows = maxNumberOfRows;
+			this.labelColumnIndex = labelColumnIndex;
+			this.numberOfLabels = numberOfLabels;
+		}
+
+		boolean isFull() {
+			return numberOfRows == maxNumberOfRows;
+		}
+
+		void parseLines(MappedByteBuffer buffer, int limit) {
+			int lineStart = 0;
+			while (lineStart < limit && !isFull()) {
+				int lineEnd = lineStart;
+				while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+					lineEnd++;
+				}
+				int contentEnd = lineEnd;
+				if (contentEnd > lineStart && buffer.get(contentEnd - 1) == '\r') {
+					contentEnd--;
+				}
+
+				lineNumber++;
+				if (lineNumber > linesToSkip && contentEnd > lineStart) {
+					parseLine(buffer, lineStart, contentEnd);
+				}
+				lineStart = lineEnd + 1;
+			}
+		}
+
+		DataSet createDataset() {
+			if (numberOfRows == 0) {
+				return null;
+			}
+			if (numberOfRows < maxNumberOfRows) {
+				features = features.get(NDArrayIndex.interval(0, numberOfRows), NDArrayIndex.all()).dup();
+				labels = labels.get(NDArrayIndex.interval(0, numberOfRows), NDArrayIndex.all()).dup();
+			}
+			return new DataSet(features, labels);
+		}
+
+		private void parseLine(MappedByteBuffer buffer, int start, int end) {
+			if (features == null) {
+				allocate(buffer, start, end);
+			}
+
+			int column = 0;
+			int fieldStart = start;
+			for (int i = start; i <= end; i++) {
+				if (i < end && buffer.get(i) != separator) {
+					continue;
+				}
+				if (column == numberOfColumns) {
+					throw createColumnCountException();
+				}
+
+				double value = parseNumber(buffer, fieldStart, i);
+				if (column == labelColumnIndex) {
+					int label = (int) value;
+					if (label != value || label < 0 || label >= numberOfLabels) {
+						throw new IllegalArgumentException("The label " + value + " in line " + lineNumber + " of "
+								+ filepath + " is not one of " + numberOfLabels + " classes.");
+					}
+					labelBuffer.put((long) numberOfRows * numberOfLabels + label, 1.0);
+				} else {
+					int featureIndex = column < labelColumnIndex ? column : column - 1;
+					featureBuffer.put((long) numberOfRows * (numberOfColumns - 1) + featureIndex, value);
+				}
+				column++;
+				fieldStart = i + 1;
+			}
+			if (column != numberOfColumns) {
+				throw createColumnCountException();
+			}
+			numberOfRows++;
+		}
+
+		/*
+		 * The number of columns is the number of columns of the first row.
+		 */
+		private void allocate(MappedByteBuffer buffer, int start, int end) {
+			numberOfColumns = 1;
+			for (int i = start; i < end; i++) {
+				if (buffer.get(i) == separator) {
+					numberOfColumns++;
+				}
+			}
+			if (labelColumnIndex < 0 || labelColumnIndex >= numberOfColumns) {
+				throw new IllegalArgumentException("The label column " + labelColumnIndex + " does not exist in "
+						+ filepath + ", which has " + numberOfColumns + " columns.");
+			}
+
+			features = Nd4j.create(new int[] { maxNumberOfRows, numberOfColumns - 1 }, 'c');
+			labels = Nd4j.create(new int[] { maxNumberOfRows, numberOfLabels }, 'c');
+			featureBuffer = features.data();
+			labelBuffer = labels.data();
+		}
+
+		private double parseNumber(MappedByteBuffer buffer, int start, int end) {
+			int position = start;
+			boolean negative = false;
+			if (position < end && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+				negative = buffer.get(position) == '-';
+				position++;
+			}
+
+			long mantissa = 0;
+			int numberOfDigits = 0;
+			int exponent = 0;
+			boolean hasDigits = false;
+			boolean fraction = false;
+			for (; position < end; position++) {
+				byte character = buffer.get(position);
+				if (character >= '0' && character <= '9') {
+					if (mantissa != 0 || character != '0') {
+						if (++numberOfDigits > MAX_EXACT_DIGITS) {
+							return parseNumberSlowly(buffer, start, end);
+						}
+						mantissa = mantissa * 10 + (character - '0');
+					}
+					if (fraction) {
+						exponent--;
+					}
+					hasDigits = true;
+				} else if (character == '.' && !fraction) {
+					fraction = true;
+				} else {
+					break;
+				}
+			}
+			if (!hasDigits) {
+				return parseNumberSlowly(buffer, start, end);
+			}
+
+			if (position < end && (buffer.get(position) == 'e' || buffer.get(position) == 'E')) {
+				position++;
+				boolean negativeExponent = false;
+				if (position < end && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+					negativeExponent = buffer.get(position) == '-';
+					position++;
+				}
+				int explicitExponent = 0;
+				int exponentStart = position;
+				for (; position < end && position - exponentStart < 4; position++) {
+					byte character = buffer.get(position);
+					if (character < '0' || character > '9') {
+						break;
+					}
+					explicitExponent = explicitExponent * 10 + (character - '0');
+				}
+				if (position == exponentStart) {
+					return parseNumberSlowly(buffer, start, end);
+				}
+				exponent += negativeExponent ? -explicitExponent : explicitExponent;
+			}
+			if (position != end) {
+				// Whitespace, NaN, Infinity or not a number at all
+				return parseNumberSlowly(buffer, start, end);
+			}
+
+			/*
+			 * A single operation on two exact doubles is rounded correctly,
+			 * as in Double.parseDouble.
+			 */
+			double value;
+			if (mantissa == 0 || exponent == 0) {
+				value = mantissa;
+			} else if (exponent < 0 && -exponent < EXACT_POWERS_OF_TEN.length) {
+				value = mantissa / EXACT_POWERS_OF_TEN[-exponent];
+			} else if (exponent > 0 && exponent < EXACT_POWERS_OF_TEN.length) {
+				value = mantissa * EXACT_POWERS_OF_TEN[exponent];
+			} else {
+				return parseNumberSlowly(buffer, start, end);
+			}
+			return negative ? -value : value;
+		}
+
+		private double parseNumberSlowly(MappedByteBuffer buffer, int start, int end) {
+			byte[] bytes = new byte[end - start];
+			for (int i = 0; i < bytes.length; i++) {
+				bytes[i] = buffer.get(start + i);
+			}
+			String field = new String(bytes, StandardCharsets.US_ASCII);
+			try {
+				return Double.parseDouble(field);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("The value \"" + field + "\" in line " + lineNumber + " of "
+						+ filepath + " is not a number.", e);
+			}
+		}
+
+		private IllegalArgumentException createColumnCountException() {
+			return new IllegalArgumentException("The line " + lineNumber + " of " + filepath
+					+ " does not have " + numberOfColumns + " columns, as the first line.");
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package io.github.kjrg.mgr;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+/**
+ * A class computing the output of a network for a test dataset in chunks of
+ * a fixed number of examples, so that the activations of the whole dataset
+ * are never kept in memory. The chunks are divided between several threads,
+ * every thread accumulates its predictions in its own
+ * {@link ConfusionMatrixAccumulator} and the accumulators are merged at the
+ * end.
+ *
+ * The network is not thread-safe (it keeps the activations of the last
+ * input), the additional threads use copies of it. Copying a network costs
+ * more than evaluating a few chunks, so the chunks are divided between the
+ * threads only when there are more chunks than threads, otherwise all of them
+ * are evaluated on the calling thread. The evaluator is shared by the
+ * experiments running at the same time.
+ *
+ * @author Krzysztof Gałka
+ */
+public class ParallelEvaluator {
+
+	public static final int DEFAULT_CHUNK_SIZE = 1024;
+
+	private final int chunkSize;
+	private final int numberOfThreads;
+	private final ExecutorService executor;
+
+	/**
+	 * @param chunkSize number of examples evaluated at once
+	 * @param numberOfThreads number of threads evaluating a single network,
+	 *            including the thread calling the evaluator
+	 */
+	public ParallelEvaluator(int chunkSize, int numberOfThreads) {
+		if (chunkSize < 1 || numberOfThreads < 1) {
+			throw new IllegalArgumentException("The chunk size and the number of threads have to be at least 1.");
+		}
+		this.chunkSize = chunkSize;
+		this.numberOfThreads = numberOfThreads;
+		this.executor = numberOfThreads == 1 ? null
+				: Executors.newFixedThreadPool(numberOfThreads - 1, runnable -> {
+					Thread thread = new Thread(runnable, "evaluator");
+					thread.setDaemon(true);
+					return thread;
+				});
+	}
+
+	/**
+	 * Evaluate a network on a dataset.
+	 *
+	 * @param model the trained neural network, it is not modified
+	 * @param features features of the dataset
+	 * @param labels labels of the dataset
+	 * @param numberOfClasses number of classes in the dataset
+	 * @return predictions of the network
+	 */
+	public ConfusionMatrixAccumulator evaluate(MultiLayerNetwork model, INDArray features, INDArray labels,
+			int numberOfClasses) {
+		int numberOfExamples = features.rows();
+		int numberOfChunks = (numberOfExamples + chunkSize - 1) / chunkSize;
+		int numberOfTasks = numberOfChunks > numberOfThreads ? numberOfThreads : 1;
+
+		// Every task takes every numberOfTasks-th chunk, the first task runs
+		// on the calling thread with the network itself. The copies are made
+		// before the network is used.
+		List<MultiLayerNetwork> copies = new ArrayList<>();
+		for (int task = 1; task < numberOfTasks; task++) {
+			copies.add(model.clone());
+		}
+		List<Future<ConfusionMatrixAccumulator>> futures = new ArrayList<>();
+		for (int task = 1; task < numberOfTasks; task++) {
+			int firstChunk = task;
+			MultiLayerNetwork copy = copies.get(task - 1);
+			futures.add(executor.submit(() -> evaluateChunks(copy, features, labels, numberOfClasses, firstChunk,
+					numberOfTasks, numberOfChunks)));
+		}
+		ConfusionMatrixAccumulator accumulator = evaluateChunks(model, features, labels, numberOfClasses, 0,
+				numberOfTasks, numberOfChunks);
+
+		for (Future<ConfusionMatrixAccumulator> future : futures) {
+			try {
+				accumulator.merge(future.get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for the evaluation.", e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("The evaluation failed.", e.getCause());
+			}
+		}
+		return accumulator;
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	public int getNumberOfThreads() {
+		return numberOfThreads;
+	}
+
+	private ConfusionMatrixAccumulator evaluateChunks(MultiLayerNetwork model, INDArray features, INDArray labels,
+			int numberOfClasses, int firstChunk, int chunkStep, int numberOfChunks) {
+		ConfusionMatrixAccumulator accumulator = new ConfusionMatrixAccumulator(numberOfClasses);
+		for (int chunk = firstChunk; chunk < numberOfChunks; chunk += chunkStep) {
+			int start = chunk * chunkSize;
+			int end = Math.min(start + chunkSize, features.rows());
+			if (start == 0 && end == features.rows()) {
+				accumulator.add(labels, model.output(features, false));
+			} else {
+				INDArray chunkFeatures = features.get(NDArrayIndex.interval(start, end), NDArrayIndex.all());
+				INDArray chunkLabels = labels.get(NDArrayIndex.interval(start, end), NDArrayIndex.all());
+				accumulator.add(chunkLabels, model.output(chunkFeatures, false));
+			}
+		}
+		return accumulator;
+	}
+}
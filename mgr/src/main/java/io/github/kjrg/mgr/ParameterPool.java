@@ -0,0 +1,143 @@
+package io.github.kjrg.mgr;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.FeedForwardLayer;
+import org.deeplearning4j.nn.conf.layers.Layer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+/**
+ * A pool of the parameter buffers of networks. The networks whose parameters
+ * are initialized in the same way (the same shapes of the layers, weight
+ * initialization and seed) get a buffer released by one of the previous
+ * networks, filled with the initial parameters computed once for the first of
+ * them. The parameters are the same as the ones computed by the weight
+ * initialization, but neither the buffer is allocated nor the random numbers
+ * are generated again.
+ *
+ * A network has to be released only when it is not used anymore, its buffer
+ * is overwritten by the next network.
+ *
+ * @author Krzysztof Gałka
+ */
+public class ParameterPool {
+
+	private final Map<String, INDArray> initialParameters = new HashMap<>();
+	private final Map<String, Deque<INDArray>> releasedBuffers = new HashMap<>();
+	private final Map<MultiLayerNetwork, PooledBuffer> borrowedBuffers = new IdentityHashMap<>();
+	private long numberOfAllocatedBuffers;
+	private long numberOfReusedBuffers;
+
+	/**
+	 * Create and initialize a neural network with a pooled parameter buffer.
+	 *
+	 * @param configuration the configuration of the neural network
+	 * @return initialized neural network
+	 */
+	public MultiLayerNetwork createModel(MultiLayerConfiguration configuration) {
+		String key = createKey(configuration);
+		INDArray initialParametersOfKey;
+		INDArray buffer = null;
+		synchronized (this) {
+			initialParametersOfKey = initialParameters.get(key);
+			Deque<INDArray> buffers = releasedBuffers.get(key);
+			if (initialParametersOfKey != null && buffers != null) {
+				buffer = buffers.poll();
+			}
+			if (buffer == null) {
+				numberOfAllocatedBuffers++;
+			} else {
+				numberOfReusedBuffers++;
+			}
+		}
+
+		MultiLayerNetwork model = new MultiLayerNetwork(configuration);
+		if (initialParametersOfKey == null) {
+			// The first network of its kind is initialized by the weight
+			// initialization, its parameters are kept as the initial ones
+			model.init();
+			buffer = model.params();
+			synchronized (this) {
+				initialParameters.putIfAbsent(key, buffer.dup());
+			}
+		} else {
+			if (buffer == null) {
+				buffer = Nd4j.create(initialParametersOfKey.shape());
+			}
+			buffer.assign(initialParametersOfKey);
+			// The buffer becomes the parameters of the network, without a copy
+			model.init(buffer, false);
+		}
+
+		synchronized (this) {
+			borrowedBuffers.put(model, new PooledBuffer(key, buffer));
+		}
+		return model;
+	}
+
+	/**
+	 * Return the parameter buffer of a network to the pool. The networks not
+	 * created by the pool are ignored.
+	 *
+	 * @param model the network, not used anymore
+	 */
+	public synchronized void release(MultiLayerNetwork model) {
+		PooledBuffer pooledBuffer = borrowedBuffers.remove(model);
+		if (pooledBuffer == null) {
+			return;
+		}
+		releasedBuffers.computeIfAbsent(pooledBuffer.key, key -> new ArrayDeque<>()).push(pooledBuffer.buffer);
+	}
+
+	/**
+	 * @return number of buffers allocated for the networks
+	 */
+	public synchronized long getNumberOfAllocatedBuffers() {
+		return numberOfAllocatedBuffers;
+	}
+
+	/**
+	 * @return number of networks which got a released buffer
+	 */
+	public synchronized long getNumberOfReusedBuffers() {
+		return numberOfReusedBuffers;
+	}
+
+	/*
+	 * The key covers everything the initial parameters depend on.
+	 */
+	private static String createKey(MultiLayerConfiguration configuration) {
+		StringBuilder key = new StringBuilder();
+		for (NeuralNetConfiguration layerConfiguration : configuration.getConfs()) {
+			Layer layer = layerConfiguration.getLayer();
+			key.append(layerConfiguration.getSeed()).append(':').append(layer.getClass().getSimpleName())
+					.append(':').append(layer.getWeightInit()).append(':').append(layer.getDist())
+					.append(':').append(layer.getBiasInit());
+			if (layer instanceof FeedForwardLayer) {
+				key.append(':').append(((FeedForwardLayer) layer).getNIn()).append(':')
+						.append(((FeedForwardLayer) layer).getNOut());
+			}
+			key.append(';');
+		}
+		return key.toString();
+	}
+
+	private static class PooledBuffer {
+
+		private final String key;
+		private final INDArray buffer;
+
+		public PooledBuffer(String key, INDArray buffer) {
+			this.key = key;
+			this.buffer = buffer;
+		}
+	}
+}
@@ -0,0 +1,667 @@
+package io.github.kjrg.mgr;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.Updater;
+import org.deeplearning4j.nn.conf.layers.BaseOutputLayer;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.FeedForwardLayer;
+import org.deeplearning4j.nn.conf.layers.Layer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.params.DefaultParamInitializer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.INDArrayIndex;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.nd4j.linalg.ops.transforms.Transforms;
+
+import io.github.kjrg.mgr.dto.ExperimentMetricsDTO;
+import io.github.kjrg.mgr.dto.TestResultDTO;
+
+/**
+ * A class training a population of networks of the same architecture at
+ * once. The networks may differ in the seed (the initial weights), the
+ * learning rate and the updater. The weights of all the networks are stacked
+ * into one matrix per layer - side by side in the first layer, which gets the
+ * same input for all the networks, and block-diagonally in the next layers -
+ * so that every layer of the whole population is computed with a single
+ * matrix multiplication instead of one small multiplication per network.
+ *
+ * The networks start from the parameters initialized by DL4J and are trained
+ * with full-batch gradient descent, the given number of iterations per epoch.
+ * The line search of the optimization algorithm is not performed, so the
+ * results are close to, but not the same as, the results of the TestRunner.
+ * Early stopping is applied to every network separately.
+ *
+ * @author Krzysztof Gałka
+ */
+public class PopulationTrainer {
+
+	private static final Set<String> ELEMENTWISE_ACTIVATIONS = new HashSet<>(Arrays.asList("tanh", "relu",
+			"sigmoid", "hardtanh", "leakyrelu", "softsign", "softplus", "identity"));
+	private static final Set<String> CROSS_ENTROPY_LOSSES = new HashSet<>(Arrays.asList("LossMCXENT",
+			"LossNegativeLogLikelihood"));
+	private static final Set<Updater> SUPPORTED_UPDATERS = new HashSet<>(Arrays.asList(Updater.SGD,
+			Updater.NESTEROVS, Updater.ADAM, Updater.ADADELTA));
+	private static final String SOFTMAX_ACTIVATION = "softmax";
+	private static final double DEFAULT_MOMENTUM = 0.9;
+	private static final double DEFAULT_RHO = 0.95;
+	private static final double DEFAULT_ADAM_MEAN_DECAY = 0.9;
+	private static final double DEFAULT_ADAM_VAR_DECAY = 0.999;
+	private static final double DEFAULT_ADAM_EPSILON = 1e-8;
+	private static final double DEFAULT_ADADELTA_EPSILON = 1e-6;
+
+	private final TestRunner testRunner;
+	private final EarlyStoppingSettings earlyStoppingSettings;
+
+	/**
+	 * @param testRunner test runner creating the networks
+	 * @param earlyStoppingSettings settings of early stopping, may be null
+	 */
+	public PopulationTrainer(TestRunner testRunner, EarlyStoppingSettings earlyStoppingSettings) {
+		this.testRunner = testRunner;
+		this.earlyStoppingSettings = earlyStoppingSettings;
+	}
+
+	/**
+	 * Check whether a network can be trained in a population - dense layers
+	 * with element-wise activations, a softmax output layer with the
+	 * cross-entropy loss, no regularization and one of the updaters SGD,
+	 * Nesterovs, Adam and AdaDelta.
+	 *
+	 * @param configuration the configuration of the network
+	 * @return true, if the network can be trained in a population
+	 */
+	public static boolean isSupported(MultiLayerConfiguration configuration) {
+		List<NeuralNetConfiguration> layerConfigurations = configuration.getConfs();
+		if (layerConfigurations.size() < 2 || configuration.isPretrain() || !configuration.isBackprop()) {
+			return false;
+		}
+
+		for (int l = 0; l < layerConfigurations.size(); l++) {
+			NeuralNetConfiguration layerConfiguration = layerConfigurations.get(l);
+			Layer layer = layerConfiguration.getLayer();
+			boolean outputLayer = l == layerConfigurations.size() - 1;
+			if (layerConfiguration.isUseRegularization() || layer.getDropOut() > 0
+					|| !SUPPORTED_UPDATERS.contains(layer.getUpdater())) {
+				return false;
+			}
+			if (outputLayer) {
+				if (!(layer instanceof OutputLayer)
+						|| !SOFTMAX_ACTIVATION.equals(layer.getActivationFunction())
+						|| !CROSS_ENTROPY_LOSSES.contains(
+								((BaseOutputLayer) layer).getLossFn().getClass().getSimpleName())) {
+					return false;
+				}
+			} else if (!(layer instanceof DenseLayer)
+					|| !ELEMENTWISE_ACTIVATIONS.contains(layer.getActivationFunction())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Create the key of the population of a network. The networks with the
+	 * same key can be trained together - they differ at most in the seed, the
+	 * weight initialization, the learning rate and the updater.
+	 *
+	 * @param configuration the configuration of a supported network
+	 * @return the key
+	 */
+	public static String createPopulationKey(MultiLayerConfiguration configuration) {
+		StringBuilder key = new StringBuilder();
+		for (NeuralNetConfiguration layerConfiguration : configuration.getConfs()) {
+			Layer layer = layerConfiguration.getLayer();
+			key.append(layer.getClass().getSimpleName()).append(':')
+					.append(((FeedForwardLayer) layer).getNIn()).append(':')
+					.append(((FeedForwardLayer) layer).getNOut()).append(':')
+					.append(layer.getActivationFunction()).append(':')
+					.append(layerConfiguration.getNumIterations()).append(':')
+					.append(layer.getMomentum()).append(':')
+					.append(layer.getRho()).append(':')
+					.append(layer.getEpsilon()).append(':')
+					.append(layer.getAdamMeanDecay()).append(':')
+					.append(layer.getAdamVarDecay()).append(';');
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Train and test a population of networks.
+	 *
+	 * @param trainDataset training dataset
+	 * @param validationDataset validation dataset, may be null
+	 * @param testDataset test dataset
+	 * @param configurations configurations of the networks, with the same
+	 *            population key
+	 * @param numberOfEpochs maximal number of epochs
+	 * @param numberOfClasses number of classes in the dataset
+	 * @return results of the networks, in the order of the configurations
+	 */
+	public List<TestResultDTO> runTest(DataSet trainDataset, DataSet validationDataset, DataSet testDataset,
+			List<MultiLayerConfiguration> configurations, int numberOfEpochs, int numberOfClasses) {
+		String key = createPopulationKey(configurations.get(0));
+		for (MultiLayerConfiguration configuration : configurations) {
+			if (!isSupported(configuration) || !key.equals(createPopulationKey(configuration))) {
+				throw new IllegalArgumentException("The networks cannot be trained in one population.");
+			}
+		}
+
+		ExperimentMetricsRecorder metricsRecorder = new ExperimentMetricsRecorder();
+		List<MultiLayerNetwork> models = new ArrayList<>();
+		for (MultiLayerConfiguration configuration : configurations) {
+			models.add(testRunner.createModel(configuration));
+		}
+		Population population = new Population(models);
+
+		int[] epochsTrained = train(population, trainDataset, validationDataset, numberOfEpochs, metricsRecorder);
+
+		// Evaluate all the networks at once
+		metricsRecorder.inferenceStarted();
+		INDArray predicted = population.output(testDataset.getFeatureMatrix());
+		metricsRecorder.inferenceFinished((long) testDataset.numExamples() * models.size());
+
+		population.copyParametersTo(models);
+		ExperimentMetricsDTO metrics = amortize(metricsRecorder.createMetrics(), models.size());
+		List<TestResultDTO> results = new ArrayList<>();
+		for (int i = 0; i < models.size(); i++) {
+			ConfusionMatrixAccumulator accumulator = new ConfusionMatrixAccumulator(numberOfClasses);
+			accumulator.add(testDataset.getLabels(), population.getBlock(predicted, i));
+			TestResultDTO result = new TestResultDTO(accumulator.createEvaluation(), epochsTrained[i], metrics,
+					models.get(i));
+			result.setAreasUnderRocCurve(accumulator.computeAreasUnderRocCurve());
+			results.add(result);
+		}
+		return results;
+	}
+
+	/*
+	 * Returns the number of epochs every network was trained for. A network
+	 * stopped early stops being updated, the other networks continue.
+	 */
+	private int[] train(Population population, DataSet trainDataset, DataSet validationDataset,
+			int numberOfEpochs, ExperimentMetricsRecorder metricsRecorder) {
+		int size = population.size;
+		int[] epochsTrained = new int[size];
+		double[] bestScores = new double[size];
+		int[] epochsWithoutImprovement = new int[size];
+		Arrays.fill(bestScores, Double.POSITIVE_INFINITY);
+		long startTime = System.currentTimeMillis();
+
+		for (int epoch = 0; epoch < numberOfEpochs && population.numberOfActiveNetworks() > 0; epoch++) {
+			for (int iteration = 0; iteration < population.numberOfIterations; iteration++) {
+				population.fit(trainDataset.getFeatureMatrix(), trainDataset.getLabels());
+			}
+			for (int i = 0; i < size; i++) {
+				if (population.active[i]) {
+					epochsTrained[i]++;
+				}
+			}
+			long numberOfTrainedExamples = (long) trainDataset.numExamples() * population.numberOfActiveNetworks();
+			metricsRecorder.epochFinished(numberOfTrainedExamples);
+			if (testRunner.getSweepProgress() != null) {
+				// The score of the population is not computed during the training
+				testRunner.getSweepProgress().iterationDone(Double.NaN, numberOfTrainedExamples);
+			}
+
+			if (earlyStoppingSettings == null) {
+				continue;
+			}
+
+			if (validationDataset != null) {
+				double[] scores = population.score(validationDataset.getFeatureMatrix(),
+						validationDataset.getLabels());
+				boolean[] improved = new boolean[size];
+				for (int i = 0; i < size; i++) {
+					if (!population.active[i]) {
+						continue;
+					}
+					if (scores[i] < bestScores[i] - earlyStoppingSettings.getMinImprovement()) {
+						bestScores[i] = scores[i];
+						improved[i] = true;
+						epochsWithoutImprovement[i] = 0;
+					} else if (++epochsWithoutImprovement[i] >= earlyStoppingSettings.getPatience()) {
+						population.active[i] = false;
+					}
+				}
+				population.saveBestParameters(improved);
+			}
+
+			if (earlyStoppingSettings.isTrainingTimeLimited()
+					&& System.currentTimeMillis() - startTime >= earlyStoppingSettings.getMaxTrainingTimeMillis()) {
+				break;
+			}
+		}
+
+		population.restoreBestParameters();
+		metricsRecorder.trainingFinished();
+		if (testRunner.getSweepProgress() != null) {
+			testRunner.getSweepProgress().trainingFinished();
+		}
+		return epochsTrained;
+	}
+
+	/*
+	 * The metrics of the population are divided between its networks, the
+	 * peaks of memory are shared.
+	 */
+	private static ExperimentMetricsDTO amortize(ExperimentMetricsDTO metrics, int size) {
+		return new ExperimentMetricsDTO(metrics.getTrainingTimeMillis() / size, metrics.getEpochTimeMillis() / size,
+				metrics.getInferenceTimeMillis() / size, metrics.getInferenceLatencyMicros(),
+				metrics.getTrainingSamplesPerSecond(), metrics.getPeakHeapBytes(), metrics.getPeakOffHeapBytes(),
+				metrics.getGcTimeMillis() / size, metrics.getAllocatedBytes() < 0 ? -1
+						: metrics.getAllocatedBytes() / size, metrics.getDataType());
+	}
+
+	/*
+	 * The stacked parameters and the state of the updaters of a population.
+	 */
+	private static class Population {
+
+		private final int size;
+		private final int numberOfIterations;
+		private final boolean[] active;
+		private final boolean[] saved;
+		private final List<StackedLayer> layers = new ArrayList<>();
+		private final Map<INDArray, INDArray> stackedLabels = new IdentityHashMap<>();
+
+		public Population(List<MultiLayerNetwork> models) {
+			this.size = models.size();
+			this.numberOfIterations = models.get(0).getLayerWiseConfigurations().getConf(0).getNumIterations();
+			this.active = new boolean[size];
+			this.saved = new boolean[size];
+			Arrays.fill(active, true);
+
+			int numberOfLayers = models.get(0).getLayerWiseConfigurations().getConfs().size();
+			for (int l = 0; l < numberOfLayers; l++) {
+				layers.add(new StackedLayer(models, l));
+			}
+		}
+
+		public int numberOfActiveNetworks() {
+			int numberOfActiveNetworks = 0;
+			for (boolean activeNetwork : active) {
+				numberOfActiveNetworks += activeNetwork ? 1 : 0;
+			}
+			return numberOfActiveNetworks;
+		}
+
+		/*
+		 * One iteration of the gradient descent of all the active networks.
+		 */
+		public void fit(INDArray features, INDArray labels) {
+			List<INDArray> inputs = new ArrayList<>();
+			List<INDArray> preOutputs = new ArrayList<>();
+			INDArray probabilities = forward(features, inputs, preOutputs);
+
+			// Gradient of the mean cross-entropy with respect to the
+			// pre-output of the softmax
+			INDArray delta = probabilities.subi(stackLabels(labels)).divi(features.rows());
+			for (int l = layers.size() - 1; l >= 0; l--) {
+				StackedLayer layer = layers.get(l);
+				INDArray weightGradient = inputs.get(l).transpose().mmul(delta);
+				if (layer.blockMask != null) {
+					weightGradient.muli(layer.blockMask);
+				}
+				INDArray biasGradient = delta.sum(0);
+
+				if (l > 0) {
+					INDArray epsilon = delta.mmul(layer.weights.transpose());
+					delta = layers.get(l - 1).backpropActivation(preOutputs.get(l - 1), epsilon);
+				}
+
+				INDArray activeColumns = layer.createColumnVector(active);
+				layer.weightUpdater.update(layer.weights, weightGradient, activeColumns);
+				layer.biasUpdater.update(layer.bias, biasGradient, activeColumns);
+			}
+		}
+
+		/*
+		 * Returns the mean cross-entropy of every network.
+		 */
+		public double[] score(INDArray features, INDArray labels) {
+			INDArray logProbabilities = Transforms.log(forward(features, null, null), false);
+			INDArray columnSums = logProbabilities.muli(stackLabels(labels)).sum(0);
+			int numberOfClasses = labels.columns();
+
+			double[] scores = new double[size];
+			for (int i = 0; i < size; i++) {
+				for (int c = 0; c < numberOfClasses; c++) {
+					scores[i] -= columnSums.getDouble(i * numberOfClasses + c);
+				}
+				scores[i] /= features.rows();
+			}
+			return scores;
+		}
+
+		public INDArray output(INDArray features) {
+			return forward(features, null, null);
+		}
+
+		/*
+		 * Returns the columns of the output of a network.
+		 */
+		public INDArray getBlock(INDArray output, int index) {
+			int numberOfClasses = output.columns() / size;
+			return output.get(NDArrayIndex.all(),
+					NDArrayIndex.interval(index * numberOfClasses, (index + 1) * numberOfClasses));
+		}
+
+		public void saveBestParameters(boolean[] improved) {
+			for (StackedLayer layer : layers) {
+				layer.saveBestParameters(improved);
+			}
+			for (int i = 0; i < size; i++) {
+				saved[i] |= improved[i];
+			}
+		}
+
+		public void restoreBestParameters() {
+			for (StackedLayer layer : layers) {
+				layer.restoreBestParameters(saved);
+			}
+		}
+
+		public void copyParametersTo(List<MultiLayerNetwork> models) {
+			for (int l = 0; l < layers.size(); l++) {
+				for (int i = 0; i < size; i++) {
+					layers.get(l).copyParametersTo(models.get(i), l, i);
+				}
+			}
+		}
+
+		/*
+		 * The inputs and the pre-outputs of the layers are collected for the
+		 * backpropagation, if the lists are given.
+		 */
+		private INDArray forward(INDArray features, List<INDArray> inputs, List<INDArray> preOutputs) {
+			INDArray activations = features;
+			for (int l = 0; l < layers.size(); l++) {
+				StackedLayer layer = layers.get(l);
+				if (inputs != null) {
+					inputs.add(activations);
+				}
+				INDArray preOutput = activations.mmul(layer.weights).addiRowVector(layer.bias);
+				if (l == layers.size() - 1) {
+					activations = softmaxOfBlocks(preOutput);
+				} else {
+					if (preOutputs != null) {
+						preOutputs.add(preOutput);
+					}
+					activations = layer.activate(preOutput.dup());
+				}
+			}
+			return activations;
+		}
+
+		/*
+		 * The softmax is computed separately for the outputs of every
+		 * network, i.e. over the rows of the output reshaped to one network
+		 * per row.
+		 */
+		private INDArray softmaxOfBlocks(INDArray preOutput) {
+			int numberOfRows = preOutput.rows();
+			int numberOfClasses = preOutput.columns() / size;
+			INDArray blocks = preOutput.dup('c').reshape(numberOfRows * size, numberOfClasses);
+			blocks.subiColumnVector(blocks.max(1));
+			Transforms.exp(blocks, false);
+			blocks.diviColumnVector(blocks.sum(1));
+			return blocks.reshape(numberOfRows, numberOfClasses * size);
+		}
+
+		/*
+		 * The labels repeated for every network, computed once per dataset.
+		 */
+		private INDArray stackLabels(INDArray labels) {
+			return stackedLabels.computeIfAbsent(labels,
+					key -> Nd4j.hstack(Collections.nCopies(size, key).toArray(new INDArray[size])));
+		}
+	}
+
+	/*
+	 * A layer of all the networks of a population. The weights of the first
+	 * layer are placed side by side, the weights of the next layers on the
+	 * diagonal of the matrix, with zeros outside of the blocks.
+	 */
+	private static class StackedLayer {
+
+		private final int numberOfInputs;
+		private final int numberOfOutputs;
+		private final INDArray weights;
+		private final INDArray bias;
+		private final INDArray blockMask;
+		private final String activationFunction;
+		private final StackedUpdater weightUpdater;
+		private final StackedUpdater biasUpdater;
+		private INDArray bestWeights;
+		private INDArray bestBias;
+
+		public StackedLayer(List<MultiLayerNetwork> models, int layerIndex) {
+			int size = models.size();
+			Layer layer = models.get(0).getLayerWiseConfigurations().getConf(layerIndex).getLayer();
+			this.numberOfInputs = ((FeedForwardLayer) layer).getNIn();
+			this.numberOfOutputs = ((FeedForwardLayer) layer).getNOut();
+			this.activationFunction = layer.getActivationFunction();
+
+			boolean blockDiagonal = layerIndex > 0;
+			int rows = blockDiagonal ? numberOfInputs * size : numberOfInputs;
+			this.weights = Nd4j.zeros(rows, numberOfOutputs * size);
+			this.bias = Nd4j.zeros(1, numberOfOutputs * size);
+			this.blockMask = blockDiagonal ? Nd4j.zeros(rows, numberOfOutputs * size) : null;
+
+			List<Layer> layers = new ArrayList<>();
+			for (int i = 0; i < size; i++) {
+				MultiLayerNetwork model = models.get(i);
+				weights.put(getWeightBlock(i), model.getParam(layerIndex + "_" + DefaultParamInitializer.WEIGHT_KEY));
+				bias.put(getBiasBlock(i), model.getParam(layerIndex + "_" + DefaultParamInitializer.BIAS_KEY));
+				if (blockMask != null) {
+					blockMask.put(getWeightBlock(i), Nd4j.ones(numberOfInputs, numberOfOutputs));
+				}
+				layers.add(model.getLayerWiseConfigurations().getConf(layerIndex).getLayer());
+			}
+
+			this.weightUpdater = new StackedUpdater(layers, numberOfOutputs, weights.shape(), false);
+			this.biasUpdater = new StackedUpdater(layers, numberOfOutputs, bias.shape(), true);
+		}
+
+		/*
+		 * Returns a row vector with the value of every network repeated over
+		 * its columns.
+		 */
+		public INDArray createColumnVector(boolean[] values) {
+			double[] columns = new double[values.length * numberOfOutputs];
+			for (int c = 0; c < columns.length; c++) {
+				columns[c] = values[c / numberOfOutputs] ? 1 : 0;
+			}
+			return Nd4j.create(columns);
+		}
+
+		/*
+		 * The activation function is applied in place, the same way as in the
+		 * DL4J layers - the transform of ND4J with the name of the function.
+		 */
+		public INDArray activate(INDArray preOutput) {
+			return Nd4j.getExecutioner()
+					.execAndReturn(Nd4j.getOpFactory().createTransform(activationFunction, preOutput));
+		}
+
+		/*
+		 * Returns the gradient with respect to the pre-output, the derivative
+		 * of the activation function is computed in place of the pre-output.
+		 */
+		public INDArray backpropActivation(INDArray preOutput, INDArray epsilon) {
+			return Nd4j.getExecutioner()
+					.execAndReturn(Nd4j.getOpFactory().createTransform(activationFunction, preOutput).derivative())
+					.muli(epsilon);
+		}
+
+		/*
+		 * Only the columns of the improved networks are replaced.
+		 */
+		public void saveBestParameters(boolean[] improved) {
+			if (bestWeights == null) {
+				bestWeights = weights.dup();
+				bestBias = bias.dup();
+				return;
+			}
+
+			replaceColumns(bestWeights, weights, improved);
+			replaceColumns(bestBias, bias, improved);
+		}
+
+		public void restoreBestParameters(boolean[] saved) {
+			if (bestWeights != null) {
+				replaceColumns(weights, bestWeights, saved);
+				replaceColumns(bias, bestBias, saved);
+			}
+		}
+
+		public void copyParametersTo(MultiLayerNetwork model, int layerIndex, int index) {
+			model.setParam(layerIndex + "_" + DefaultParamInitializer.WEIGHT_KEY, weights.get(getWeightBlock(index)).dup());
+			model.setParam(layerIndex + "_" + DefaultParamInitializer.BIAS_KEY, bias.get(getBiasBlock(index)).dup());
+		}
+
+		private void replaceColumns(INDArray target, INDArray source, boolean[] replaced) {
+			INDArray replacedColumns = createColumnVector(replaced);
+			target.muliRowVector(replacedColumns.rsub(1)).addi(source.mulRowVector(replacedColumns));
+		}
+
+		private INDArrayIndex[] getWeightBlock(int index) {
+			INDArrayIndex rows = blockMask == null ? NDArrayIndex.all()
+					: NDArrayIndex.interval(index * numberOfInputs, (index + 1) * numberOfInputs);
+			return new INDArrayIndex[] { rows,
+					NDArrayIndex.interval(index * numberOfOutputs, (index + 1) * numberOfOutputs) };
+		}
+
+		private INDArrayIndex[] getBiasBlock(int index) {
+			return new INDArrayIndex[] { NDArrayIndex.all(),
+					NDArrayIndex.interval(index * numberOfOutputs, (index + 1) * numberOfOutputs) };
+		}
+	}
+
+	/*
+	 * The updaters of the networks of a layer. Every updater used in the
+	 * population is computed for the whole matrix and its update is kept only
+	 * in the columns of the networks using it. The rules are the ones of the
+	 * DL4J updaters.
+	 */
+	private static class StackedUpdater {
+
+		private final INDArray learningRates;
+		private final INDArray sgdColumns;
+		private final INDArray nesterovsColumns;
+		private final INDArray adamColumns;
+		private final INDArray adadeltaColumns;
+		private final double momentum;
+		private final double rho;
+		private final double adamMeanDecay;
+		private final double adamVarDecay;
+		private final double adamEpsilon;
+		private final double adadeltaEpsilon;
+		private INDArray velocity;
+		private INDArray adamMean;
+		private INDArray adamVar;
+		private INDArray meanSquaredGradient;
+		private INDArray meanSquaredUpdate;
+		private int iteration;
+
+		public StackedUpdater(List<Layer> layers, int numberOfOutputs, int[] shape, boolean bias) {
+			int size = layers.size();
+			double[] learningRates = new double[size * numberOfOutputs];
+			double[][] columns = new double[Updater.values().length][size * numberOfOutputs];
+			for (int c = 0; c < learningRates.length; c++) {
+				Layer layer = layers.get(c / numberOfOutputs);
+				learningRates[c] = bias && !Double.isNaN(layer.getBiasLearningRate()) ? layer.getBiasLearningRate()
+						: layer.getLearningRate();
+				columns[layer.getUpdater().ordinal()][c] = 1;
+			}
+			this.learningRates = Nd4j.create(learningRates);
+
+			this.sgdColumns = createColumns(columns[Updater.SGD.ordinal()]);
+			this.nesterovsColumns = createColumns(columns[Updater.NESTEROVS.ordinal()]);
+			this.adamColumns = createColumns(columns[Updater.ADAM.ordinal()]);
+			this.adadeltaColumns = createColumns(columns[Updater.ADADELTA.ordinal()]);
+
+			// The hyperparameters are a part of the population key
+			Layer layer = layers.get(0);
+			this.momentum = valueOrDefault(layer.getMomentum(), DEFAULT_MOMENTUM);
+			this.rho = valueOrDefault(layer.getRho(), DEFAULT_RHO);
+			this.adamMeanDecay = valueOrDefault(layer.getAdamMeanDecay(), DEFAULT_ADAM_MEAN_DECAY);
+			this.adamVarDecay = valueOrDefault(layer.getAdamVarDecay(), DEFAULT_ADAM_VAR_DECAY);
+			this.adamEpsilon = valueOrDefault(layer.getEpsilon(), DEFAULT_ADAM_EPSILON);
+			this.adadeltaEpsilon = valueOrDefault(layer.getEpsilon(), DEFAULT_ADADELTA_EPSILON);
+
+			if (nesterovsColumns != null) {
+				velocity = Nd4j.zeros(shape);
+			}
+			if (adamColumns != null) {
+				adamMean = Nd4j.zeros(shape);
+				adamVar = Nd4j.zeros(shape);
+			}
+			if (adadeltaColumns != null) {
+				meanSquaredGradient = Nd4j.zeros(shape);
+				meanSquaredUpdate = Nd4j.zeros(shape);
+			}
+		}
+
+		/*
+		 * Subtracts the update from the parameters, in the active columns.
+		 */
+		public void update(INDArray parameters, INDArray gradient, INDArray activeColumns) {
+			iteration++;
+			INDArray update = Nd4j.zeros(parameters.shape());
+
+			if (sgdColumns != null) {
+				update.addi(gradient.mulRowVector(learningRates.mul(sgdColumns)));
+			}
+			if (nesterovsColumns != null) {
+				INDArray previousVelocity = velocity.dup();
+				velocity.muli(momentum).subi(gradient.mulRowVector(learningRates));
+				update.addi(previousVelocity.muli(momentum).subi(velocity.mul(1 + momentum))
+						.muliRowVector(nesterovsColumns));
+			}
+			if (adamColumns != null) {
+				adamMean.muli(adamMeanDecay).addi(gradient.mul(1 - adamMeanDecay));
+				adamVar.muli(adamVarDecay).addi(gradient.mul(gradient).muli(1 - adamVarDecay));
+				double biasCorrection = Math.sqrt(1 - Math.pow(adamVarDecay, iteration))
+						/ (1 - Math.pow(adamMeanDecay, iteration));
+				update.addi(adamMean.div(Transforms.sqrt(adamVar, true).addi(adamEpsilon))
+						.muliRowVector(learningRates.mul(adamColumns).muli(biasCorrection)));
+			}
+			if (adadeltaColumns != null) {
+				meanSquaredGradient.muli(rho).addi(gradient.mul(gradient).muli(1 - rho));
+				INDArray adadeltaUpdate = gradient.mul(Transforms.sqrt(meanSquaredUpdate.add(adadeltaEpsilon), false))
+						.divi(Transforms.sqrt(meanSquaredGradient.add(adadeltaEpsilon), false));
+				meanSquaredUpdate.muli(rho).addi(adadeltaUpdate.mul(adadeltaUpdate).muli(1 - rho));
+				update.addi(adadeltaUpdate.muliRowVector(adadeltaColumns));
+			}
+
+			parameters.subi(update.muliRowVector(activeColumns));
+		}
+
+		private static INDArray createColumns(double[] columns) {
+			for (double column : columns) {
+				if (column != 0) {
+					return Nd4j.create(columns);
+				}
+			}
+			return null;
+		}
+
+		private static double valueOrDefault(double value, double defaultValue) {
+			return Double.isNaN(value) || value == 0 ? defaultValue : value;
+		}
+	}
+}
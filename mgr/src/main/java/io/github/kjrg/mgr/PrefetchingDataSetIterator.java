@@ -0,0 +1,228 @@
+package io.github.kjrg.mgr;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+
+/**
+ * An iterator reading the mini-batches of another iterator in advance, on a
+ * background thread. The records are parsed and the mini-batches are
+ * normalized (by the pre-processor) on that thread, so the training thread
+ * only takes ready mini-batches from a bounded queue and does not wait for
+ * the disk, as long as the reading is faster than the training.
+ *
+ * The background thread ends when the underlying iterator is exhausted, it is
+ * started again after a reset. A failure of the background thread is thrown
+ * by hasNext() and next() on the training thread - the errors (e.g. an
+ * OutOfMemoryError) as they are, the exceptions wrapped in an
+ * IllegalStateException.
+ *
+ * @author Krzysztof Gałka
+ */
+public class PrefetchingDataSetIterator implements DataSetIterator {
+
+	private static final long serialVersionUID = 1L;
+	private static final Object END_OF_DATA = new Object();
+
+	private final DataSetIterator iterator;
+	private final int prefetchDepth;
+	private DataSetPreProcessor preProcessor;
+	private transient BlockingQueue<Object> queue;
+	private transient Thread readingThread;
+	private transient Object nextElement;
+
+	/**
+	 * @param iterator the underlying iterator, it must not be used directly
+	 *            anymore
+	 * @param prefetchDepth maximal number of mini-batches read in advance
+	 */
+	public PrefetchingDataSetIterator(DataSetIterator iterator, int prefetchDepth) {
+		if (prefetchDepth < 1) {
+			throw new IllegalArgumentException("The prefetch depth has to be at least 1.");
+		}
+		this.iterator = iterator;
+		this.prefetchDepth = prefetchDepth;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (nextElement == null) {
+			startReading();
+			try {
+				nextElement = queue.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for the data.", e);
+			}
+		}
+
+		if (nextElement instanceof Throwable) {
+			Throwable failure = (Throwable) nextElement;
+			nextElement = END_OF_DATA;
+			if (failure instanceof Error) {
+				throw (Error) failure;
+			}
+			throw new IllegalStateException("The data could not be read.", failure);
+		}
+		return nextElement != END_OF_DATA;
+	}
+
+	@Override
+	public DataSet next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		DataSet batch = (DataSet) nextElement;
+		nextElement = null;
+		return batch;
+	}
+
+	/**
+	 * Read a mini-batch of the given size directly from the underlying
+	 * iterator, on the calling thread. It cannot be mixed with the reading in
+	 * advance (hasNext() and next()) until the iterator is reset.
+	 */
+	@Override
+	public DataSet next(int num) {
+		if (readingThread != null) {
+			throw new IllegalStateException("The mini-batches are being read in advance, reset the iterator first.");
+		}
+		DataSet batch = iterator.next(num);
+		if (preProcessor != null) {
+			preProcessor.preProcess(batch);
+		}
+		return batch;
+	}
+
+	/**
+	 * Stop the reading, the mini-batches read in advance are dropped.
+	 */
+	@Override
+	public void reset() {
+		stopReading();
+		iterator.reset();
+	}
+
+	/**
+	 * Stop the background thread, e.g. when the iterator is not read to the
+	 * end.
+	 */
+	public void shutdown() {
+		stopReading();
+	}
+
+	public boolean resetSupported() {
+		return true;
+	}
+
+	public boolean asyncSupported() {
+		// Already asynchronous
+		return false;
+	}
+
+	@Override
+	public int totalExamples() {
+		return iterator.totalExamples();
+	}
+
+	@Override
+	public int inputColumns() {
+		return iterator.inputColumns();
+	}
+
+	@Override
+	public int totalOutcomes() {
+		return iterator.totalOutcomes();
+	}
+
+	@Override
+	public int batch() {
+		return iterator.batch();
+	}
+
+	@Override
+	public int cursor() {
+		return iterator.cursor();
+	}
+
+	@Override
+	public int numExamples() {
+		return iterator.numExamples();
+	}
+
+	/**
+	 * The pre-processor is applied on the background thread. It cannot be
+	 * changed while the data is being read.
+	 */
+	@Override
+	public void setPreProcessor(DataSetPreProcessor preProcessor) {
+		this.preProcessor = preProcessor;
+	}
+
+	public DataSetPreProcessor getPreProcessor() {
+		return preProcessor;
+	}
+
+	@Override
+	public List<String> getLabels() {
+		return iterator.getLabels();
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	private void startReading() {
+		if (readingThread != null) {
+			return;
+		}
+
+		BlockingQueue<Object> readQueue = new ArrayBlockingQueue<>(prefetchDepth);
+		DataSetPreProcessor readPreProcessor = preProcessor;
+		queue = readQueue;
+		readingThread = new Thread(() -> {
+			try {
+				while (iterator.hasNext()) {
+					DataSet batch = iterator.next();
+					if (readPreProcessor != null) {
+						readPreProcessor.preProcess(batch);
+					}
+					readQueue.put(batch);
+				}
+				readQueue.put(END_OF_DATA);
+			} catch (InterruptedException e) {
+				// The reading was stopped
+			} catch (Throwable e) {
+				// Also the errors are passed on, otherwise the training thread
+				// would wait for the data forever
+				try {
+					readQueue.put(e);
+				} catch (InterruptedException interruptedException) {
+					// The reading was stopped
+				}
+			}
+		}, "prefetching-data-reader");
+		readingThread.setDaemon(true);
+		readingThread.start();
+	}
+
+	private void stopReading() {
+		if (readingThread != null) {
+			readingThread.interrupt();
+			try {
+				readingThread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		readingThread = null;
+		queue = null;
+		nextElement = null;
+	}
+}
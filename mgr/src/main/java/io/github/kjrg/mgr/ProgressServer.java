@@ -0,0 +1,58 @@
+package io.github.kjrg.mgr;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An HTTP server on localhost showing the progress of the running sweep.
+ *
+ * GET /progress - the progress in the JSON format (see
+ * {@link SweepProgress#createStatusText()}).
+ *
+ * @author Krzysztof Gałka
+ */
+public class ProgressServer {
+
+	private static final int STOP_DELAY_IN_SECONDS = 0;
+
+	private final SweepProgress progress;
+	private final HttpServer server;
+
+	/**
+	 * Create a server and start it. The requests are handled by the thread of
+	 * the server, which runs until the server is stopped.
+	 *
+	 * @param progress progress of the sweep
+	 * @param port port on localhost
+	 * @throws IOException
+	 */
+	public ProgressServer(SweepProgress progress, int port) throws IOException {
+		this.progress = progress;
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/progress", this::handleProgress);
+		server.start();
+	}
+
+	public void stop() {
+		server.stop(STOP_DELAY_IN_SECONDS);
+	}
+
+	private void handleProgress(HttpExchange exchange) throws IOException {
+		try {
+			byte[] body = progress.createStatusText().getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream outputStream = exchange.getResponseBody()) {
+				outputStream.write(body);
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+}
@@ -1,173 +1,472 @@
-package io.github.kjrg.mgr;
-
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.List;
-
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.CellStyle;
-import org.apache.poi.ss.usermodel.Font;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
-import org.deeplearning4j.eval.Evaluation;
-import org.deeplearning4j.nn.conf.Updater;
-
-import io.github.kjrg.mgr.dto.ExperimentInfoDTO;
-
-/**
- * Class responsible for creating experiment reports.
- * 
- * @author Krzysztof Gaka
- */
-public class ReportCreator {
-
-	private static final String REPORT_FILENAME_PREFIX = "results_";
-	private static final String DATE_AND_TIME_FORMAT_FOR_REPORT_FILENAME = "yyyy_MM_dd_HH_mm_ss_SSS";
-	private static final String XLSX_FILE_EXTENSION = ".xlsx";
-	private static final int NUMBER_OF_COLUMNS_IN_RESULTS_SHEET = 7;
-	private static final String EXPERIMENT_RESULTS_SHEET_NAME = "Results";
-
-	/**
-	 * Create report.
-	 * 
-	 * @param experimentResultList results of experiments
-	 * @param outputDirectoryPath filepath of directory in which the report will be saved
-	 * @throws FileNotFoundException
-	 * @throws IOException
-	 */
-	public void createReport(List<ExperimentInfoDTO> experimentResultList, String outputDirectoryPath)
-			throws FileNotFoundException, IOException {
-
-		XSSFWorkbook workbook = new XSSFWorkbook();
-		XSSFSheet sheet = workbook.createSheet(EXPERIMENT_RESULTS_SHEET_NAME);
-
-		int numberOfRowsInHeader = createHeader(workbook, sheet);
-		addExperimentResultsToReport(experimentResultList, sheet, numberOfRowsInHeader);
-		autoSizeColumns(sheet, NUMBER_OF_COLUMNS_IN_RESULTS_SHEET);
-		saveReport(workbook, createOutputFilepath(outputDirectoryPath));
-		workbook.close();
-	}
-
-	private int createHeader(XSSFWorkbook workbook, XSSFSheet sheet) {
-		int rowNumber = 0;
-
-		Row row = sheet.createRow(rowNumber++);
-		CellStyle headerStyle = createHeaderStyle(workbook);
-
-		for (int i = 0; i < NUMBER_OF_COLUMNS_IN_RESULTS_SHEET; i++) {
-			Cell cell = row.createCell(i);
-
-			switch (i) {
-			case 0:
-				cell.setCellValue("Neurons in hidden layer");
-				cell.setCellStyle(headerStyle);
-				break;
-			case 1:
-				cell.setCellValue("Activation function");
-				cell.setCellStyle(headerStyle);
-				break;
-			case 2:
-				cell.setCellValue("Updater");
-				cell.setCellStyle(headerStyle);
-				break;
-			case 3:
-				cell.setCellValue("F1 score");
-				cell.setCellStyle(headerStyle);
-				break;
-			case 4:
-				cell.setCellValue("Accuracy");
-				cell.setCellStyle(headerStyle);
-				break;
-			case 5:
-				cell.setCellValue("Precision");
-				cell.setCellStyle(headerStyle);
-				break;
-			case 6:
-				cell.setCellValue("Recall");
-				cell.setCellStyle(headerStyle);
-				break;
-			}
-		}
-
-		return rowNumber;
-	}
-
-	private CellStyle createHeaderStyle(XSSFWorkbook workbook) {
-		CellStyle headerStyle = workbook.createCellStyle();
-		Font defaultFont = workbook.createFont();
-		defaultFont.setBold(true);
-		headerStyle.setFont(defaultFont);
-		return headerStyle;
-	}
-
-	private void addExperimentResultsToReport(List<ExperimentInfoDTO> experimentResultList, XSSFSheet sheet,
-			int headerRows) {
-		int rowNumber = headerRows;
-
-		for (ExperimentInfoDTO experimentResult : experimentResultList) {
-			Row row = sheet.createRow(rowNumber++);
-			addSingleExperimentResultToReport(experimentResult, row);
-		}
-	}
-
-	private void addSingleExperimentResultToReport(ExperimentInfoDTO experimentResult, Row row) {
-		for (int i = 0; i < NUMBER_OF_COLUMNS_IN_RESULTS_SHEET; i++) {
-			Evaluation experimentEvaluation = experimentResult.getExperimentResult();
-			if (experimentEvaluation == null) {
-				return;
-			}
-
-			Cell cell = row.createCell(i);
-
-			switch (i) {
-			case 0:
-				cell.setCellValue(experimentResult.getNumberOfNeuronsInHiddenLayer());
-				break;
-			case 1:
-				cell.setCellValue(experimentResult.getActivationFunction());
-				break;
-			case 2:
-				Updater updater = experimentResult.getUpdater();
-				String updaterInfo = (updater == null ? "" : updater.toString());
-				cell.setCellValue(updaterInfo);
-				break;
-			case 3:
-				cell.setCellValue(experimentEvaluation.f1());
-				break;
-			case 4:
-				cell.setCellValue(experimentEvaluation.accuracy());
-				break;
-			case 5:
-				cell.setCellValue(experimentEvaluation.precision());
-				break;
-			case 6:
-				cell.setCellValue(experimentEvaluation.recall());
-				break;
-			}
-		}
-	}
-	
-	private void autoSizeColumns(XSSFSheet sheet, int numberOfColumns) {
-		for (int i = 0; i < numberOfColumns; i++) {
-			sheet.autoSizeColumn(i);
-		}
-	}
-
-	private String createOutputFilepath(String outputDirectoryPath) {
-		LocalDateTime currentDateAndTime = LocalDateTime.now();
-		DateTimeFormatter formatter = DateTimeFormatter.ofPattern(DATE_AND_TIME_FORMAT_FOR_REPORT_FILENAME);
-		return outputDirectoryPath + File.separator
-				+ REPORT_FILENAME_PREFIX + currentDateAndTime.format(formatter) + XLSX_FILE_EXTENSION;
-	}
-
-	private void saveReport(XSSFWorkbook workbook, String outputFilepath) throws FileNotFoundException, IOException {
-		try (FileOutputStream outputStream = new FileOutputStream(outputFilepath)) {
-			workbook.write(outputStream);
-		}
-	}
-}
+package io.github.kjrg.mgr;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.deeplearning4j.eval.Evaluation;
+import org.deeplearning4j.nn.conf.Updater;
+
+import io.github.kjrg.mgr.dto.CrossValidationStatisticsDTO;
+import io.github.kjrg.mgr.dto.ExperimentInfoDTO;
+import io.github.kjrg.mgr.dto.ExperimentMetricsDTO;
+
+/**
+ * Class responsible for creating experiment reports.
+ * 
+ * @author Krzysztof Gałka
+ */
+public class ReportCreator {
+
+	private static final String REPORT_FILENAME_PREFIX = "results_";
+	private static final String DATE_AND_TIME_FORMAT_FOR_REPORT_FILENAME = "yyyy_MM_dd_HH_mm_ss_SSS";
+	private static final String XLSX_FILE_EXTENSION = ".xlsx";
+	private static final int NUMBER_OF_COLUMNS_IN_RESULTS_SHEET = 30;
+	private static final int FIRST_METRICS_COLUMN = 8;
+	private static final int FIRST_CROSS_VALIDATION_COLUMN = 18;
+	private static final int AREA_UNDER_ROC_CURVE_COLUMN = 26;
+	private static final int NUMBER_OF_PARAMETERS_COLUMN = 28;
+	private static final String EXPERIMENT_RESULTS_SHEET_NAME = "Results";
+	private static final int ROW_ACCESS_WINDOW_SIZE = 100;
+	private static final int DEFAULT_FLUSH_INTERVAL = 100;
+	private static final int MIN_COLUMN_WIDTH_IN_CHARACTERS = 12;
+	private static final int COLUMN_WIDTH_UNITS_PER_CHARACTER = 256;
+	private static final double BYTES_IN_MEGABYTE = 1024.0 * 1024.0;
+
+	/**
+	 * Create report.
+	 * 
+	 * @param experimentResultList results of experiments
+	 * @param outputDirectoryPath filepath of directory in which the report will be saved
+	 * @throws FileNotFoundException
+	 * @throws IOException
+	 */
+	public void createReport(List<ExperimentInfoDTO> experimentResultList, String outputDirectoryPath)
+			throws FileNotFoundException, IOException {
+
+		try (StreamingReport report = openReport(outputDirectoryPath, DEFAULT_FLUSH_INTERVAL)) {
+			for (ExperimentInfoDTO experimentResult : experimentResultList) {
+				report.append(experimentResult);
+			}
+		}
+	}
+
+	/**
+	 * Open a report to which the results of experiments are appended as soon
+	 * as they are available. Only a bounded window of rows is kept in memory,
+	 * the older rows are flushed to a temporary file. The report is saved
+	 * when it is closed.
+	 * 
+	 * @param outputDirectoryPath filepath of directory in which the report will be saved
+	 * @param flushInterval number of rows after which the rows kept in memory are flushed
+	 * @return the opened report
+	 */
+	public StreamingReport openReport(String outputDirectoryPath, int flushInterval) {
+		return openReportFile(createOutputFilepath(outputDirectoryPath), flushInterval);
+	}
+
+	/**
+	 * Open a report saved under the given filepath (see
+	 * {@link #openReport(String, int)}).
+	 * 
+	 * @param outputFilepath filepath of the report
+	 * @param flushInterval number of rows after which the rows kept in memory are flushed
+	 * @return the opened report
+	 */
+	public StreamingReport openReportFile(String outputFilepath, int flushInterval) {
+		return new StreamingReport(outputFilepath, flushInterval);
+	}
+
+	/**
+	 * @param outputDirectoryPath filepath of directory in which the report will be saved
+	 * @return filepath of a new report, named after the current date and time
+	 */
+	public String createOutputFilepath(String outputDirectoryPath) {
+		LocalDateTime currentDateAndTime = LocalDateTime.now();
+		DateTimeFormatter formatter = DateTimeFormatter.ofPattern(DATE_AND_TIME_FORMAT_FOR_REPORT_FILENAME);
+		return outputDirectoryPath + File.separator
+				+ REPORT_FILENAME_PREFIX + currentDateAndTime.format(formatter) + XLSX_FILE_EXTENSION;
+	}
+
+	/**
+	 * A report backed by a streaming workbook.
+	 */
+	public class StreamingReport implements ResultSink {
+
+		private final String outputFilepath;
+		private final int flushInterval;
+		private final SXSSFWorkbook workbook;
+		private final SXSSFSheet sheet;
+		private int rowNumber;
+		private boolean closed;
+
+		private StreamingReport(String outputFilepath, int flushInterval) {
+			if (flushInterval < 1) {
+				throw new IllegalArgumentException("The flush interval has to be at least 1.");
+			}
+
+			this.outputFilepath = outputFilepath;
+			this.flushInterval = flushInterval;
+			this.workbook = new SXSSFWorkbook(ROW_ACCESS_WINDOW_SIZE);
+			this.sheet = workbook.createSheet(EXPERIMENT_RESULTS_SHEET_NAME);
+			this.rowNumber = createHeader(workbook, sheet);
+		}
+
+		/**
+		 * Append the result of an experiment to the report.
+		 * 
+		 * @param experimentResult result of the experiment
+		 * @throws IOException
+		 */
+		@Override
+		public synchronized void append(ExperimentInfoDTO experimentResult) throws IOException {
+			if (closed) {
+				throw new IllegalStateException("The report has already been saved.");
+			}
+
+			Row row = sheet.createRow(rowNumber++);
+			addSingleExperimentResultToReport(experimentResult, row);
+
+			if (rowNumber % flushInterval == 0) {
+				sheet.flushRows();
+			}
+		}
+
+		/**
+		 * @return filepath of the report
+		 */
+		@Override
+		public String getOutputFilepath() {
+			return outputFilepath;
+		}
+
+		/**
+		 * @return true, if the report has already been saved
+		 */
+		public synchronized boolean isClosed() {
+			return closed;
+		}
+
+		/**
+		 * Save the report and release the temporary files. Closing the report
+		 * again has no effect.
+		 */
+		@Override
+		public synchronized void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+
+			try {
+				saveReport(workbook, outputFilepath);
+			} finally {
+				workbook.dispose();
+				workbook.close();
+			}
+		}
+	}
+
+	private int createHeader(Workbook workbook, Sheet sheet) {
+		int rowNumber = 0;
+
+		Row row = sheet.createRow(rowNumber++);
+		CellStyle headerStyle = createHeaderStyle(workbook);
+
+		for (int i = 0; i < NUMBER_OF_COLUMNS_IN_RESULTS_SHEET; i++) {
+			Cell cell = row.createCell(i);
+
+			switch (i) {
+			case 0:
+				cell.setCellValue("Neurons in hidden layer");
+				cell.setCellStyle(headerStyle);
+				break;
+			case 1:
+				cell.setCellValue("Activation function");
+				cell.setCellStyle(headerStyle);
+				break;
+			case 2:
+				cell.setCellValue("Updater");
+				cell.setCellStyle(headerStyle);
+				break;
+			case 3:
+				cell.setCellValue("F1 score");
+				cell.setCellStyle(headerStyle);
+				break;
+			case 4:
+				cell.setCellValue("Accuracy");
+				cell.setCellStyle(headerStyle);
+				break;
+			case 5:
+				cell.setCellValue("Precision");
+				cell.setCellStyle(headerStyle);
+				break;
+			case 6:
+				cell.setCellValue("Recall");
+				cell.setCellStyle(headerStyle);
+				break;
+			case 7:
+				cell.setCellValue("Epochs");
+				cell.setCellStyle(headerStyle);
+				break;
+			case 8:
+				cell.setCellValue("Training time [ms]");
+				cell.setCellStyle(headerStyle);
+				break;
+			case 9:
+				cell.setCellValue("Epoch time [ms]");
+				cell.setCellStyle(headerStyle);
+				break;
+			case 10:
+				cell.setCellValue("Training examples/s");
+				cell.setCellStyle(headerStyle);
+				break;
+			case 11:
+				cell.setCellValue("Inference time [ms]");
+				cell.setCellStyle(headerStyle);
+				break;
+			case 12:
+				cell.setCellValue("Latency per example [us]");
+				cell.setCellStyle(headerStyle);
+				break;
+			case 13:
+				cell.setCellValue("Peak heap [MB]");
+				cell.setCellStyle(headerStyle);
+				break;
+			case 14:
+				cell.setCellValue("Peak off-heap [MB]");
+				cell.setCellStyle(headerStyle);
+				break;
+			case 15:
+				cell.setCellValue("GC time [ms]");
+				cell.setCellStyle(headerStyle);
+				break;
+			case 16:
+				cell.setCellValue("Allocated heap [MB]");
+				cell.setCellStyle(headerStyle);
+				break;
+			case 17:
+				cell.setCellValue("Data type");
+				cell.setCellStyle(headerStyle);
+				break;
+			case 18:
+				cell.setCellValue("F1 mean");
+				cell.setCellStyle(headerStyle);
+				break;
+			case 19:
+				cell.setCellValue("F1 std");
+				cell.setCellStyle(headerStyle);
+				break;
+			case 20:
+				cell.setCellValue("Accuracy mean");
+				cell.setCellStyle(headerStyle);
+				break;
+			case 21:
+				cell.setCellValue("Accuracy std");
+				cell.setCellStyle(headerStyle);
+				break;
+			case 22:
+				cell.setCellValue("Precision mean");
+				cell.setCellStyle(headerStyle);
+				break;
+			case 23:
+				cell.setCellValue("Precision std");
+				cell.setCellStyle(headerStyle);
+				break;
+			case 24:
+				cell.setCellValue("Recall mean");
+				cell.setCellStyle(headerStyle);
+				break;
+			case 25:
+				cell.setCellValue("Recall std");
+				cell.setCellStyle(headerStyle);
+				break;
+			case 26:
+				cell.setCellValue("AUC");
+				cell.setCellStyle(headerStyle);
+				break;
+			case 27:
+				cell.setCellValue("Topology");
+				cell.setCellStyle(headerStyle);
+				break;
+			case 28:
+				cell.setCellValue("Parameters");
+				cell.setCellStyle(headerStyle);
+				break;
+			case 29:
+				cell.setCellValue("Dropout");
+				cell.setCellStyle(headerStyle);
+				break;
+			}
+		}
+
+		setColumnWidths(sheet, row);
+		return rowNumber;
+	}
+
+	private CellStyle createHeaderStyle(Workbook workbook) {
+		CellStyle headerStyle = workbook.createCellStyle();
+		Font defaultFont = workbook.createFont();
+		defaultFont.setBold(true);
+		headerStyle.setFont(defaultFont);
+		return headerStyle;
+	}
+
+	private void addSingleExperimentResultToReport(ExperimentInfoDTO experimentResult, Row row) {
+		for (int i = 0; i < NUMBER_OF_COLUMNS_IN_RESULTS_SHEET; i++) {
+			Evaluation experimentEvaluation = experimentResult.getExperimentResult();
+			if (experimentEvaluation == null) {
+				return;
+			}
+
+			// The metrics and the cross-validation statistics are not
+			// available for all the search modes, their cells are left empty
+			ExperimentMetricsDTO metrics = experimentResult.getMetrics();
+			CrossValidationStatisticsDTO crossValidationStatistics = experimentResult.getCrossValidationStatistics();
+			if (metrics == null && i >= FIRST_METRICS_COLUMN && i < FIRST_CROSS_VALIDATION_COLUMN) {
+				continue;
+			}
+			if (crossValidationStatistics == null && i >= FIRST_CROSS_VALIDATION_COLUMN
+					&& i < AREA_UNDER_ROC_CURVE_COLUMN) {
+				continue;
+			}
+			if (i == AREA_UNDER_ROC_CURVE_COLUMN && Double.isNaN(experimentResult.getAreaUnderRocCurve())) {
+				continue;
+			}
+			if (i == NUMBER_OF_PARAMETERS_COLUMN && experimentResult.getNumberOfParameters() < 0) {
+				continue;
+			}
+
+			Cell cell = row.createCell(i);
+
+			switch (i) {
+			case 0:
+				cell.setCellValue(experimentResult.getNumberOfNeuronsInHiddenLayer());
+				break;
+			case 1:
+				cell.setCellValue(experimentResult.getActivationFunction());
+				break;
+			case 2:
+				Updater updater = experimentResult.getUpdater();
+				String updaterInfo = (updater == null ? "" : updater.toString());
+				cell.setCellValue(updaterInfo);
+				break;
+			case 3:
+				cell.setCellValue(experimentEvaluation.f1());
+				break;
+			case 4:
+				cell.setCellValue(experimentEvaluation.accuracy());
+				break;
+			case 5:
+				cell.setCellValue(experimentEvaluation.precision());
+				break;
+			case 6:
+				cell.setCellValue(experimentEvaluation.recall());
+				break;
+			case 7:
+				cell.setCellValue(experimentResult.getNumberOfEpochs());
+				break;
+			case 8:
+				cell.setCellValue(metrics.getTrainingTimeMillis());
+				break;
+			case 9:
+				cell.setCellValue(metrics.getEpochTimeMillis());
+				break;
+			case 10:
+				cell.setCellValue(metrics.getTrainingSamplesPerSecond());
+				break;
+			case 11:
+				cell.setCellValue(metrics.getInferenceTimeMillis());
+				break;
+			case 12:
+				cell.setCellValue(metrics.getInferenceLatencyMicros());
+				break;
+			case 13:
+				cell.setCellValue(metrics.getPeakHeapBytes() / BYTES_IN_MEGABYTE);
+				break;
+			case 14:
+				cell.setCellValue(metrics.getPeakOffHeapBytes() / BYTES_IN_MEGABYTE);
+				break;
+			case 15:
+				cell.setCellValue(metrics.getGcTimeMillis());
+				break;
+			case 16:
+				if (metrics.getAllocatedBytes() >= 0) {
+					cell.setCellValue(metrics.getAllocatedBytes() / BYTES_IN_MEGABYTE);
+				}
+				break;
+			case 17:
+				if (metrics.getDataType() != null) {
+					cell.setCellValue(metrics.getDataType());
+				}
+				break;
+			case 18:
+				cell.setCellValue(crossValidationStatistics.getMeanF1());
+				break;
+			case 19:
+				cell.setCellValue(crossValidationStatistics.getStdF1());
+				break;
+			case 20:
+				cell.setCellValue(crossValidationStatistics.getMeanAccuracy());
+				break;
+			case 21:
+				cell.setCellValue(crossValidationStatistics.getStdAccuracy());
+				break;
+			case 22:
+				cell.setCellValue(crossValidationStatistics.getMeanPrecision());
+				break;
+			case 23:
+				cell.setCellValue(crossValidationStatistics.getStdPrecision());
+				break;
+			case 24:
+				cell.setCellValue(crossValidationStatistics.getMeanRecall());
+				break;
+			case 25:
+				cell.setCellValue(crossValidationStatistics.getStdRecall());
+				break;
+			case 26:
+				cell.setCellValue(experimentResult.getAreaUnderRocCurve());
+				break;
+			case 27:
+				cell.setCellValue(experimentResult.getTopology());
+				break;
+			case 28:
+				cell.setCellValue(experimentResult.getNumberOfParameters());
+				break;
+			case 29:
+				cell.setCellValue(experimentResult.getDropOut());
+				break;
+			}
+		}
+	}
+	
+	/*
+	 * The widths are computed from the header only, measuring every cell
+	 * (autoSizeColumn) is too slow for large reports.
+	 */
+	private void setColumnWidths(Sheet sheet, Row header) {
+		for (int i = 0; i < header.getLastCellNum(); i++) {
+			int widthInCharacters = Math.max(MIN_COLUMN_WIDTH_IN_CHARACTERS,
+					header.getCell(i).getStringCellValue().length() + 2);
+			sheet.setColumnWidth(i, widthInCharacters * COLUMN_WIDTH_UNITS_PER_CHARACTER);
+		}
+	}
+
+	private void saveReport(Workbook workbook, String outputFilepath) throws FileNotFoundException, IOException {
+		try (FileOutputStream outputStream = new FileOutputStream(outputFilepath)) {
+			workbook.write(outputStream);
+		}
+	}
+}
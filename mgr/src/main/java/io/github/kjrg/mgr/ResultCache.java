@@ -0,0 +1,183 @@
+package io.github.kjrg.mgr;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.nd4j.linalg.factory.Nd4j;
+
+import io.github.kjrg.mgr.dto.TestResultDTO;
+
+/**
+ * A persistent cache of the results of tests, so that the experiments which
+ * were already done in an earlier sweep (e.g. one with fewer activation
+ * functions) are not repeated. Every result is stored in its own file, named
+ * after the key of the experiment. The total size of the files is limited,
+ * the least recently used results are evicted first - the time of the last
+ * use is the modification time of the file, so the order survives restarts.
+ *
+ * The networks are not cached, a cached result has no network.
+ *
+ * @author Krzysztof Gałka
+ */
+public class ResultCache {
+
+	private static final String RESULT_FILE_EXTENSION = ".result";
+	private static final String TEMPORARY_FILE_EXTENSION = ".tmp";
+
+	private final File cacheDirectory;
+	private final long maxSizeBytes;
+	private final ExperimentInfoCodec codec;
+	// Sizes of the files, from the least recently used
+	private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long sizeBytes;
+	private long numberOfHits;
+	private long numberOfMisses;
+	private long numberOfEvictions;
+
+	/**
+	 * Open a cache, reading the list of the results which are already in it.
+	 *
+	 * @param cacheDirectoryPath path of the directory in which the results are
+	 *            stored, it is created if it does not exist
+	 * @param maxSizeBytes maximal total size of the results
+	 * @param codec codec used for converting the results to text
+	 */
+	public ResultCache(String cacheDirectoryPath, long maxSizeBytes, ExperimentInfoCodec codec) {
+		this.cacheDirectory = new File(cacheDirectoryPath);
+		this.maxSizeBytes = maxSizeBytes;
+		this.codec = codec;
+		if (!cacheDirectory.isDirectory() && !cacheDirectory.mkdirs()) {
+			throw new IllegalStateException("The cache directory " + cacheDirectoryPath + " could not be created.");
+		}
+
+		File[] files = cacheDirectory.listFiles((directory, name) -> name.endsWith(RESULT_FILE_EXTENSION));
+		if (files != null) {
+			Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+			for (File file : files) {
+				String name = file.getName();
+				entries.put(name.substring(0, name.length() - RESULT_FILE_EXTENSION.length()), file.length());
+				sizeBytes += file.length();
+			}
+		}
+	}
+
+	/**
+	 * Create the key of an experiment. The JSON of the configuration is
+	 * written by DL4J in a fixed order of the fields, so the same
+	 * configuration always gives the same key.
+	 *
+	 * @param configuration configuration of the neural network
+	 * @param datasetFingerprint fingerprint of the data used in the experiment
+	 * @param numberOfEpochs number of epochs
+	 * @param settings other settings changing the result (e.g. early
+	 *            stopping)
+	 * @return key of the experiment
+	 */
+	public static String createKey(MultiLayerConfiguration configuration, String datasetFingerprint,
+			int numberOfEpochs, String settings) {
+		return Hashes.ofText(configuration.toJson(), datasetFingerprint, String.valueOf(numberOfEpochs),
+				String.valueOf(configuration.getConf(0).getSeed()), DataTypes.getName(Nd4j.dataType()), settings);
+	}
+
+	/**
+	 * @param key key of an experiment
+	 * @return the cached result of the experiment or null, if it is not
+	 *         cached
+	 */
+	public synchronized TestResultDTO get(String key) {
+		// Getting the entry makes it the most recently used one
+		if (entries.get(key) == null) {
+			numberOfMisses++;
+			return null;
+		}
+
+		File file = getFile(key);
+		try {
+			TestResultDTO result = codec.decodeTestResult(
+					new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+			file.setLastModified(System.currentTimeMillis());
+			numberOfHits++;
+			return result;
+		} catch (IOException | IllegalArgumentException e) {
+			// Removed by another process or not correct
+			System.out.println("Warning: the cached result " + file + " could not be read and will be ignored");
+			remove(key);
+			numberOfMisses++;
+			return null;
+		}
+	}
+
+	/**
+	 * Store the result of an experiment and evict the least recently used
+	 * results, if the cache is full.
+	 *
+	 * @param key key of the experiment
+	 * @param result result of the experiment
+	 * @throws IOException
+	 */
+	public synchronized void put(String key, TestResultDTO result) throws IOException {
+		byte[] content = codec.encode(result).getBytes(StandardCharsets.UTF_8);
+		File file = getFile(key);
+		File temporaryFile = new File(file.getPath() + TEMPORARY_FILE_EXTENSION);
+		Files.write(temporaryFile.toPath(), content);
+		Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+		Long previousSize = entries.put(key, (long) content.length);
+		sizeBytes += content.length - (previousSize == null ? 0 : previousSize);
+		evict();
+	}
+
+	public synchronized long getNumberOfHits() {
+		return numberOfHits;
+	}
+
+	public synchronized long getNumberOfMisses() {
+		return numberOfMisses;
+	}
+
+	public synchronized long getNumberOfEvictions() {
+		return numberOfEvictions;
+	}
+
+	/**
+	 * @return number of cached results
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/*
+	 * The most recently stored result is never evicted.
+	 */
+	private void evict() {
+		Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+		while (sizeBytes > maxSizeBytes && entries.size() > 1) {
+			Map.Entry<String, Long> entry = iterator.next();
+			getFile(entry.getKey()).delete();
+			sizeBytes -= entry.getValue();
+			iterator.remove();
+			numberOfEvictions++;
+		}
+	}
+
+	private void remove(String key) {
+		Long size = entries.remove(key);
+		if (size != null) {
+			sizeBytes -= size;
+		}
+		getFile(key).delete();
+	}
+
+	private File getFile(String key) {
+		return new File(cacheDirectory, key + RESULT_FILE_EXTENSION);
+	}
+}
@@ -0,0 +1,95 @@
+package io.github.kjrg.mgr;
+
+import org.deeplearning4j.eval.Evaluation;
+
+import io.github.kjrg.mgr.dto.CrossValidationStatisticsDTO;
+import io.github.kjrg.mgr.dto.ExperimentInfoDTO;
+import io.github.kjrg.mgr.dto.ExperimentMetricsDTO;
+
+/**
+ * The columns of the results of experiments written by the sinks of typed
+ * values (see {@link JsonLinesResultSink} and {@link ColumnarResultSink}) and
+ * by the CSV sink (see {@link MetricsExporter}).
+ * Every column has one of the types: a long, a double, a string or an array
+ * of doubles (a value per class). The unknown values are null.
+ *
+ * @author Krzysztof Gałka
+ */
+final class ResultColumns {
+
+	static final char LONG = 'l';
+	static final char DOUBLE = 'd';
+	static final char STRING = 's';
+	static final char DOUBLE_ARRAY = 'a';
+
+	static final String[] NAMES = { "neurons", "topology", "parameters", "dropout", "activation", "updater",
+			"epochs", "f1", "accuracy", "precision", "recall", "auc", "f1_per_class", "auc_per_class",
+			"training_time_ms", "epoch_time_ms", "training_examples_per_second", "inference_time_ms",
+			"inference_latency_us", "peak_heap_bytes", "peak_off_heap_bytes", "gc_time_ms", "allocated_bytes",
+			"data_type", "cv_folds", "cv_f1_mean", "cv_f1_std", "cv_accuracy_mean", "cv_accuracy_std",
+			"cv_precision_mean", "cv_precision_std", "cv_recall_mean", "cv_recall_std" };
+	static final char[] TYPES = { LONG, STRING, LONG, DOUBLE, STRING, STRING,
+			LONG, DOUBLE, DOUBLE, DOUBLE, DOUBLE, DOUBLE, DOUBLE_ARRAY, DOUBLE_ARRAY,
+			DOUBLE, DOUBLE, DOUBLE, DOUBLE,
+			DOUBLE, LONG, LONG, LONG, LONG,
+			STRING, LONG, DOUBLE, DOUBLE, DOUBLE, DOUBLE,
+			DOUBLE, DOUBLE, DOUBLE, DOUBLE };
+
+	private ResultColumns() {
+	}
+
+	/**
+	 * @param experimentResult result of an experiment
+	 * @return values of the columns, in the order of {@link #NAMES}
+	 */
+	static Object[] getValues(ExperimentInfoDTO experimentResult) {
+		Evaluation evaluation = experimentResult.getExperimentResult();
+		ExperimentMetricsDTO metrics = experimentResult.getMetrics();
+		CrossValidationStatisticsDTO statistics = experimentResult.getCrossValidationStatistics();
+		double areaUnderRocCurve = experimentResult.getAreaUnderRocCurve();
+
+		return new Object[] {
+				(long) experimentResult.getNumberOfNeuronsInHiddenLayer(),
+				experimentResult.getTopology(),
+				experimentResult.getNumberOfParameters() < 0 ? null : experimentResult.getNumberOfParameters(),
+				experimentResult.getDropOut(),
+				experimentResult.getActivationFunction(),
+				experimentResult.getUpdater() == null ? null : experimentResult.getUpdater().name(),
+				(long) experimentResult.getNumberOfEpochs(),
+				evaluation.f1(),
+				evaluation.accuracy(),
+				evaluation.precision(),
+				evaluation.recall(),
+				Double.isNaN(areaUnderRocCurve) ? null : areaUnderRocCurve,
+				getF1PerClass(evaluation),
+				experimentResult.getAreasUnderRocCurve(),
+				metrics == null ? null : metrics.getTrainingTimeMillis(),
+				metrics == null ? null : metrics.getEpochTimeMillis(),
+				metrics == null ? null : metrics.getTrainingSamplesPerSecond(),
+				metrics == null ? null : metrics.getInferenceTimeMillis(),
+				metrics == null ? null : metrics.getInferenceLatencyMicros(),
+				metrics == null ? null : metrics.getPeakHeapBytes(),
+				metrics == null ? null : metrics.getPeakOffHeapBytes(),
+				metrics == null ? null : metrics.getGcTimeMillis(),
+				metrics == null || metrics.getAllocatedBytes() < 0 ? null : metrics.getAllocatedBytes(),
+				metrics == null ? null : metrics.getDataType(),
+				statistics == null ? null : (long) statistics.getNumberOfFolds(),
+				statistics == null ? null : statistics.getMeanF1(),
+				statistics == null ? null : statistics.getStdF1(),
+				statistics == null ? null : statistics.getMeanAccuracy(),
+				statistics == null ? null : statistics.getStdAccuracy(),
+				statistics == null ? null : statistics.getMeanPrecision(),
+				statistics == null ? null : statistics.getStdPrecision(),
+				statistics == null ? null : statistics.getMeanRecall(),
+				statistics == null ? null : statistics.getStdRecall() };
+	}
+
+	private static double[] getF1PerClass(Evaluation evaluation) {
+		int numberOfClasses = evaluation.getConfusionMatrix().getClasses().size();
+		double[] values = new double[numberOfClasses];
+		for (int c = 0; c < numberOfClasses; c++) {
+			values[c] = evaluation.f1(c);
+		}
+		return values;
+	}
+}
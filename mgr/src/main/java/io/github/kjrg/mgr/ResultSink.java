@@ -0,0 +1,30 @@
+package io.github.kjrg.mgr;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import io.github.kjrg.mgr.dto.ExperimentInfoDTO;
+
+/**
+ * A destination of the results of experiments, e.g. a report file. The
+ * results are appended one by one, as soon as the experiments finish, and are
+ * saved at the latest when the sink is closed. Closing a sink again has no
+ * effect.
+ *
+ * @author Krzysztof Gałka
+ */
+public interface ResultSink extends Closeable {
+
+	/**
+	 * Append the result of an experiment.
+	 *
+	 * @param experimentResult result of the experiment
+	 * @throws IOException
+	 */
+	void append(ExperimentInfoDTO experimentResult) throws IOException;
+
+	/**
+	 * @return path of the file (or the directory) the results are written to
+	 */
+	String getOutputFilepath();
+}
@@ -0,0 +1,94 @@
+package io.github.kjrg.mgr;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A factory of the sinks of the results of a run. The files of all the sinks
+ * have the name of the XLSX report (results_date_time), with different
+ * suffixes:
+ *
+ * xlsx - the report (see {@link ReportCreator})
+ * csv - the metrics, _metrics.csv (see {@link MetricsExporter})
+ * jsonl - the results in the JSON lines format, .jsonl (see
+ * {@link JsonLinesResultSink})
+ * columnar - a file per column in the _columns directory (see
+ * {@link ColumnarResultSink})
+ *
+ * Every sink writes the results on its own thread (see
+ * {@link AsyncResultSink}).
+ *
+ * @author Krzysztof Gałka
+ */
+public final class ResultSinks {
+
+	public static final String DEFAULT_SINKS = "xlsx,csv";
+
+	private static final String SINK_SEPARATOR_REGEX = ",";
+	private static final String XLSX_FILE_EXTENSION_REGEX = "\\.xlsx$";
+	private static final String METRICS_FILENAME_SUFFIX = "_metrics.csv";
+	private static final String JSON_LINES_FILENAME_SUFFIX = ".jsonl";
+	private static final String COLUMNS_DIRECTORY_SUFFIX = "_columns";
+	private static final int QUEUE_CAPACITY = 1024;
+
+	private ResultSinks() {
+	}
+
+	/**
+	 * Open the sinks.
+	 *
+	 * @param sinkNames names of the sinks separated with commas, e.g.
+	 *            "xlsx,csv,jsonl,columnar"
+	 * @param outputDirectoryPath directory in which the results are saved
+	 * @param reportFlushInterval number of rows after which the rows of the
+	 *            XLSX report kept in memory are flushed
+	 * @return sink passing the results to all the sinks
+	 * @throws IOException
+	 */
+	public static CompositeResultSink open(String sinkNames, String outputDirectoryPath, int reportFlushInterval)
+			throws IOException {
+		ReportCreator reportCreator = new ReportCreator();
+		String reportFilepath = reportCreator.createOutputFilepath(outputDirectoryPath);
+		List<ResultSink> sinks = new ArrayList<>();
+
+		try {
+			for (String sinkName : sinkNames.split(SINK_SEPARATOR_REGEX)) {
+				ResultSink sink = create(sinkName.trim(), reportCreator, reportFilepath, reportFlushInterval);
+				if (sink == null) {
+					System.out.println("Warning: the result sink " + sinkName + " is not correct and will be ignored");
+					continue;
+				}
+				sinks.add(new AsyncResultSink(sink, QUEUE_CAPACITY));
+			}
+		} catch (IOException e) {
+			for (ResultSink sink : sinks) {
+				sink.close();
+			}
+			throw e;
+		}
+
+		if (sinks.isEmpty()) {
+			throw new IllegalStateException("The result sinks were not provided or are incorrect.");
+		}
+		return new CompositeResultSink(sinks);
+	}
+
+	private static ResultSink create(String sinkName, ReportCreator reportCreator, String reportFilepath,
+			int reportFlushInterval) throws IOException {
+		switch (sinkName) {
+		case "xlsx":
+			return reportCreator.openReportFile(reportFilepath, reportFlushInterval);
+		case "csv":
+			return new MetricsExporter(reportFilepath.replaceFirst(XLSX_FILE_EXTENSION_REGEX, METRICS_FILENAME_SUFFIX));
+		case "jsonl":
+			return new JsonLinesResultSink(
+					reportFilepath.replaceFirst(XLSX_FILE_EXTENSION_REGEX, JSON_LINES_FILENAME_SUFFIX));
+		case "columnar":
+			return new ColumnarResultSink(
+					reportFilepath.replaceFirst(XLSX_FILE_EXTENSION_REGEX, COLUMNS_DIRECTORY_SUFFIX));
+		default:
+			return null;
+		}
+	}
+}
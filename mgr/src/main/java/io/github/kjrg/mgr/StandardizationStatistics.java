@@ -0,0 +1,156 @@
+package io.github.kjrg.mgr;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.dataset.api.preprocessor.NormalizerStandardize;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.ops.transforms.Transforms;
+
+/**
+ * A class representing the statistics used for the standardization of the
+ * features (mean and standard deviation of every column).
+ *
+ * @author Krzysztof Gałka
+ */
+public class StandardizationStatistics implements DataSetPreProcessor {
+
+	private static final long serialVersionUID = 1L;
+
+	private final INDArray mean;
+	private final INDArray std;
+
+	public StandardizationStatistics(INDArray mean, INDArray std) {
+		this.mean = mean;
+		this.std = std;
+	}
+
+	/**
+	 * Compute the statistics of a dataset.
+	 *
+	 * @param dataset dataset to compute the statistics of
+	 * @return statistics of the dataset
+	 */
+	public static StandardizationStatistics fit(DataSet dataset) {
+		NormalizerStandardize normalizer = new NormalizerStandardize();
+		normalizer.fit(dataset);
+		return new StandardizationStatistics(normalizer.getMean(), normalizer.getStd());
+	}
+
+	/**
+	 * Compute the statistics of a dataset read in mini-batches, in a single
+	 * pass over the data. The statistics of every mini-batch are merged into
+	 * the running ones (the parallel variant of the Welford's algorithm), so
+	 * the dataset is never kept in memory and the result is numerically
+	 * stable.
+	 *
+	 * @param iterator iterator over the dataset
+	 * @return statistics of the dataset
+	 */
+	public static StandardizationStatistics fit(DataSetIterator iterator) {
+		long count = 0;
+		INDArray mean = null;
+		INDArray squaredDeviations = null;
+		while (iterator.hasNext()) {
+			INDArray features = iterator.next().getFeatureMatrix();
+			int batchCount = features.rows();
+			if (batchCount == 0) {
+				continue;
+			}
+			INDArray batchMean = features.mean(0);
+			INDArray deviations = features.subRowVector(batchMean);
+			INDArray batchSquaredDeviations = deviations.muli(deviations).sum(0);
+
+			if (mean == null) {
+				mean = batchMean;
+				squaredDeviations = batchSquaredDeviations;
+			} else {
+				long totalCount = count + batchCount;
+				INDArray delta = batchMean.subi(mean);
+				mean.addi(delta.mul((double) batchCount / totalCount));
+				squaredDeviations.addi(batchSquaredDeviations)
+						.addi(delta.muli(delta).muli((double) count * batchCount / totalCount));
+			}
+			count += batchCount;
+		}
+
+		if (mean == null) {
+			throw new IllegalArgumentException("The statistics cannot be computed for an empty dataset.");
+		}
+		// The sample standard deviation, as computed by the NormalizerStandardize
+		INDArray std = Transforms.sqrt(squaredDeviations.divi(Math.max(count - 1, 1)), false);
+		std.addi(Nd4j.EPS_THRESHOLD);
+		return new StandardizationStatistics(mean, std);
+	}
+
+	/**
+	 * Standardize the features of a dataset in place.
+	 *
+	 * @param dataset dataset to be standardized
+	 */
+	public void transform(DataSet dataset) {
+		transform(dataset.getFeatureMatrix());
+	}
+
+	/**
+	 * Standardize features in place.
+	 *
+	 * @param features features, one example per row
+	 */
+	public void transform(INDArray features) {
+		features.subiRowVector(mean).diviRowVector(std);
+	}
+
+	/**
+	 * Save the statistics to a file.
+	 *
+	 * @param file the file
+	 * @throws IOException
+	 */
+	public void save(File file) throws IOException {
+		try (DataOutputStream outputStream = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file)))) {
+			Nd4j.write(mean, outputStream);
+			Nd4j.write(std, outputStream);
+		}
+	}
+
+	/**
+	 * Read the statistics saved with {@link #save(File)}.
+	 *
+	 * @param file the file
+	 * @return the statistics
+	 * @throws IOException
+	 */
+	public static StandardizationStatistics load(File file) throws IOException {
+		try (DataInputStream inputStream = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file)))) {
+			INDArray mean = Nd4j.read(inputStream);
+			INDArray std = Nd4j.read(inputStream);
+			return new StandardizationStatistics(mean, std);
+		}
+	}
+
+	@Override
+	public void preProcess(org.nd4j.linalg.dataset.api.DataSet toPreProcess) {
+		toPreProcess.getFeatures().subiRowVector(mean).diviRowVector(std);
+	}
+
+	public INDArray getMean() {
+		return mean;
+	}
+
+	public INDArray getStd() {
+		return std;
+	}
+}
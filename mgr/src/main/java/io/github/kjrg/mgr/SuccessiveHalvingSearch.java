@@ -0,0 +1,271 @@
+package io.github.kjrg.mgr;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.util.ModelSerializer;
+import org.nd4j.linalg.dataset.DataSet;
+
+import io.github.kjrg.mgr.dto.TestResultDTO;
+
+/**
+ * A class for searching the configurations of neural networks with successive
+ * halving. All the candidates are trained for a small number of epochs, the
+ * worse ones are dropped and only the survivors are trained further, with the
+ * number of epochs multiplied by the reduction factor in every round.
+ *
+ * The results of every round and the trained networks can be saved in a state
+ * directory, so that an interrupted search is resumed from the last completed
+ * round. The state is resumed only by a search over the same data, settings
+ * and configurations.
+ *
+ * @author Krzysztof Gałka
+ */
+public class SuccessiveHalvingSearch {
+
+	private static final String SEPARATOR = ";";
+	private static final String ROUND_FILENAME_PREFIX = "round_";
+	private static final String ROUND_FILE_EXTENSION = ".csv";
+	private static final String MODEL_FILENAME_PREFIX = "candidate_";
+	private static final String MODEL_FILE_EXTENSION = ".zip";
+	private static final String TEMPORARY_FILE_EXTENSION = ".tmp";
+	private static final String FINGERPRINT_HEADER = "fingerprint=";
+
+	private final TestRunner testRunner;
+	private final ExperimentScheduler experimentScheduler;
+	private final int minNumberOfEpochs;
+	private final int reductionFactor;
+	private final File stateDirectory;
+
+	/**
+	 * Create a search.
+	 *
+	 * @param testRunner runner used for training and evaluating the networks
+	 * @param experimentScheduler scheduler running the candidates of a round
+	 * @param minNumberOfEpochs number of epochs of the first round
+	 * @param reductionFactor only 1 / reductionFactor of the candidates
+	 *            survive a round, the survivors are trained reductionFactor
+	 *            times longer in the next round
+	 * @param stateDirectoryPath directory in which the state of the search is
+	 *            saved, may be null
+	 */
+	public SuccessiveHalvingSearch(TestRunner testRunner, ExperimentScheduler experimentScheduler,
+			int minNumberOfEpochs, int reductionFactor, String stateDirectoryPath) {
+		if (minNumberOfEpochs < 1) {
+			throw new IllegalArgumentException("The minimal number of epochs has to be at least 1.");
+		}
+		if (reductionFactor < 2) {
+			throw new IllegalArgumentException("The reduction factor has to be at least 2.");
+		}
+
+		this.testRunner = testRunner;
+		this.experimentScheduler = experimentScheduler;
+		this.minNumberOfEpochs = minNumberOfEpochs;
+		this.reductionFactor = reductionFactor;
+		this.stateDirectory = stateDirectoryPath == null || stateDirectoryPath.isEmpty() ? null
+				: new File(stateDirectoryPath);
+
+		if (stateDirectory != null && !stateDirectory.isDirectory() && !stateDirectory.mkdirs()) {
+			throw new IllegalStateException("The state directory " + stateDirectoryPath + " could not be created.");
+		}
+	}
+
+	/**
+	 * Run the search. The candidates are ranked by their score (loss) on the
+	 * validation dataset or, if it is not provided, on the training dataset.
+	 *
+	 * @param configurations configurations of the candidate networks
+	 * @param trainDataset training dataset
+	 * @param validationDataset validation dataset, may be null
+	 * @param testDataset test dataset
+	 * @param maxNumberOfEpochs number of epochs the best candidates are
+	 *            trained for
+	 * @param numberOfClasses number of classes in the dataset
+	 * @param dataFingerprint fingerprint of the data and the settings which
+	 *            are not part of the configurations (see
+	 *            App.createDatasetFingerprint)
+	 * @return results of all the candidates, in the order of the
+	 *         configurations, with the number of epochs each candidate was
+	 *         trained for before it was dropped
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 * @throws IOException
+	 */
+	public List<TestResultDTO> run(List<MultiLayerConfiguration> configurations, DataSet trainDataset,
+			DataSet validationDataset, DataSet testDataset, int maxNumberOfEpochs, int numberOfClasses,
+			String dataFingerprint) throws InterruptedException, ExecutionException, IOException {
+		if (configurations.isEmpty()) {
+			throw new IllegalArgumentException("The successive halving search requires at least one configuration.");
+		}
+
+		String fingerprint = Hashes.ofText(dataFingerprint, Hashes.ofConfigurations(configurations),
+				String.valueOf(minNumberOfEpochs), String.valueOf(reductionFactor), String.valueOf(maxNumberOfEpochs),
+				String.valueOf(numberOfClasses));
+		DataSet rankingDataset = validationDataset == null ? trainDataset : validationDataset;
+		List<Candidate> candidates = new ArrayList<>();
+		for (int i = 0; i < configurations.size(); i++) {
+			candidates.add(new Candidate(i, configurations.get(i)));
+		}
+
+		int round = resume(candidates, fingerprint);
+		List<Candidate> survivors = new ArrayList<>();
+		for (Candidate candidate : candidates) {
+			if (candidate.survived) {
+				survivors.add(candidate);
+			}
+		}
+
+		int roundEpochs = 0;
+		while (roundEpochs < maxNumberOfEpochs) {
+			roundEpochs = survivors.size() == 1 ? maxNumberOfEpochs
+					: (int) Math.min(maxNumberOfEpochs, minNumberOfEpochs * Math.pow(reductionFactor, round));
+			if (survivors.get(0).epochsTrained >= roundEpochs) {
+				round++;
+				continue;
+			}
+
+			System.out.println(System.lineSeparator() + "Successive halving round " + round + ": "
+					+ survivors.size() + " candidate(s), " + roundEpochs + " epoch(s)");
+
+			final int epochs = roundEpochs;
+			experimentScheduler.runExperiments(survivors, candidate -> {
+				if (candidate.model == null) {
+					candidate.model = testRunner.createModel(candidate.configuration);
+				}
+				testRunner.train(candidate.model, trainDataset, epochs - candidate.epochsTrained);
+				candidate.epochsTrained = epochs;
+				candidate.score = candidate.model.score(rankingDataset);
+				return candidate;
+			}, candidate -> {
+				// The candidates are updated in place
+			});
+
+			survivors.sort(Comparator.comparingDouble((Candidate candidate) -> candidate.score)
+					.thenComparingInt(candidate -> candidate.index));
+			if (roundEpochs < maxNumberOfEpochs) {
+				int numberOfSurvivors = Math.max(1, (int) Math.ceil((double) survivors.size() / reductionFactor));
+				for (Candidate candidate : survivors.subList(numberOfSurvivors, survivors.size())) {
+					candidate.survived = false;
+				}
+				survivors = new ArrayList<>(survivors.subList(0, numberOfSurvivors));
+			}
+
+			saveRound(round, candidates, epochs, fingerprint);
+			System.out.println("Best score after round " + round + ": " + survivors.get(0).score);
+			round++;
+		}
+
+		List<TestResultDTO> results = new ArrayList<>();
+		for (Candidate candidate : candidates) {
+			results.add(new TestResultDTO(testRunner.evaluate(candidate.model, testDataset, numberOfClasses),
+					candidate.epochsTrained, null, candidate.model));
+		}
+		return results;
+	}
+
+	/*
+	 * Round file format: header with the fingerprint of the search (the data,
+	 * the settings and the configurations), then one line per candidate
+	 * trained in the round: index, epochs, score, survived.
+	 * The round file is written after the networks, so it marks the round as
+	 * completed.
+	 */
+	private void saveRound(int round, List<Candidate> candidates, int roundEpochs, String fingerprint)
+			throws IOException {
+		if (stateDirectory == null) {
+			return;
+		}
+
+		for (Candidate candidate : candidates) {
+			if (candidate.epochsTrained == roundEpochs) {
+				ModelSerializer.writeModel(candidate.model, getModelFile(candidate.index), true);
+			}
+		}
+
+		File roundFile = getRoundFile(round);
+		File temporaryFile = new File(roundFile.getPath() + TEMPORARY_FILE_EXTENSION);
+		try (PrintWriter writer = new PrintWriter(temporaryFile, "UTF-8")) {
+			writer.println(FINGERPRINT_HEADER + fingerprint);
+			for (Candidate candidate : candidates) {
+				if (candidate.epochsTrained == roundEpochs) {
+					writer.println(candidate.index + SEPARATOR + candidate.epochsTrained + SEPARATOR
+							+ candidate.score + SEPARATOR + candidate.survived);
+				}
+			}
+		}
+		Files.move(temporaryFile.toPath(), roundFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/*
+	 * Returns the number of the first round which has not been completed.
+	 */
+	private int resume(List<Candidate> candidates, String fingerprint) throws IOException {
+		if (stateDirectory == null) {
+			return 0;
+		}
+
+		int round = 0;
+		while (getRoundFile(round).isFile()) {
+			try (BufferedReader reader = new BufferedReader(new FileReader(getRoundFile(round)))) {
+				String header = reader.readLine();
+				if (header == null || !header.equals(FINGERPRINT_HEADER + fingerprint)) {
+					throw new IllegalStateException("The state directory " + stateDirectory
+							+ " contains a search over different data, settings or configurations.");
+				}
+
+				String line;
+				while ((line = reader.readLine()) != null) {
+					String[] fields = line.split(SEPARATOR);
+					Candidate candidate = candidates.get(Integer.parseInt(fields[0]));
+					candidate.epochsTrained = Integer.parseInt(fields[1]);
+					candidate.score = Double.parseDouble(fields[2]);
+					candidate.survived = Boolean.parseBoolean(fields[3]);
+				}
+			}
+			round++;
+		}
+
+		if (round > 0) {
+			System.out.println("Resuming the search from round " + round);
+			for (Candidate candidate : candidates) {
+				candidate.model = ModelSerializer.restoreMultiLayerNetwork(getModelFile(candidate.index));
+			}
+		}
+		return round;
+	}
+
+	private File getRoundFile(int round) {
+		return new File(stateDirectory, ROUND_FILENAME_PREFIX + round + ROUND_FILE_EXTENSION);
+	}
+
+	private File getModelFile(int index) {
+		return new File(stateDirectory, MODEL_FILENAME_PREFIX + index + MODEL_FILE_EXTENSION);
+	}
+
+	private static class Candidate {
+
+		private final int index;
+		private final MultiLayerConfiguration configuration;
+		private MultiLayerNetwork model;
+		private int epochsTrained;
+		private double score = Double.NaN;
+		private boolean survived = true;
+
+		public Candidate(int index, MultiLayerConfiguration configuration) {
+			this.index = index;
+			this.configuration = configuration;
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package io.github.kjrg.mgr;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bytedeco.javacpp.Pointer;
+import org.deeplearning4j.api.storage.StatsStorage;
+import org.deeplearning4j.nn.api.Model;
+import org.deeplearning4j.optimize.api.IterationListener;
+import org.deeplearning4j.ui.api.UIServer;
+import org.deeplearning4j.ui.stats.StatsListener;
+import org.deeplearning4j.ui.storage.InMemoryStatsStorage;
+
+/**
+ * The progress of a sweep: the number of finished experiments, the estimated
+ * time of the end, the current score of the networks being trained, the
+ * number of examples trained on per second and the used memory. The progress
+ * is updated by the listener of the networks (see
+ * {@link #createListeners()}) and by the application, when the results are
+ * delivered.
+ *
+ * @author Krzysztof Gałka
+ */
+public class SweepProgress implements IterationListener {
+
+	private static final long serialVersionUID = 1L;
+	private static final double NANOSECONDS_IN_SECOND = 1e9;
+
+	private final long startTime = System.nanoTime();
+	private final AtomicInteger numberOfExperiments = new AtomicInteger(-1);
+	private final AtomicInteger numberOfFinishedExperiments = new AtomicInteger();
+	private final AtomicLong numberOfTrainedExamples = new AtomicLong();
+	// Training in progress, by the name of the thread
+	private final Map<String, TrainingState> trainingStates = new ConcurrentHashMap<>();
+	private transient StatsStorage statsStorage;
+
+	/**
+	 * @param numberOfExperiments number of experiments of the sweep, -1 if it
+	 *            is not known
+	 */
+	public void setNumberOfExperiments(int numberOfExperiments) {
+		this.numberOfExperiments.set(numberOfExperiments);
+	}
+
+	/**
+	 * Record a finished experiment, also one taken from the journal.
+	 */
+	public void experimentFinished() {
+		numberOfFinishedExperiments.incrementAndGet();
+	}
+
+	/**
+	 * Record an iteration of the training run by the current thread.
+	 *
+	 * @param score score of the network after the iteration, NaN if it is not
+	 *            known
+	 * @param numberOfExamples number of examples the network was trained on
+	 */
+	public void iterationDone(double score, long numberOfExamples) {
+		numberOfTrainedExamples.addAndGet(numberOfExamples);
+		trainingStates.computeIfAbsent(Thread.currentThread().getName(), name -> new TrainingState())
+				.update(score);
+	}
+
+	/**
+	 * Record the end of the training run by the current thread.
+	 */
+	public void trainingFinished() {
+		trainingStates.remove(Thread.currentThread().getName());
+	}
+
+	/**
+	 * Also send the statistics of the training to the user interface of DL4J
+	 * (http://localhost:9000), every network as a separate session.
+	 */
+	public void enableUserInterface() {
+		statsStorage = new InMemoryStatsStorage();
+		UIServer.getInstance().attach(statsStorage);
+	}
+
+	/**
+	 * @return listeners to be set on a new network
+	 */
+	public IterationListener[] createListeners() {
+		if (statsStorage == null) {
+			return new IterationListener[] { this };
+		}
+		return new IterationListener[] { this, new StatsListener(statsStorage) };
+	}
+
+	@Override
+	public boolean invoked() {
+		return false;
+	}
+
+	@Override
+	public void invoke() {
+	}
+
+	@Override
+	public void iterationDone(Model model, int iteration) {
+		iterationDone(model.score(), model.batchSize());
+	}
+
+	/**
+	 * @return the progress in the JSON format
+	 */
+	public String createStatusText() {
+		double elapsedSeconds = (System.nanoTime() - startTime) / NANOSECONDS_IN_SECOND;
+		int total = numberOfExperiments.get();
+		int finished = numberOfFinishedExperiments.get();
+		Double remainingSeconds = total < 0 || finished == 0 ? null
+				: elapsedSeconds / finished * Math.max(0, total - finished);
+		MemoryUsage heapUsage = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+
+		StringBuilder textBuilder = new StringBuilder();
+		textBuilder.append(String.format(Locale.ROOT,
+				"{\"experiments\":%s,\"finished\":%d,\"remaining\":%s,\"elapsed_s\":%.1f,\"eta_s\":%s,"
+						+ "\"examples_per_s\":%.1f,\"heap_used_bytes\":%d,\"heap_max_bytes\":%d,"
+						+ "\"off_heap_bytes\":%d,\"off_heap_max_bytes\":%d,\"training\":[",
+				total < 0 ? "null" : String.valueOf(total), finished,
+				total < 0 ? "null" : String.valueOf(Math.max(0, total - finished)), elapsedSeconds,
+				formatNumber(remainingSeconds),
+				elapsedSeconds == 0 ? 0 : numberOfTrainedExamples.get() / elapsedSeconds, heapUsage.getUsed(),
+				heapUsage.getMax(), Pointer.totalBytes(), Pointer.maxBytes()));
+		String separator = "";
+		for (Map.Entry<String, TrainingState> entry : trainingStates.entrySet()) {
+			TrainingState state = entry.getValue();
+			textBuilder.append(separator).append(String.format(Locale.ROOT,
+					"{\"thread\":\"%s\",\"iterations\":%d,\"score\":%s}", entry.getKey(), state.numberOfIterations,
+					formatNumber(state.score)));
+			separator = ",";
+		}
+		return textBuilder.append("]}").toString();
+	}
+
+	private static String formatNumber(Double value) {
+		return value == null || value.isNaN() || value.isInfinite() ? "null"
+				: String.format(Locale.ROOT, "%.6f", value);
+	}
+
+	/*
+	 * Updated only by the thread running the training.
+	 */
+	private static final class TrainingState {
+
+		private volatile long numberOfIterations;
+		private volatile double score = Double.NaN;
+
+		void update(double score) {
+			this.score = score;
+			numberOfIterations++;
+		}
+	}
+}
@@ -1,48 +1,411 @@
-package io.github.kjrg.mgr;
-
-import org.deeplearning4j.eval.Evaluation;
-import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
-import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
-import org.nd4j.linalg.api.ndarray.INDArray;
-import org.nd4j.linalg.dataset.DataSet;
-
-/**
- * A class for running tests.
- * 
- * @author Krzysztof Gaka
- */
-public class TestRunner {
-
-	/**
-	 * Run a test of a neural network.
-	 * 
-	 * @param trainDataset training dataset
-	 * @param testDataset test dataset
-	 * @param configuration the configuration of the neural network to be tested
-	 * @param numberOfEpochs number of epochs
-	 * @param numberOfClasses number of classes in the dataset
-	 * @return
-	 */
-	public Evaluation runTest(DataSet trainDataset, DataSet testDataset, MultiLayerConfiguration configuration,
-			int numberOfEpochs, int numberOfClasses) {
-		
-		// Create the model
-		MultiLayerNetwork model = new MultiLayerNetwork(configuration);
-        model.init();
-        
-        // Train the neural network
-    	for (int n = 0; n < numberOfEpochs; n++) {
-    		model.fit(trainDataset);
-    	}
-    	
-    	// Perform the test and evaluate the results
-    	Evaluation evaluation = new Evaluation(numberOfClasses);
-
-    	INDArray features = testDataset.getFeatureMatrix();
-    	INDArray labels = testDataset.getLabels();
-    	INDArray predicted = model.output(features, false);
-    	
-    	evaluation.eval(labels, predicted);
-    	return evaluation;
-	}
-}
+package io.github.kjrg.mgr;
+
+import java.io.IOException;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+import org.deeplearning4j.eval.Evaluation;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+
+import io.github.kjrg.mgr.dto.TestResultDTO;
+
+/**
+ * A class for running tests.
+ * 
+ * @author Krzysztof Gałka
+ */
+public class TestRunner {
+
+	private final EarlyStoppingSettings earlyStoppingSettings;
+	private final ParameterPool parameterPool;
+	private final ResultCache resultCache;
+	private final SweepProgress sweepProgress;
+	private final ParallelEvaluator evaluator;
+	private final WarmStart warmStart;
+	private DataSet[] lastDatasets;
+	private String lastDatasetFingerprint;
+
+	/**
+	 * Create a test runner without early stopping, pooling, caching, progress
+	 * reporting and warm start, which evaluates the networks on a single
+	 * thread.
+	 */
+	public TestRunner() {
+		this(null, null, null, null, null, null);
+	}
+
+	/**
+	 * Create a test runner. The networks of the results have to be released
+	 * with {@link #releaseModel(MultiLayerNetwork)}, when they are not needed
+	 * anymore, if a pool of the parameter buffers is given. The results of the
+	 * tests on the datasets in memory are looked up in the cache before the
+	 * networks are trained, and the results which were not cached are added to
+	 * it. The training of the networks on the datasets in memory is started
+	 * from the networks trained earlier, if a warm start is given (see
+	 * {@link WarmStart}); the networks are resumed only without early
+	 * stopping and the results of the warm-started networks are not cached.
+	 * 
+	 * @param earlyStoppingSettings settings of early stopping, may be null
+	 * @param parameterPool pool of the parameter buffers, may be null
+	 * @param resultCache cache of the results, may be null
+	 * @param sweepProgress progress of the sweep, may be null
+	 * @param evaluator evaluator of the networks on the datasets in memory,
+	 *            may be null (the networks are evaluated on a single thread)
+	 * @param warmStart warm start of the networks, may be null
+	 */
+	public TestRunner(EarlyStoppingSettings earlyStoppingSettings, ParameterPool parameterPool,
+			ResultCache resultCache, SweepProgress sweepProgress, ParallelEvaluator evaluator, WarmStart warmStart) {
+		this.earlyStoppingSettings = earlyStoppingSettings;
+		this.parameterPool = parameterPool;
+		this.resultCache = resultCache;
+		this.sweepProgress = sweepProgress;
+		this.evaluator = evaluator == null ? new ParallelEvaluator(ParallelEvaluator.DEFAULT_CHUNK_SIZE, 1)
+				: evaluator;
+		this.warmStart = warmStart;
+	}
+
+	/**
+	 * Run a test of a neural network.
+	 * 
+	 * @param trainDataset training dataset
+	 * @param testDataset test dataset
+	 * @param configuration the configuration of the neural network to be tested
+	 * @param numberOfEpochs number of epochs
+	 * @param numberOfClasses number of classes in the dataset
+	 * @return result of the test
+	 */
+	public TestResultDTO runTest(DataSet trainDataset, DataSet testDataset, MultiLayerConfiguration configuration,
+			int numberOfEpochs, int numberOfClasses) {
+		return runTest(trainDataset, null, testDataset, configuration, numberOfEpochs, numberOfClasses);
+	}
+
+	/**
+	 * Run a test of a neural network, using the validation dataset for early
+	 * stopping.
+	 * 
+	 * @param trainDataset training dataset
+	 * @param validationDataset validation dataset, may be null
+	 * @param testDataset test dataset
+	 * @param configuration the configuration of the neural network to be tested
+	 * @param numberOfEpochs maximal number of epochs
+	 * @param numberOfClasses number of classes in the dataset
+	 * @return result of the test
+	 */
+	public TestResultDTO runTest(DataSet trainDataset, DataSet validationDataset, DataSet testDataset,
+			MultiLayerConfiguration configuration, int numberOfEpochs, int numberOfClasses) {
+
+		String datasetFingerprint = resultCache == null && warmStart == null ? null
+				: getDatasetFingerprint(trainDataset, validationDataset, testDataset);
+		String cacheKey = null;
+		if (resultCache != null) {
+			cacheKey = ResultCache.createKey(configuration, datasetFingerprint, numberOfEpochs,
+					describeEarlyStoppingSettings());
+			TestResultDTO cachedResult = resultCache.get(cacheKey);
+			if (cachedResult != null) {
+				return cachedResult;
+			}
+		}
+		
+		ExperimentMetricsRecorder metricsRecorder = new ExperimentMetricsRecorder();
+
+		// Create the model
+		MultiLayerNetwork model = createModel(configuration);
+
+		// Start from a network trained earlier, if possible
+		int epochsResumed = 0;
+		boolean warmStarted = false;
+		if (warmStart != null) {
+			epochsResumed = earlyStoppingSettings == null
+					? warmStart.resume(model, configuration, datasetFingerprint, numberOfEpochs) : 0;
+			warmStarted = epochsResumed > 0 || warmStart.transfer(model, configuration, datasetFingerprint);
+		}
+        
+        // Train the neural network
+		int epochsTrained = epochsResumed + train(model, () -> {
+			model.fit(trainDataset);
+			return trainDataset.numExamples();
+		}, validationDataset == null ? null : () -> model.score(validationDataset), numberOfEpochs - epochsResumed,
+				metricsRecorder);
+
+		if (warmStart != null) {
+			warmStart.add(model, configuration, datasetFingerprint);
+			if (earlyStoppingSettings == null && epochsResumed < numberOfEpochs) {
+				warmStart.save(model, configuration, datasetFingerprint, epochsTrained);
+			}
+		}
+    	
+    	// Perform the test and evaluate the results
+		ConfusionMatrixAccumulator accumulator = evaluate(model, testDataset, numberOfClasses, metricsRecorder);
+		TestResultDTO result = new TestResultDTO(accumulator.createEvaluation(), epochsTrained,
+				metricsRecorder.createMetrics(), model);
+		result.setAreasUnderRocCurve(accumulator.computeAreasUnderRocCurve());
+
+		if (resultCache != null && !warmStarted) {
+			try {
+				resultCache.put(cacheKey, result);
+			} catch (IOException e) {
+				System.out.println("Warning: the result could not be cached: " + e.getMessage());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Run a test of a neural network on a fold of a cross-validation. The
+	 * examples of the fold are normalized with the statistics of its training
+	 * part.
+	 * 
+	 * @param fold the fold
+	 * @param configuration the configuration of the neural network to be tested
+	 * @param numberOfEpochs maximal number of epochs
+	 * @param numberOfClasses number of classes in the dataset
+	 * @return result of the test on the fold
+	 */
+	public TestResultDTO runTest(CrossValidation.Fold fold, MultiLayerConfiguration configuration,
+			int numberOfEpochs, int numberOfClasses) {
+		DataSet[] datasets = fold.createDatasets();
+		return runTest(datasets[0], datasets[1], datasets[2], configuration, numberOfEpochs, numberOfClasses);
+	}
+
+	/**
+	 * Create and initialize a neural network.
+	 * 
+	 * @param configuration the configuration of the neural network
+	 * @return initialized neural network
+	 */
+	public MultiLayerNetwork createModel(MultiLayerConfiguration configuration) {
+		MultiLayerNetwork model;
+		if (parameterPool != null) {
+			model = parameterPool.createModel(configuration);
+		} else {
+			model = new MultiLayerNetwork(configuration);
+			model.init();
+		}
+
+		if (sweepProgress != null) {
+			model.setListeners(sweepProgress.createListeners());
+		}
+		return model;
+	}
+
+	/**
+	 * @return progress of the sweep or null, if it is not reported
+	 */
+	public SweepProgress getSweepProgress() {
+		return sweepProgress;
+	}
+
+	/**
+	 * Return the parameters of a network, which is not used anymore, to the
+	 * pool. Nothing is done, if the test runner has no pool.
+	 * 
+	 * @param model the neural network
+	 */
+	public void releaseModel(MultiLayerNetwork model) {
+		if (parameterPool != null && model != null) {
+			parameterPool.release(model);
+		}
+	}
+
+	/**
+	 * Train a neural network for the given number of epochs, without early
+	 * stopping.
+	 * 
+	 * @param model the neural network to be trained
+	 * @param trainDataset training dataset
+	 * @param numberOfEpochs number of epochs
+	 */
+	public void train(MultiLayerNetwork model, DataSet trainDataset, int numberOfEpochs) {
+		for (int n = 0; n < numberOfEpochs; n++) {
+			model.fit(trainDataset);
+		}
+	}
+
+	/**
+	 * Evaluate a trained neural network on the test dataset.
+	 * 
+	 * @param model the trained neural network
+	 * @param testDataset test dataset
+	 * @param numberOfClasses number of classes in the dataset
+	 * @return evaluation of the network
+	 */
+	public Evaluation evaluate(MultiLayerNetwork model, DataSet testDataset, int numberOfClasses) {
+		return evaluate(model, testDataset, numberOfClasses, new ExperimentMetricsRecorder()).createEvaluation();
+	}
+
+	/*
+	 * The test dataset is evaluated in chunks, the inference time covers all
+	 * of them.
+	 */
+	private ConfusionMatrixAccumulator evaluate(MultiLayerNetwork model, DataSet testDataset, int numberOfClasses,
+			ExperimentMetricsRecorder metricsRecorder) {
+    	metricsRecorder.inferenceStarted();
+		ConfusionMatrixAccumulator accumulator = evaluator.evaluate(model, testDataset.getFeatureMatrix(),
+				testDataset.getLabels(), numberOfClasses);
+    	metricsRecorder.inferenceFinished(testDataset.numExamples());
+    	return accumulator;
+	}
+
+	/**
+	 * Run a test of a neural network on datasets read in mini-batches. The
+	 * network is trained epoch by epoch over the training iterator and the
+	 * evaluation is accumulated batch by batch.
+	 * 
+	 * @param trainIterator iterator over the training dataset
+	 * @param validationIterator iterator over the validation dataset, may be
+	 *            null
+	 * @param testIterator iterator over the test dataset
+	 * @param configuration the configuration of the neural network to be tested
+	 * @param numberOfEpochs maximal number of epochs
+	 * @param numberOfClasses number of classes in the dataset
+	 * @return result of the test
+	 */
+	public TestResultDTO runTest(DataSetIterator trainIterator, DataSetIterator validationIterator,
+			DataSetIterator testIterator, MultiLayerConfiguration configuration, int numberOfEpochs,
+			int numberOfClasses) {
+
+		ExperimentMetricsRecorder metricsRecorder = new ExperimentMetricsRecorder();
+
+		// Create the model
+		MultiLayerNetwork model = createModel(configuration);
+
+		// Train the neural network, batch by batch to count the examples
+		int epochsTrained = train(model, () -> {
+			long numberOfExamples = 0;
+			trainIterator.reset();
+			while (trainIterator.hasNext()) {
+				DataSet batch = trainIterator.next();
+				model.fit(batch);
+				numberOfExamples += batch.numExamples();
+			}
+			return numberOfExamples;
+		}, validationIterator == null ? null : () -> score(model, validationIterator), numberOfEpochs,
+				metricsRecorder);
+
+		// Perform the test and evaluate the results batch by batch
+		ConfusionMatrixAccumulator accumulator = new ConfusionMatrixAccumulator(numberOfClasses);
+
+		testIterator.reset();
+		while (testIterator.hasNext()) {
+			DataSet batch = testIterator.next();
+			metricsRecorder.inferenceStarted();
+			INDArray predicted = model.output(batch.getFeatureMatrix(), false);
+			metricsRecorder.inferenceFinished(batch.numExamples());
+			accumulator.add(batch.getLabels(), predicted);
+		}
+
+		TestResultDTO result = new TestResultDTO(accumulator.createEvaluation(), epochsTrained,
+				metricsRecorder.createMetrics(), model);
+		result.setAreasUnderRocCurve(accumulator.computeAreasUnderRocCurve());
+		return result;
+	}
+
+	/*
+	 * Returns the number of epochs the network was trained for. When the
+	 * training is stopped early, the parameters from the epoch with the best
+	 * validation score are restored. The training epoch returns the number of
+	 * examples the network was trained on.
+	 */
+	private int train(MultiLayerNetwork model, LongSupplier trainingEpoch, DoubleSupplier validationScore,
+			int numberOfEpochs, ExperimentMetricsRecorder metricsRecorder) {
+		if (earlyStoppingSettings == null) {
+			for (int n = 0; n < numberOfEpochs; n++) {
+				metricsRecorder.epochFinished(trainingEpoch.getAsLong());
+			}
+			trainingFinished(metricsRecorder);
+			return numberOfEpochs;
+		}
+
+		long startTime = System.currentTimeMillis();
+		double bestScore = Double.POSITIVE_INFINITY;
+		INDArray bestParameters = null;
+		int epochsWithoutImprovement = 0;
+		int epoch = 0;
+
+		while (epoch < numberOfEpochs) {
+			metricsRecorder.epochFinished(trainingEpoch.getAsLong());
+			epoch++;
+
+			if (validationScore != null) {
+				double score = validationScore.getAsDouble();
+				if (score < bestScore - earlyStoppingSettings.getMinImprovement()) {
+					bestScore = score;
+					bestParameters = model.params().dup();
+					epochsWithoutImprovement = 0;
+				} else if (++epochsWithoutImprovement >= earlyStoppingSettings.getPatience()) {
+					break;
+				}
+			}
+
+			if (earlyStoppingSettings.isTrainingTimeLimited()
+					&& System.currentTimeMillis() - startTime >= earlyStoppingSettings.getMaxTrainingTimeMillis()) {
+				break;
+			}
+		}
+
+		if (bestParameters != null) {
+			model.setParams(bestParameters);
+		}
+		trainingFinished(metricsRecorder);
+		return epoch;
+	}
+
+	private void trainingFinished(ExperimentMetricsRecorder metricsRecorder) {
+		metricsRecorder.trainingFinished();
+		if (sweepProgress != null) {
+			sweepProgress.trainingFinished();
+		}
+	}
+
+	/*
+	 * The fingerprint of the last datasets is kept, because the experiments
+	 * of a sweep usually run on the same datasets.
+	 */
+	private synchronized String getDatasetFingerprint(DataSet... datasets) {
+		if (lastDatasets == null || !isSameDatasets(datasets, lastDatasets)) {
+			INDArray[] arrays = new INDArray[datasets.length * 2];
+			for (int i = 0; i < datasets.length; i++) {
+				arrays[2 * i] = datasets[i] == null ? null : datasets[i].getFeatureMatrix();
+				arrays[2 * i + 1] = datasets[i] == null ? null : datasets[i].getLabels();
+			}
+			lastDatasets = datasets;
+			lastDatasetFingerprint = Hashes.ofArrays(arrays);
+		}
+		return lastDatasetFingerprint;
+	}
+
+	private static boolean isSameDatasets(DataSet[] datasets, DataSet[] otherDatasets) {
+		for (int i = 0; i < datasets.length; i++) {
+			if (datasets[i] != otherDatasets[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private String describeEarlyStoppingSettings() {
+		if (earlyStoppingSettings == null) {
+			return "";
+		}
+		return earlyStoppingSettings.getValidationFraction() + "," + earlyStoppingSettings.getPatience() + ","
+				+ earlyStoppingSettings.getMinImprovement() + "," + earlyStoppingSettings.getMaxTrainingTimeMillis();
+	}
+
+	private double score(MultiLayerNetwork model, DataSetIterator iterator) {
+		double scoreSum = 0;
+		int numberOfExamples = 0;
+
+		iterator.reset();
+		while (iterator.hasNext()) {
+			DataSet batch = iterator.next();
+			scoreSum += model.score(batch) * batch.numExamples();
+			numberOfExamples += batch.numExamples();
+		}
+
+		return numberOfExamples == 0 ? Double.NaN : scoreSum / numberOfExamples;
+	}
+}
@@ -0,0 +1,182 @@
+package io.github.kjrg.mgr;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.FeedForwardLayer;
+import org.deeplearning4j.nn.conf.layers.Layer;
+
+/**
+ * The hidden layers of a network: the number of neurons of every layer and,
+ * optionally, its activation function. A topology is written as the numbers
+ * of neurons separated by dashes, e.g. "13-8-4", an activation function can
+ * follow the number of neurons of a layer after a colon, e.g. "16:relu-8".
+ * The layers without an activation function use the activation function of
+ * the experiment.
+ *
+ * @author Krzysztof Gałka
+ */
+public final class Topology {
+
+	private static final String LAYER_SEPARATOR = "-";
+	private static final String ACTIVATION_FUNCTION_SEPARATOR = ":";
+
+	private final List<Integer> numbersOfNeurons;
+	// Null for the layers using the activation function of the experiment
+	private final List<String> activationFunctions;
+
+	private Topology(List<Integer> numbersOfNeurons, List<String> activationFunctions) {
+		this.numbersOfNeurons = Collections.unmodifiableList(numbersOfNeurons);
+		this.activationFunctions = Collections.unmodifiableList(activationFunctions);
+	}
+
+	/**
+	 * Create a topology with a single hidden layer.
+	 *
+	 * @param numberOfNeurons number of neurons of the hidden layer
+	 * @return the topology
+	 */
+	public static Topology ofSingleLayer(int numberOfNeurons) {
+		List<Integer> numbersOfNeurons = new ArrayList<>();
+		numbersOfNeurons.add(numberOfNeurons);
+		List<String> activationFunctions = new ArrayList<>();
+		activationFunctions.add(null);
+		return new Topology(numbersOfNeurons, activationFunctions);
+	}
+
+	/**
+	 * Parse a topology, e.g. "13-8-4" or "16:relu-8".
+	 *
+	 * @param text the topology
+	 * @return the topology
+	 * @throws IllegalArgumentException if the topology is not correct
+	 */
+	public static Topology parse(String text) {
+		List<Integer> numbersOfNeurons = new ArrayList<>();
+		List<String> activationFunctions = new ArrayList<>();
+
+		for (String layer : text.trim().split(LAYER_SEPARATOR, -1)) {
+			String[] parts = layer.split(ACTIVATION_FUNCTION_SEPARATOR, -1);
+			if (parts.length > 2 || (parts.length == 2 && parts[1].isEmpty())) {
+				throw new IllegalArgumentException("The layer " + layer + " of the topology " + text
+						+ " is not correct.");
+			}
+
+			int numberOfNeurons;
+			try {
+				numberOfNeurons = Integer.parseInt(parts[0]);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("The layer " + layer + " of the topology " + text
+						+ " is not correct.", e);
+			}
+			if (numberOfNeurons < 1) {
+				throw new IllegalArgumentException("The layer " + layer + " of the topology " + text
+						+ " has to have at least 1 neuron.");
+			}
+
+			numbersOfNeurons.add(numberOfNeurons);
+			activationFunctions.add(parts.length == 2 ? parts[1] : null);
+		}
+		return new Topology(numbersOfNeurons, activationFunctions);
+	}
+
+	/**
+	 * Read the topology of the hidden layers of a network. The activation
+	 * functions are given for the layers whose activation function differs
+	 * from the one of the first hidden layer.
+	 *
+	 * @param configuration configuration of the network, the last layer is
+	 *            the output layer
+	 * @return the topology
+	 */
+	public static Topology of(MultiLayerConfiguration configuration) {
+		List<NeuralNetConfiguration> layerConfigurations = configuration.getConfs();
+		if (layerConfigurations.size() < 2) {
+			throw new IllegalStateException("The network has no hidden layer");
+		}
+
+		List<Integer> numbersOfNeurons = new ArrayList<>();
+		List<String> activationFunctions = new ArrayList<>();
+		String firstActivationFunction = layerConfigurations.get(0).getLayer().getActivationFunction();
+		for (int l = 0; l < layerConfigurations.size() - 1; l++) {
+			Layer layer = layerConfigurations.get(l).getLayer();
+			numbersOfNeurons.add(((FeedForwardLayer) layer).getNOut());
+			String activationFunction = layer.getActivationFunction();
+			activationFunctions.add(activationFunction == null || activationFunction.equals(firstActivationFunction)
+					? null : activationFunction);
+		}
+		return new Topology(numbersOfNeurons, activationFunctions);
+	}
+
+	/**
+	 * @param configuration configuration of a network built from feed-forward
+	 *            layers
+	 * @return number of the weights and the biases of the network
+	 */
+	public static long countParameters(MultiLayerConfiguration configuration) {
+		long numberOfParameters = 0;
+		for (NeuralNetConfiguration layerConfiguration : configuration.getConfs()) {
+			FeedForwardLayer layer = (FeedForwardLayer) layerConfiguration.getLayer();
+			numberOfParameters += (long) layer.getNIn() * layer.getNOut() + layer.getNOut();
+		}
+		return numberOfParameters;
+	}
+
+	/**
+	 * @param numberOfInputs number of inputs of the network
+	 * @param numberOfOutputs number of outputs of the network
+	 * @return number of the weights and the biases of a network with this
+	 *         topology
+	 */
+	public long countParameters(int numberOfInputs, int numberOfOutputs) {
+		long numberOfParameters = 0;
+		int layerInputs = numberOfInputs;
+		for (int numberOfNeurons : numbersOfNeurons) {
+			numberOfParameters += (long) layerInputs * numberOfNeurons + numberOfNeurons;
+			layerInputs = numberOfNeurons;
+		}
+		return numberOfParameters + (long) layerInputs * numberOfOutputs + numberOfOutputs;
+	}
+
+	/**
+	 * @return number of the hidden layers
+	 */
+	public int getNumberOfLayers() {
+		return numbersOfNeurons.size();
+	}
+
+	/**
+	 * @param layerIndex index of a hidden layer
+	 * @return number of neurons of the layer
+	 */
+	public int getNumberOfNeurons(int layerIndex) {
+		return numbersOfNeurons.get(layerIndex);
+	}
+
+	/**
+	 * @param layerIndex index of a hidden layer
+	 * @return activation function of the layer or null, if the layer uses
+	 *         the activation function of the experiment
+	 */
+	public String getActivationFunction(int layerIndex) {
+		return activationFunctions.get(layerIndex);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder textBuilder = new StringBuilder();
+		for (int l = 0; l < numbersOfNeurons.size(); l++) {
+			if (l > 0) {
+				textBuilder.append(LAYER_SEPARATOR);
+			}
+			textBuilder.append(numbersOfNeurons.get(l));
+			if (activationFunctions.get(l) != null) {
+				textBuilder.append(ACTIVATION_FUNCTION_SEPARATOR).append(activationFunctions.get(l));
+			}
+		}
+		return textBuilder.toString();
+	}
+}
@@ -0,0 +1,358 @@
+package io.github.kjrg.mgr;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.FeedForwardLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.params.DefaultParamInitializer;
+import org.deeplearning4j.util.ModelSerializer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+/**
+ * A warm start of the networks from the networks trained earlier on the same
+ * data, instead of the weight initialization.
+ *
+ * Transfer - a network is initialized with the parameters of a finished
+ * network of a compatible configuration (the same numbers of inputs, outputs
+ * and hidden layers and the same activation functions), e.g. one which
+ * differs in the updater or in a few neurons. The overlapping blocks of the
+ * weights and the biases of every layer are copied, the other parameters keep
+ * their initial values. The most recently finished networks are kept in
+ * memory.
+ *
+ * Resume - a network of the same configuration trained for fewer epochs by an
+ * earlier run, saved in the network directory together with the state of its
+ * updater, is trained further for the missing epochs only.
+ *
+ * The results of the warm-started networks depend on the order of the
+ * experiments.
+ *
+ * @author Krzysztof Gałka
+ */
+public class WarmStart {
+
+	private static final String MODEL_FILE_EXTENSION = ".zip";
+	private static final String TEMPORARY_FILE_EXTENSION = ".tmp";
+	private static final String EPOCHS_SEPARATOR = "_";
+
+	private final int maxNumberOfNetworks;
+	private final File networkDirectory;
+	// From the most recently finished
+	private final Deque<TrainedNetwork> trainedNetworks = new ArrayDeque<>();
+	private long numberOfTransfers;
+	private long numberOfResumes;
+
+	/**
+	 * Create a warm start.
+	 *
+	 * @param maxNumberOfNetworks number of the finished networks kept in
+	 *            memory for the transfer, 0 disables the transfer
+	 * @param networkDirectoryPath directory in which the trained networks are
+	 *            saved for resuming, it is created if it does not exist; null
+	 *            or empty disables resuming
+	 */
+	public WarmStart(int maxNumberOfNetworks, String networkDirectoryPath) {
+		if (maxNumberOfNetworks < 0) {
+			throw new IllegalArgumentException("The number of the networks kept in memory cannot be negative.");
+		}
+
+		this.maxNumberOfNetworks = maxNumberOfNetworks;
+		this.networkDirectory = networkDirectoryPath == null || networkDirectoryPath.isEmpty() ? null
+				: new File(networkDirectoryPath);
+
+		if (networkDirectory != null && !networkDirectory.isDirectory() && !networkDirectory.mkdirs()) {
+			throw new IllegalStateException("The network directory " + networkDirectoryPath
+					+ " could not be created.");
+		}
+	}
+
+	/**
+	 * Load the parameters and the state of the updater of the network of the
+	 * same configuration saved with the highest number of epochs not greater
+	 * than the given one.
+	 *
+	 * @param model the initialized network
+	 * @param configuration configuration of the network
+	 * @param datasetFingerprint fingerprint of the data the network is
+	 *            trained on
+	 * @param numberOfEpochs number of epochs of the experiment
+	 * @return number of epochs the loaded network was trained for, 0 if no
+	 *         network was loaded
+	 */
+	public int resume(MultiLayerNetwork model, MultiLayerConfiguration configuration, String datasetFingerprint,
+			int numberOfEpochs) {
+		if (networkDirectory == null) {
+			return 0;
+		}
+
+		String key = createKey(configuration, datasetFingerprint);
+		File savedModelFile = null;
+		int savedEpochs = 0;
+		File[] files = networkDirectory.listFiles((directory, name) -> name.startsWith(key + EPOCHS_SEPARATOR)
+				&& name.endsWith(MODEL_FILE_EXTENSION));
+		if (files != null) {
+			for (File file : files) {
+				int epochs = getNumberOfEpochs(file, key);
+				if (epochs > savedEpochs && epochs <= numberOfEpochs) {
+					savedModelFile = file;
+					savedEpochs = epochs;
+				}
+			}
+		}
+		if (savedModelFile == null) {
+			return 0;
+		}
+
+		try {
+			MultiLayerNetwork savedModel = ModelSerializer.restoreMultiLayerNetwork(savedModelFile, true);
+			model.setParams(savedModel.params());
+			INDArray updaterState = savedModel.getUpdater().getStateViewArray();
+			if (updaterState != null) {
+				model.getUpdater().setStateViewArray(model, updaterState.dup(), false);
+			}
+		} catch (IOException e) {
+			System.out.println("Warning: the network " + savedModelFile.getPath() + " could not be loaded: "
+					+ e.getMessage());
+			return 0;
+		}
+
+		synchronized (this) {
+			numberOfResumes++;
+		}
+		return savedEpochs;
+	}
+
+	/**
+	 * Copy the overlapping parameters of the compatible network which has the
+	 * most parameters in common with the given one.
+	 *
+	 * @param model the initialized network
+	 * @param configuration configuration of the network
+	 * @param datasetFingerprint fingerprint of the data the network is
+	 *            trained on
+	 * @return true, if the parameters were copied
+	 */
+	public boolean transfer(MultiLayerNetwork model, MultiLayerConfiguration configuration,
+			String datasetFingerprint) {
+		if (maxNumberOfNetworks == 0) {
+			return false;
+		}
+
+		LayerShapes shapes = new LayerShapes(configuration);
+		TrainedNetwork source = null;
+		long maxNumberOfCommonParameters = 0;
+		synchronized (this) {
+			for (TrainedNetwork trainedNetwork : trainedNetworks) {
+				if (!trainedNetwork.datasetFingerprint.equals(datasetFingerprint)
+						|| !trainedNetwork.shapes.isCompatibleWith(shapes)) {
+					continue;
+				}
+				long numberOfCommonParameters = trainedNetwork.shapes.countCommonParameters(shapes);
+				if (numberOfCommonParameters > maxNumberOfCommonParameters) {
+					source = trainedNetwork;
+					maxNumberOfCommonParameters = numberOfCommonParameters;
+				}
+			}
+			if (source == null) {
+				return false;
+			}
+			numberOfTransfers++;
+		}
+
+		// The parameters of the kept networks are never modified, so they are
+		// copied without the lock
+		for (int l = 0; l < shapes.numbersOfInputs.length; l++) {
+			int rows = Math.min(shapes.numbersOfInputs[l], source.shapes.numbersOfInputs[l]);
+			int columns = Math.min(shapes.numbersOfOutputs[l], source.shapes.numbersOfOutputs[l]);
+			copyBlock(source.weights[l], model.getLayer(l).getParam(DefaultParamInitializer.WEIGHT_KEY), rows,
+					columns);
+			copyBlock(source.biases[l], model.getLayer(l).getParam(DefaultParamInitializer.BIAS_KEY), 1, columns);
+		}
+		return true;
+	}
+
+	/**
+	 * Keep the parameters of a trained network for the transfer to the next
+	 * networks. The oldest network is dropped, when there are too many of
+	 * them.
+	 *
+	 * @param model the trained network, it may be released afterwards
+	 * @param configuration configuration of the network
+	 * @param datasetFingerprint fingerprint of the data the network was
+	 *            trained on
+	 */
+	public void add(MultiLayerNetwork model, MultiLayerConfiguration configuration, String datasetFingerprint) {
+		if (maxNumberOfNetworks == 0) {
+			return;
+		}
+
+		LayerShapes shapes = new LayerShapes(configuration);
+		int numberOfLayers = shapes.numbersOfInputs.length;
+		INDArray[] weights = new INDArray[numberOfLayers];
+		INDArray[] biases = new INDArray[numberOfLayers];
+		for (int l = 0; l < numberOfLayers; l++) {
+			weights[l] = model.getLayer(l).getParam(DefaultParamInitializer.WEIGHT_KEY).dup();
+			biases[l] = model.getLayer(l).getParam(DefaultParamInitializer.BIAS_KEY).dup();
+		}
+
+		synchronized (this) {
+			trainedNetworks.addFirst(new TrainedNetwork(datasetFingerprint, shapes, weights, biases));
+			while (trainedNetworks.size() > maxNumberOfNetworks) {
+				trainedNetworks.removeLast();
+			}
+		}
+	}
+
+	/**
+	 * Save a network trained for the full number of epochs, so that the
+	 * experiments with more epochs can resume from it. The networks of the
+	 * same configuration saved with fewer epochs are deleted.
+	 *
+	 * @param model the trained network
+	 * @param configuration configuration of the network
+	 * @param datasetFingerprint fingerprint of the data the network was
+	 *            trained on
+	 * @param numberOfEpochs number of epochs the network was trained for
+	 */
+	public void save(MultiLayerNetwork model, MultiLayerConfiguration configuration, String datasetFingerprint,
+			int numberOfEpochs) {
+		if (networkDirectory == null) {
+			return;
+		}
+
+		String key = createKey(configuration, datasetFingerprint);
+		File modelFile = new File(networkDirectory, key + EPOCHS_SEPARATOR + numberOfEpochs + MODEL_FILE_EXTENSION);
+		File temporaryFile = new File(modelFile.getPath() + TEMPORARY_FILE_EXTENSION);
+		try {
+			ModelSerializer.writeModel(model, temporaryFile, true);
+			Files.move(temporaryFile.toPath(), modelFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			System.out.println("Warning: the network could not be saved for resuming: " + e.getMessage());
+			temporaryFile.delete();
+			return;
+		}
+
+		File[] files = networkDirectory.listFiles((directory, name) -> name.startsWith(key + EPOCHS_SEPARATOR)
+				&& name.endsWith(MODEL_FILE_EXTENSION));
+		if (files != null) {
+			for (File file : files) {
+				if (getNumberOfEpochs(file, key) < numberOfEpochs) {
+					file.delete();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return number of networks initialized with the parameters of another
+	 *         network
+	 */
+	public synchronized long getNumberOfTransfers() {
+		return numberOfTransfers;
+	}
+
+	/**
+	 * @return number of networks resumed from a saved network
+	 */
+	public synchronized long getNumberOfResumes() {
+		return numberOfResumes;
+	}
+
+	/*
+	 * The key does not depend on the number of epochs, it is a part of the
+	 * name of the file.
+	 */
+	private static String createKey(MultiLayerConfiguration configuration, String datasetFingerprint) {
+		return Hashes.ofText(configuration.toJson(), datasetFingerprint,
+				String.valueOf(configuration.getConf(0).getSeed()), DataTypes.getName(Nd4j.dataType()));
+	}
+
+	private static int getNumberOfEpochs(File file, String key) {
+		String name = file.getName();
+		try {
+			return Integer.parseInt(name.substring(key.length() + EPOCHS_SEPARATOR.length(),
+					name.length() - MODEL_FILE_EXTENSION.length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private static void copyBlock(INDArray source, INDArray destination, int rows, int columns) {
+		destination.get(NDArrayIndex.interval(0, rows), NDArrayIndex.interval(0, columns))
+				.assign(source.get(NDArrayIndex.interval(0, rows), NDArrayIndex.interval(0, columns)));
+	}
+
+	/*
+	 * The numbers of inputs and outputs and the activation function of every
+	 * layer, the last layer is the output layer.
+	 */
+	private static class LayerShapes {
+
+		private final int[] numbersOfInputs;
+		private final int[] numbersOfOutputs;
+		private final String[] activationFunctions;
+
+		public LayerShapes(MultiLayerConfiguration configuration) {
+			List<NeuralNetConfiguration> layerConfigurations = configuration.getConfs();
+			numbersOfInputs = new int[layerConfigurations.size()];
+			numbersOfOutputs = new int[layerConfigurations.size()];
+			activationFunctions = new String[layerConfigurations.size()];
+			for (int l = 0; l < layerConfigurations.size(); l++) {
+				FeedForwardLayer layer = (FeedForwardLayer) layerConfigurations.get(l).getLayer();
+				numbersOfInputs[l] = layer.getNIn();
+				numbersOfOutputs[l] = layer.getNOut();
+				activationFunctions[l] = layer.getActivationFunction();
+			}
+		}
+
+		public boolean isCompatibleWith(LayerShapes other) {
+			int numberOfLayers = numbersOfInputs.length;
+			if (other.numbersOfInputs.length != numberOfLayers || other.numbersOfInputs[0] != numbersOfInputs[0]
+					|| other.numbersOfOutputs[numberOfLayers - 1] != numbersOfOutputs[numberOfLayers - 1]) {
+				return false;
+			}
+			for (int l = 0; l < numberOfLayers; l++) {
+				if (activationFunctions[l] == null ? other.activationFunctions[l] != null
+						: !activationFunctions[l].equals(other.activationFunctions[l])) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		public long countCommonParameters(LayerShapes other) {
+			long numberOfParameters = 0;
+			for (int l = 0; l < numbersOfInputs.length; l++) {
+				long columns = Math.min(numbersOfOutputs[l], other.numbersOfOutputs[l]);
+				numberOfParameters += Math.min(numbersOfInputs[l], other.numbersOfInputs[l]) * columns + columns;
+			}
+			return numberOfParameters;
+		}
+	}
+
+	private static class TrainedNetwork {
+
+		private final String datasetFingerprint;
+		private final LayerShapes shapes;
+		private final INDArray[] weights;
+		private final INDArray[] biases;
+
+		public TrainedNetwork(String datasetFingerprint, LayerShapes shapes, INDArray[] weights, INDArray[] biases) {
+			this.datasetFingerprint = datasetFingerprint;
+			this.shapes = shapes;
+			this.weights = weights;
+			this.biases = biases;
+		}
+	}
+}
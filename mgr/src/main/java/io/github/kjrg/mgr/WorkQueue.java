@@ -0,0 +1,452 @@
+package io.github.kjrg.mgr;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+
+/**
+ * A queue of experiments kept in a shared directory, so that the experiments
+ * of a sweep can be run by any number of processes, on one machine or on
+ * several machines sharing the directory (e.g. over NFS). No other service is
+ * needed, the state of every task is the subdirectory its file is in:
+ *
+ * pending/task_N.json - the configuration of the network, not claimed yet
+ * claimed/task_N.json.WORKER - claimed by a worker, its file is touched
+ * periodically while the worker is alive
+ * results/task_N.result - the result of the experiment
+ *
+ * A task is claimed by an atomic rename of its file, only one of the workers
+ * renaming the same file at the same time succeeds. The files are written to
+ * temporary files first and renamed, so a file is never seen incomplete.
+ *
+ * @author Krzysztof Gałka
+ */
+public class WorkQueue {
+
+	private static final String PENDING_DIRECTORY_NAME = "pending";
+	private static final String CLAIMED_DIRECTORY_NAME = "claimed";
+	private static final String RESULTS_DIRECTORY_NAME = "results";
+	private static final String MANIFEST_FILENAME = "queue.properties";
+	private static final String TASK_FILENAME_PREFIX = "task_";
+	private static final String TASK_FILE_EXTENSION = ".json";
+	private static final String RESULT_FILE_EXTENSION = ".result";
+	private static final String TEMPORARY_FILE_EXTENSION = ".tmp";
+	private static final String TASK_NUMBER_FORMAT = "%08d";
+	private static final String CLAIM_SEPARATOR = ".";
+
+	private final File pendingDirectory;
+	private final File claimedDirectory;
+	private final File resultsDirectory;
+	private final File manifestFile;
+	private final String workerId;
+	private final Set<File> claimedFiles = ConcurrentHashMap.newKeySet();
+	private ScheduledExecutorService heartbeatExecutor;
+
+	/**
+	 * Open a queue, creating its directories if they do not exist.
+	 *
+	 * @param workDirectoryPath the shared directory of the queue
+	 * @throws IOException
+	 */
+	public WorkQueue(String workDirectoryPath) throws IOException {
+		File workDirectory = new File(workDirectoryPath);
+		this.pendingDirectory = new File(workDirectory, PENDING_DIRECTORY_NAME);
+		this.claimedDirectory = new File(workDirectory, CLAIMED_DIRECTORY_NAME);
+		this.resultsDirectory = new File(workDirectory, RESULTS_DIRECTORY_NAME);
+		this.manifestFile = new File(workDirectory, MANIFEST_FILENAME);
+		// The name of the JVM is pid@host, so it is unique among the workers
+		this.workerId = ManagementFactory.getRuntimeMXBean().getName().replaceAll("[^A-Za-z0-9_-]", "_");
+
+		for (File directory : Arrays.asList(pendingDirectory, claimedDirectory, resultsDirectory)) {
+			if (!directory.isDirectory() && !directory.mkdirs()) {
+				throw new IOException("The directory " + directory + " could not be created.");
+			}
+		}
+	}
+
+	/**
+	 * Create the tasks of a sweep. The tasks which already exist, in any
+	 * state, are not created again, so the coordinator can be run again after
+	 * it was interrupted.
+	 *
+	 * @param configurations configurations of the networks, in the order of
+	 *            the report
+	 * @param fingerprint fingerprint of the data, the settings and the
+	 *            configurations of the sweep, checked by the workers
+	 * @return number of created tasks
+	 * @throws IOException
+	 */
+	public int createTasks(Iterable<MultiLayerConfiguration> configurations, String fingerprint) throws IOException {
+		Properties manifest = readManifest();
+		if (manifest != null && !fingerprint.equals(manifest.getProperty("fingerprint"))) {
+			throw new IllegalStateException("The queue in " + manifestFile.getParent()
+					+ " belongs to a sweep with different data, settings or configurations.");
+		}
+
+		int numberOfTasks = 0;
+		int numberOfCreatedTasks = 0;
+		for (MultiLayerConfiguration configuration : configurations) {
+			String taskName = getTaskName(numberOfTasks++);
+			if (new File(pendingDirectory, taskName).exists() || isClaimed(taskName)
+					|| getResultFile(taskName).exists()) {
+				continue;
+			}
+
+			writeAtomically(new File(pendingDirectory, taskName), configuration.toJson());
+			numberOfCreatedTasks++;
+		}
+
+		manifest = new Properties();
+		manifest.setProperty("fingerprint", fingerprint);
+		manifest.setProperty("number_of_tasks", String.valueOf(numberOfTasks));
+		File temporaryFile = new File(manifestFile.getPath() + TEMPORARY_FILE_EXTENSION);
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(temporaryFile), StandardCharsets.UTF_8)) {
+			manifest.store(writer, null);
+		}
+		move(temporaryFile, manifestFile);
+
+		return numberOfCreatedTasks;
+	}
+
+	/**
+	 * Check that the queue was created for the same data, settings and
+	 * configurations as the ones of the worker.
+	 *
+	 * @param fingerprint fingerprint of the data, the settings and the
+	 *            configurations of the worker
+	 * @throws IOException
+	 */
+	public void verifyFingerprint(String fingerprint) throws IOException {
+		Properties manifest = readManifest();
+		if (manifest == null) {
+			throw new IllegalStateException("The queue in " + manifestFile.getParent()
+					+ " has not been created by the coordinator.");
+		}
+		if (!fingerprint.equals(manifest.getProperty("fingerprint"))) {
+			throw new IllegalStateException("The queue in " + manifestFile.getParent()
+					+ " belongs to a sweep with different data, settings or configurations.");
+		}
+	}
+
+	/**
+	 * @return number of tasks of the sweep
+	 * @throws IOException
+	 */
+	public int getNumberOfTasks() throws IOException {
+		Properties manifest = readManifest();
+		return manifest == null ? 0 : Integer.parseInt(manifest.getProperty("number_of_tasks"));
+	}
+
+	/**
+	 * Claim the first pending task.
+	 *
+	 * @return the claimed task or null, if there are no pending tasks
+	 * @throws IOException
+	 */
+	public Task claim() throws IOException {
+		for (String taskName : listTaskNames(pendingDirectory)) {
+			File pendingFile = new File(pendingDirectory, taskName);
+			File claimedFile = new File(claimedDirectory, taskName + CLAIM_SEPARATOR + workerId);
+			// The rename keeps the modification time, which is the time the
+			// task was created - the file is touched first, so that the claim
+			// is never seen as stale by the other workers
+			pendingFile.setLastModified(System.currentTimeMillis());
+			try {
+				move(pendingFile, claimedFile);
+			} catch (NoSuchFileException e) {
+				// Claimed by another worker in the meantime
+				continue;
+			}
+
+			claimedFiles.add(claimedFile);
+			String json = new String(Files.readAllBytes(claimedFile.toPath()), StandardCharsets.UTF_8);
+			return new Task(taskName, claimedFile, MultiLayerConfiguration.fromJson(json));
+		}
+		return null;
+	}
+
+	/**
+	 * Iterate over the tasks, claiming them one by one. The tasks claimed by
+	 * the workers which stopped sending heartbeats are taken over, when no
+	 * pending tasks are left.
+	 *
+	 * @param staleClaimTimeoutMillis time after which a claim without a
+	 *            heartbeat is taken over
+	 * @return tasks claimed by this worker
+	 */
+	public Iterable<Task> claimAll(long staleClaimTimeoutMillis) {
+		return () -> new Iterator<Task>() {
+
+			private Task nextTask;
+
+			@Override
+			public boolean hasNext() {
+				try {
+					if (nextTask == null) {
+						nextTask = claim();
+					}
+					if (nextTask == null && requeueStaleClaims(staleClaimTimeoutMillis) > 0) {
+						nextTask = claim();
+					}
+				} catch (IOException e) {
+					throw new IllegalStateException("A task could not be claimed.", e);
+				}
+				return nextTask != null;
+			}
+
+			@Override
+			public Task next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				Task task = nextTask;
+				nextTask = null;
+				return task;
+			}
+		};
+	}
+
+	/**
+	 * Save the result of a task and remove its claim.
+	 *
+	 * @param task the claimed task
+	 * @param result the encoded result
+	 * @throws IOException
+	 */
+	public void complete(Task task, String result) throws IOException {
+		writeAtomically(getResultFile(task.name), result);
+		claimedFiles.remove(task.claimedFile);
+		Files.deleteIfExists(task.claimedFile.toPath());
+	}
+
+	/**
+	 * Give up a claimed task, so that another worker can run it.
+	 *
+	 * @param task the claimed task
+	 * @throws IOException
+	 */
+	public void release(Task task) throws IOException {
+		claimedFiles.remove(task.claimedFile);
+		try {
+			move(task.claimedFile, new File(pendingDirectory, task.name));
+		} catch (NoSuchFileException e) {
+			// Already taken over by another worker
+		}
+	}
+
+	/**
+	 * Move the claims which have not been touched for the given time back to
+	 * the pending tasks.
+	 *
+	 * @param staleClaimTimeoutMillis time after which a claim is stale
+	 * @return number of moved tasks
+	 * @throws IOException
+	 */
+	public int requeueStaleClaims(long staleClaimTimeoutMillis) throws IOException {
+		int numberOfRequeuedTasks = 0;
+		long now = System.currentTimeMillis();
+		for (String claimName : listNames(claimedDirectory)) {
+			File claimedFile = new File(claimedDirectory, claimName);
+			if (now - claimedFile.lastModified() < staleClaimTimeoutMillis) {
+				continue;
+			}
+
+			String taskName = claimName.substring(0, claimName.indexOf(TASK_FILE_EXTENSION) + TASK_FILE_EXTENSION.length());
+			try {
+				if (getResultFile(taskName).exists()) {
+					// The worker finished the task, but did not remove the claim
+					Files.deleteIfExists(claimedFile.toPath());
+				} else {
+					move(claimedFile, new File(pendingDirectory, taskName));
+					numberOfRequeuedTasks++;
+				}
+			} catch (NoSuchFileException e) {
+				// Taken over by another worker in the meantime
+			}
+		}
+		return numberOfRequeuedTasks;
+	}
+
+	/**
+	 * Start touching the files of the tasks claimed by this worker, so that
+	 * the other workers do not take them over.
+	 *
+	 * @param intervalMillis interval between the heartbeats
+	 */
+	public synchronized void startHeartbeat(long intervalMillis) {
+		if (heartbeatExecutor != null) {
+			return;
+		}
+
+		heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "work-queue-heartbeat");
+			thread.setDaemon(true);
+			return thread;
+		});
+		heartbeatExecutor.scheduleAtFixedRate(() -> {
+			long now = System.currentTimeMillis();
+			for (File claimedFile : claimedFiles) {
+				claimedFile.setLastModified(now);
+			}
+		}, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stop the heartbeats.
+	 */
+	public synchronized void stopHeartbeat() {
+		if (heartbeatExecutor != null) {
+			heartbeatExecutor.shutdownNow();
+			heartbeatExecutor = null;
+		}
+	}
+
+	/**
+	 * Read the results of all the finished tasks.
+	 *
+	 * @return encoded results, in the order of the tasks
+	 * @throws IOException
+	 */
+	public List<String> readResults() throws IOException {
+		List<String> results = new ArrayList<>();
+		for (String resultName : listNames(resultsDirectory)) {
+			if (resultName.endsWith(RESULT_FILE_EXTENSION)) {
+				results.add(new String(Files.readAllBytes(new File(resultsDirectory, resultName).toPath()),
+						StandardCharsets.UTF_8));
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * @return numbers of pending, claimed and finished tasks
+	 */
+	public int[] countTasks() {
+		return new int[] { listTaskNames(pendingDirectory).size(), listNames(claimedDirectory).size(),
+				listNames(resultsDirectory).size() };
+	}
+
+	/**
+	 * @return identifier of this worker
+	 */
+	public String getWorkerId() {
+		return workerId;
+	}
+
+	private boolean isClaimed(String taskName) {
+		for (String claimName : listNames(claimedDirectory)) {
+			if (claimName.startsWith(taskName + CLAIM_SEPARATOR)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private File getResultFile(String taskName) {
+		return new File(resultsDirectory, taskName.replace(TASK_FILE_EXTENSION, RESULT_FILE_EXTENSION));
+	}
+
+	private Properties readManifest() throws IOException {
+		if (!manifestFile.isFile()) {
+			return null;
+		}
+
+		Properties manifest = new Properties();
+		try (FileInputStream inputStream = new FileInputStream(manifestFile)) {
+			manifest.load(inputStream);
+		}
+		return manifest;
+	}
+
+	private static String getTaskName(int index) {
+		return TASK_FILENAME_PREFIX + String.format(TASK_NUMBER_FORMAT, index) + TASK_FILE_EXTENSION;
+	}
+
+	private static List<String> listTaskNames(File directory) {
+		List<String> taskNames = new ArrayList<>();
+		for (String name : listNames(directory)) {
+			if (name.endsWith(TASK_FILE_EXTENSION)) {
+				taskNames.add(name);
+			}
+		}
+		return taskNames;
+	}
+
+	/*
+	 * The names are sorted, so the tasks are claimed and the results are
+	 * read in the order of the configurations (the numbers are zero-padded).
+	 */
+	private static List<String> listNames(File directory) {
+		String[] names = directory.list((dir, name) -> !name.endsWith(TEMPORARY_FILE_EXTENSION));
+		if (names == null) {
+			return Collections.emptyList();
+		}
+		Arrays.sort(names);
+		return Arrays.asList(names);
+	}
+
+	private void writeAtomically(File file, String content) throws IOException {
+		File temporaryFile = new File(file.getPath() + CLAIM_SEPARATOR + workerId + TEMPORARY_FILE_EXTENSION);
+		Files.write(temporaryFile.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		move(temporaryFile, file);
+	}
+
+	/*
+	 * A rename within a file system is atomic, also on NFS.
+	 */
+	private static void move(File source, File target) throws IOException {
+		try {
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException | FileAlreadyExistsException e) {
+			throw new IOException("The file " + source + " could not be moved to " + target + ".", e);
+		}
+	}
+
+	/**
+	 * A task claimed by a worker.
+	 */
+	public static class Task {
+
+		private final String name;
+		private final File claimedFile;
+		private final MultiLayerConfiguration configuration;
+
+		private Task(String name, File claimedFile, MultiLayerConfiguration configuration) {
+			this.name = name;
+			this.claimedFile = claimedFile;
+			this.configuration = configuration;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public MultiLayerConfiguration getConfiguration() {
+			return configuration;
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package io.github.kjrg.mgr.dto;
+
+/**
+ * A class representing the mean and the standard deviation of the scores of a
+ * configuration over the folds of a cross-validation.
+ *
+ * @author Krzysztof Gałka
+ */
+public class CrossValidationStatisticsDTO {
+
+	private int numberOfFolds;
+	private double meanF1;
+	private double stdF1;
+	private double meanAccuracy;
+	private double stdAccuracy;
+	private double meanPrecision;
+	private double stdPrecision;
+	private double meanRecall;
+	private double stdRecall;
+
+	public CrossValidationStatisticsDTO(int numberOfFolds, double meanF1, double stdF1, double meanAccuracy,
+			double stdAccuracy, double meanPrecision, double stdPrecision, double meanRecall, double stdRecall) {
+		this.numberOfFolds = numberOfFolds;
+		this.meanF1 = meanF1;
+		this.stdF1 = stdF1;
+		this.meanAccuracy = meanAccuracy;
+		this.stdAccuracy = stdAccuracy;
+		this.meanPrecision = meanPrecision;
+		this.stdPrecision = stdPrecision;
+		this.meanRecall = meanRecall;
+		this.stdRecall = stdRecall;
+	}
+
+	/**
+	 * @return number of evaluated folds, in all the repetitions
+	 */
+	public int getNumberOfFolds() {
+		return numberOfFolds;
+	}
+
+	public void setNumberOfFolds(int numberOfFolds) {
+		this.numberOfFolds = numberOfFolds;
+	}
+
+	public double getMeanF1() {
+		return meanF1;
+	}
+
+	public void setMeanF1(double meanF1) {
+		this.meanF1 = meanF1;
+	}
+
+	public double getStdF1() {
+		return stdF1;
+	}
+
+	public void setStdF1(double stdF1) {
+		this.stdF1 = stdF1;
+	}
+
+	public double getMeanAccuracy() {
+		return meanAccuracy;
+	}
+
+	public void setMeanAccuracy(double meanAccuracy) {
+		this.meanAccuracy = meanAccuracy;
+	}
+
+	public double getStdAccuracy() {
+		return stdAccuracy;
+	}
+
+	public void setStdAccuracy(double stdAccuracy) {
+		this.stdAccuracy = stdAccuracy;
+	}
+
+	public double getMeanPrecision() {
+		return meanPrecision;
+	}
+
+	public void setMeanPrecision(double meanPrecision) {
+		this.meanPrecision = meanPrecision;
+	}
+
+	public double getStdPrecision() {
+		return stdPrecision;
+	}
+
+	public void setStdPrecision(double stdPrecision) {
+		this.stdPrecision = stdPrecision;
+	}
+
+	public double getMeanRecall() {
+		return meanRecall;
+	}
+
+	public void setMeanRecall(double meanRecall) {
+		this.meanRecall = meanRecall;
+	}
+
+	public double getStdRecall() {
+		return stdRecall;
+	}
+
+	public void setStdRecall(double stdRecall) {
+		this.stdRecall = stdRecall;
+	}
+}
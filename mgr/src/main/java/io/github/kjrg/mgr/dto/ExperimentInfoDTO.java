@@ -1,69 +1,204 @@
-package io.github.kjrg.mgr.dto;
-
-import org.deeplearning4j.eval.Evaluation;
-import org.deeplearning4j.nn.conf.Updater;
-
-/**
- * A class representing the information about an experiment.
- * 
- * @author Krzysztof Gaka
- */
-public class ExperimentInfoDTO {
-
-	private int numberOfNeuronsInHiddenLayer;
-	private String activationFunction;
-	private Updater updater;
-	private Evaluation experimentResult;
-
-	public String getInformationText() {
-		StringBuilder messageBuilder = new StringBuilder();
-		String lineSeparator = System.lineSeparator();
-
-		messageBuilder.append("Number of neurons in hidden layer: " + numberOfNeuronsInHiddenLayer + lineSeparator);
-		messageBuilder.append("Activation function: " + activationFunction + lineSeparator);
-		messageBuilder.append("Updater: " + updater + lineSeparator);
-		messageBuilder.append(experimentResult.stats());
-
-		return messageBuilder.toString();
-	}
-
-	public ExperimentInfoDTO(int numberOfNeuronsInHiddenLayer, String activationFunction, Updater updater,
-			Evaluation experimentResult) {
-		this.numberOfNeuronsInHiddenLayer = numberOfNeuronsInHiddenLayer;
-		this.activationFunction = activationFunction;
-		this.updater = updater;
-		this.experimentResult = experimentResult;
-	}
-
-	public int getNumberOfNeuronsInHiddenLayer() {
-		return numberOfNeuronsInHiddenLayer;
-	}
-
-	public void setNumberOfNeuronsInHiddenLayer(int numberOfNeuronsInHiddenLayer) {
-		this.numberOfNeuronsInHiddenLayer = numberOfNeuronsInHiddenLayer;
-	}
-
-	public String getActivationFunction() {
-		return activationFunction;
-	}
-
-	public void setActivationFunction(String activationFunction) {
-		this.activationFunction = activationFunction;
-	}
-
-	public Updater getUpdater() {
-		return updater;
-	}
-
-	public void setUpdater(Updater updater) {
-		this.updater = updater;
-	}
-
-	public Evaluation getExperimentResult() {
-		return experimentResult;
-	}
-
-	public void setExperimentResult(Evaluation experimentResult) {
-		this.experimentResult = experimentResult;
-	}
-}
+package io.github.kjrg.mgr.dto;
+
+import java.util.Arrays;
+
+import org.deeplearning4j.eval.Evaluation;
+import org.deeplearning4j.nn.conf.Updater;
+
+/**
+ * A class representing the information about an experiment.
+ * 
+ * @author Krzysztof Gałka
+ */
+public class ExperimentInfoDTO {
+
+	private int numberOfNeuronsInHiddenLayer;
+	private String topology;
+	private long numberOfParameters = -1;
+	private double dropOut;
+	private String activationFunction;
+	private Updater updater;
+	private int numberOfEpochs;
+	private Evaluation experimentResult;
+	private ExperimentMetricsDTO metrics;
+	private CrossValidationStatisticsDTO crossValidationStatistics;
+	private double[] areasUnderRocCurve;
+
+	public String getInformationText() {
+		StringBuilder messageBuilder = new StringBuilder();
+		String lineSeparator = System.lineSeparator();
+
+		messageBuilder.append("Number of neurons in hidden layer: " + numberOfNeuronsInHiddenLayer + lineSeparator);
+		messageBuilder.append("Topology: " + topology
+				+ (numberOfParameters < 0 ? "" : " (" + numberOfParameters + " parameters)") + lineSeparator);
+		if (dropOut > 0) {
+			messageBuilder.append("Dropout: " + dropOut + lineSeparator);
+		}
+		messageBuilder.append("Activation function: " + activationFunction + lineSeparator);
+		messageBuilder.append("Updater: " + updater + lineSeparator);
+		messageBuilder.append("Number of epochs: " + numberOfEpochs + lineSeparator);
+		if (metrics != null) {
+			messageBuilder.append(String.format("Training time: %.1f ms (%.1f ms per epoch, %.1f examples/s)",
+					metrics.getTrainingTimeMillis(), metrics.getEpochTimeMillis(),
+					metrics.getTrainingSamplesPerSecond()) + lineSeparator);
+			messageBuilder.append(String.format("Inference time: %.3f ms (%.3f us per example)",
+					metrics.getInferenceTimeMillis(), metrics.getInferenceLatencyMicros()) + lineSeparator);
+		}
+		if (areasUnderRocCurve != null) {
+			messageBuilder.append(String.format("AUC: %.4f (per class: %s)", getAreaUnderRocCurve(),
+					Arrays.toString(areasUnderRocCurve)) + lineSeparator);
+		}
+		if (crossValidationStatistics != null) {
+			messageBuilder.append(String.format(
+					"Cross-validation (%d folds): F1 %.4f +/- %.4f, accuracy %.4f +/- %.4f",
+					crossValidationStatistics.getNumberOfFolds(), crossValidationStatistics.getMeanF1(),
+					crossValidationStatistics.getStdF1(), crossValidationStatistics.getMeanAccuracy(),
+					crossValidationStatistics.getStdAccuracy()) + lineSeparator);
+		}
+		messageBuilder.append(experimentResult.stats());
+
+		return messageBuilder.toString();
+	}
+
+	public ExperimentInfoDTO(int numberOfNeuronsInHiddenLayer, String activationFunction, Updater updater,
+			int numberOfEpochs, Evaluation experimentResult) {
+		this.numberOfNeuronsInHiddenLayer = numberOfNeuronsInHiddenLayer;
+		this.topology = String.valueOf(numberOfNeuronsInHiddenLayer);
+		this.activationFunction = activationFunction;
+		this.updater = updater;
+		this.numberOfEpochs = numberOfEpochs;
+		this.experimentResult = experimentResult;
+	}
+
+	public ExperimentInfoDTO(int numberOfNeuronsInHiddenLayer, String activationFunction, Updater updater,
+			int numberOfEpochs, Evaluation experimentResult, ExperimentMetricsDTO metrics) {
+		this(numberOfNeuronsInHiddenLayer, activationFunction, updater, numberOfEpochs, experimentResult);
+		this.metrics = metrics;
+	}
+
+	public int getNumberOfNeuronsInHiddenLayer() {
+		return numberOfNeuronsInHiddenLayer;
+	}
+
+	public void setNumberOfNeuronsInHiddenLayer(int numberOfNeuronsInHiddenLayer) {
+		this.numberOfNeuronsInHiddenLayer = numberOfNeuronsInHiddenLayer;
+	}
+
+	/**
+	 * @return topology of the hidden layers (see {@link io.github.kjrg.mgr.Topology}),
+	 *         the number of neurons in the hidden layer by default
+	 */
+	public String getTopology() {
+		return topology;
+	}
+
+	public void setTopology(String topology) {
+		this.topology = topology;
+	}
+
+	/**
+	 * @return number of the weights and the biases of the network, -1 if it
+	 *         is not known
+	 */
+	public long getNumberOfParameters() {
+		return numberOfParameters;
+	}
+
+	public void setNumberOfParameters(long numberOfParameters) {
+		this.numberOfParameters = numberOfParameters;
+	}
+
+	/**
+	 * @return dropout of the hidden layers, 0 if they have no dropout
+	 */
+	public double getDropOut() {
+		return dropOut;
+	}
+
+	public void setDropOut(double dropOut) {
+		this.dropOut = dropOut;
+	}
+
+	public String getActivationFunction() {
+		return activationFunction;
+	}
+
+	public void setActivationFunction(String activationFunction) {
+		this.activationFunction = activationFunction;
+	}
+
+	public Updater getUpdater() {
+		return updater;
+	}
+
+	public void setUpdater(Updater updater) {
+		this.updater = updater;
+	}
+
+	public int getNumberOfEpochs() {
+		return numberOfEpochs;
+	}
+
+	public void setNumberOfEpochs(int numberOfEpochs) {
+		this.numberOfEpochs = numberOfEpochs;
+	}
+
+	public Evaluation getExperimentResult() {
+		return experimentResult;
+	}
+
+	public void setExperimentResult(Evaluation experimentResult) {
+		this.experimentResult = experimentResult;
+	}
+
+	public ExperimentMetricsDTO getMetrics() {
+		return metrics;
+	}
+
+	public void setMetrics(ExperimentMetricsDTO metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @return statistics of the scores over the folds, null if the
+	 *         configuration was not cross-validated
+	 */
+	public CrossValidationStatisticsDTO getCrossValidationStatistics() {
+		return crossValidationStatistics;
+	}
+
+	public void setCrossValidationStatistics(CrossValidationStatisticsDTO crossValidationStatistics) {
+		this.crossValidationStatistics = crossValidationStatistics;
+	}
+
+	/**
+	 * @return area under the ROC curve of every class (against the other
+	 *         classes), null if it was not computed
+	 */
+	public double[] getAreasUnderRocCurve() {
+		return areasUnderRocCurve;
+	}
+
+	public void setAreasUnderRocCurve(double[] areasUnderRocCurve) {
+		this.areasUnderRocCurve = areasUnderRocCurve;
+	}
+
+	/**
+	 * @return mean area under the ROC curve of the classes which have one, NaN
+	 *         if it was not computed
+	 */
+	public double getAreaUnderRocCurve() {
+		if (areasUnderRocCurve == null) {
+			return Double.NaN;
+		}
+		double sum = 0;
+		int numberOfAreas = 0;
+		for (double area : areasUnderRocCurve) {
+			if (!Double.isNaN(area)) {
+				sum += area;
+				numberOfAreas++;
+			}
+		}
+		return numberOfAreas == 0 ? Double.NaN : sum / numberOfAreas;
+	}
+}
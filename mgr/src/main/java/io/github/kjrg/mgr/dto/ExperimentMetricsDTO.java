@@ -0,0 +1,153 @@
+package io.github.kjrg.mgr.dto;
+
+/**
+ * A class representing the time and the resources used by an experiment.
+ *
+ * The heap, the off-heap memory and the GC time are measured for the whole
+ * JVM, so they include the experiments running at the same time on the other
+ * workers. The allocated bytes are counted for the thread of the experiment
+ * only.
+ *
+ * @author Krzysztof Gałka
+ */
+public class ExperimentMetricsDTO {
+
+	private double trainingTimeMillis;
+	private double epochTimeMillis;
+	private double inferenceTimeMillis;
+	private double inferenceLatencyMicros;
+	private double trainingSamplesPerSecond;
+	private long peakHeapBytes;
+	private long peakOffHeapBytes;
+	private long gcTimeMillis;
+	private long allocatedBytes;
+	private String dataType;
+
+	public ExperimentMetricsDTO(double trainingTimeMillis, double epochTimeMillis, double inferenceTimeMillis,
+			double inferenceLatencyMicros, double trainingSamplesPerSecond, long peakHeapBytes,
+			long peakOffHeapBytes, long gcTimeMillis, long allocatedBytes, String dataType) {
+		this.trainingTimeMillis = trainingTimeMillis;
+		this.epochTimeMillis = epochTimeMillis;
+		this.inferenceTimeMillis = inferenceTimeMillis;
+		this.inferenceLatencyMicros = inferenceLatencyMicros;
+		this.trainingSamplesPerSecond = trainingSamplesPerSecond;
+		this.peakHeapBytes = peakHeapBytes;
+		this.peakOffHeapBytes = peakOffHeapBytes;
+		this.gcTimeMillis = gcTimeMillis;
+		this.allocatedBytes = allocatedBytes;
+		this.dataType = dataType;
+	}
+
+	/**
+	 * @return wall-clock time of the training, including the validation
+	 */
+	public double getTrainingTimeMillis() {
+		return trainingTimeMillis;
+	}
+
+	public void setTrainingTimeMillis(double trainingTimeMillis) {
+		this.trainingTimeMillis = trainingTimeMillis;
+	}
+
+	/**
+	 * @return mean wall-clock time of a training epoch
+	 */
+	public double getEpochTimeMillis() {
+		return epochTimeMillis;
+	}
+
+	public void setEpochTimeMillis(double epochTimeMillis) {
+		this.epochTimeMillis = epochTimeMillis;
+	}
+
+	/**
+	 * @return time of computing the output of the network for the whole test
+	 *         dataset
+	 */
+	public double getInferenceTimeMillis() {
+		return inferenceTimeMillis;
+	}
+
+	public void setInferenceTimeMillis(double inferenceTimeMillis) {
+		this.inferenceTimeMillis = inferenceTimeMillis;
+	}
+
+	/**
+	 * @return inference time per example of the test dataset
+	 */
+	public double getInferenceLatencyMicros() {
+		return inferenceLatencyMicros;
+	}
+
+	public void setInferenceLatencyMicros(double inferenceLatencyMicros) {
+		this.inferenceLatencyMicros = inferenceLatencyMicros;
+	}
+
+	/**
+	 * @return number of training examples processed per second
+	 */
+	public double getTrainingSamplesPerSecond() {
+		return trainingSamplesPerSecond;
+	}
+
+	public void setTrainingSamplesPerSecond(double trainingSamplesPerSecond) {
+		this.trainingSamplesPerSecond = trainingSamplesPerSecond;
+	}
+
+	/**
+	 * @return maximal used heap, sampled after every epoch and after the
+	 *         inference
+	 */
+	public long getPeakHeapBytes() {
+		return peakHeapBytes;
+	}
+
+	public void setPeakHeapBytes(long peakHeapBytes) {
+		this.peakHeapBytes = peakHeapBytes;
+	}
+
+	/**
+	 * @return maximal off-heap memory allocated by ND4J, sampled as the heap
+	 */
+	public long getPeakOffHeapBytes() {
+		return peakOffHeapBytes;
+	}
+
+	public void setPeakOffHeapBytes(long peakOffHeapBytes) {
+		this.peakOffHeapBytes = peakOffHeapBytes;
+	}
+
+	/**
+	 * @return time spent in garbage collection during the experiment
+	 */
+	public long getGcTimeMillis() {
+		return gcTimeMillis;
+	}
+
+	public void setGcTimeMillis(long gcTimeMillis) {
+		this.gcTimeMillis = gcTimeMillis;
+	}
+
+	/**
+	 * @return bytes allocated on the heap by the thread of the experiment, -1
+	 *         if not supported by the JVM
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	public void setAllocatedBytes(long allocatedBytes) {
+		this.allocatedBytes = allocatedBytes;
+	}
+
+	/**
+	 * @return data type of the arrays of ND4J (e.g. float), null if not known
+	 */
+	public String getDataType() {
+		return dataType;
+	}
+
+	public void setDataType(String dataType) {
+		this.dataType = dataType;
+	}
+}
@@ -0,0 +1,81 @@
+package io.github.kjrg.mgr.dto;
+
+import org.deeplearning4j.eval.Evaluation;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+
+/**
+ * A class representing the result of a test of a neural network.
+ * 
+ * @author Krzysztof Gałka
+ */
+public class TestResultDTO {
+
+	private Evaluation evaluation;
+	private int numberOfEpochs;
+	private ExperimentMetricsDTO metrics;
+	private MultiLayerNetwork model;
+	private double[] areasUnderRocCurve;
+
+	public TestResultDTO(Evaluation evaluation, int numberOfEpochs) {
+		this(evaluation, numberOfEpochs, null);
+	}
+
+	public TestResultDTO(Evaluation evaluation, int numberOfEpochs, ExperimentMetricsDTO metrics) {
+		this(evaluation, numberOfEpochs, metrics, null);
+	}
+
+	public TestResultDTO(Evaluation evaluation, int numberOfEpochs, ExperimentMetricsDTO metrics,
+			MultiLayerNetwork model) {
+		this.evaluation = evaluation;
+		this.numberOfEpochs = numberOfEpochs;
+		this.metrics = metrics;
+		this.model = model;
+	}
+
+	public Evaluation getEvaluation() {
+		return evaluation;
+	}
+
+	public void setEvaluation(Evaluation evaluation) {
+		this.evaluation = evaluation;
+	}
+
+	public int getNumberOfEpochs() {
+		return numberOfEpochs;
+	}
+
+	public void setNumberOfEpochs(int numberOfEpochs) {
+		this.numberOfEpochs = numberOfEpochs;
+	}
+
+	public ExperimentMetricsDTO getMetrics() {
+		return metrics;
+	}
+
+	public void setMetrics(ExperimentMetricsDTO metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @return the trained network, null if it was not kept
+	 */
+	public MultiLayerNetwork getModel() {
+		return model;
+	}
+
+	public void setModel(MultiLayerNetwork model) {
+		this.model = model;
+	}
+
+	/**
+	 * @return area under the ROC curve of every class (against the other
+	 *         classes), null if it was not computed
+	 */
+	public double[] getAreasUnderRocCurve() {
+		return areasUnderRocCurve;
+	}
+
+	public void setAreasUnderRocCurve(double[] areasUnderRocCurve) {
+		this.areasUnderRocCurve = areasUnderRocCurve;
+	}
+}
@@ -0,0 +1,243 @@
+package io.github.kjrg.mgr.serving;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.deeplearning4j.nn.conf.layers.FeedForwardLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.github.kjrg.mgr.BestModelTracker;
+import io.github.kjrg.mgr.DataTypes;
+import io.github.kjrg.mgr.StandardizationStatistics;
+
+/**
+ * An HTTP server on localhost computing the predictions of the network
+ * exported by the experiments (best_model.directory_path).
+ *
+ * POST /predict - the body contains one example per line, the features are
+ * separated with semicolons as in the dataset files, without the label. The
+ * response contains one line per example: the predicted class and the
+ * probabilities of the classes.
+ *
+ * GET /stats - number of requests, p50 and p99 latency and the mean batch
+ * size, in the JSON format.
+ *
+ * Usage: InferenceServer [configuration_filepath]
+ *
+ * @author Krzysztof Gałka
+ */
+public class InferenceServer {
+
+	private static final String DEFAULT_CONFIGURATION_FILEPATH = "configuration.properties";
+	private static final String SEPARATOR = ";";
+	private static final int STOP_DELAY_IN_SECONDS = 1;
+
+	private final MicroBatchingPredictor predictor;
+	private final int numberOfInputs;
+	private final LatencyStatistics latencyStatistics = new LatencyStatistics();
+	private final ExecutorService executor;
+	private final HttpServer server;
+
+	/**
+	 * Create a server and start it.
+	 *
+	 * @param predictor predictor computing the output of the network
+	 * @param numberOfInputs number of features of an example
+	 * @param port port on localhost
+	 * @param numberOfThreads number of threads handling the requests
+	 * @throws IOException
+	 */
+	public InferenceServer(MicroBatchingPredictor predictor, int numberOfInputs, int port, int numberOfThreads)
+			throws IOException {
+		this.predictor = predictor;
+		this.numberOfInputs = numberOfInputs;
+		this.executor = Executors.newFixedThreadPool(numberOfThreads);
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/predict", this::handlePrediction);
+		server.createContext("/stats", this::handleStatistics);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	public static void main(String[] args) throws IOException {
+		String configurationFilepath = args.length == 0 || args[0].isEmpty() ? DEFAULT_CONFIGURATION_FILEPATH
+				: args[0];
+		Properties properties = new Properties();
+		try (FileInputStream fileInputStream = new FileInputStream(configurationFilepath)) {
+			properties.load(fileInputStream);
+		}
+
+		String modelDirectoryPath = properties.getProperty("best_model.directory_path", "");
+		if (modelDirectoryPath.isEmpty()) {
+			throw new IllegalStateException("The directory of the network (best_model.directory_path) was not provided.");
+		}
+		int port = Integer.parseInt(properties.getProperty("serving.port", "8080"));
+		int maxBatchSize = Integer.parseInt(properties.getProperty("serving.max_batch_size", "64"));
+		long maxWaitMillis = Long.parseLong(properties.getProperty("serving.max_wait_millis", "2"));
+		int numberOfThreads = Integer.parseInt(properties.getProperty("serving.number_of_threads", "16"));
+
+		// The network is used in the data type it was trained in
+		DataTypes.apply(properties.getProperty("data_type", DataTypes.DEFAULT_DATA_TYPE));
+		System.out.println("Loading the network from " + modelDirectoryPath);
+		MultiLayerNetwork model = BestModelTracker.loadModel(modelDirectoryPath);
+		StandardizationStatistics statistics = BestModelTracker.loadStatistics(modelDirectoryPath);
+
+		MicroBatchingPredictor predictor = new MicroBatchingPredictor(model, statistics, maxBatchSize,
+				maxWaitMillis);
+		int numberOfInputs = ((FeedForwardLayer) model.getLayerWiseConfigurations().getConf(0).getLayer()).getNIn();
+		InferenceServer server = new InferenceServer(predictor, numberOfInputs, port, numberOfThreads);
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			server.stop();
+			System.out.println(server.createStatisticsText());
+		}));
+		System.out.println("Serving on http://localhost:" + port + "/predict (batches of up to " + maxBatchSize
+				+ " examples, waiting up to " + maxWaitMillis + " ms)");
+	}
+
+	/**
+	 * Stop the server and the predictor.
+	 */
+	public void stop() {
+		server.stop(STOP_DELAY_IN_SECONDS);
+		executor.shutdown();
+		predictor.close();
+	}
+
+	/**
+	 * @return latencies of the prediction requests
+	 */
+	public LatencyStatistics getLatencyStatistics() {
+		return latencyStatistics;
+	}
+
+	private void handlePrediction(HttpExchange exchange) throws IOException {
+		long startTime = System.nanoTime();
+		try {
+			if (!"POST".equals(exchange.getRequestMethod())) {
+				sendResponse(exchange, 405, "Only POST is supported.");
+				return;
+			}
+
+			INDArray features;
+			try {
+				features = readFeatures(exchange);
+			} catch (IllegalArgumentException e) {
+				sendResponse(exchange, 400, e.getMessage());
+				return;
+			}
+
+			INDArray output;
+			try {
+				output = predictor.predict(features).get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				sendResponse(exchange, 503, "The request was interrupted.");
+				return;
+			} catch (ExecutionException e) {
+				sendResponse(exchange, 500, String.valueOf(e.getCause()));
+				return;
+			}
+
+			sendResponse(exchange, 200, createPredictionText(output));
+			latencyStatistics.record(System.nanoTime() - startTime);
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void handleStatistics(HttpExchange exchange) throws IOException {
+		try {
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			sendResponse(exchange, 200, createStatisticsText());
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private INDArray readFeatures(HttpExchange exchange) throws IOException {
+		List<double[]> rows = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty()) {
+					continue;
+				}
+
+				String[] values = line.split(SEPARATOR);
+				double[] row = new double[values.length];
+				for (int i = 0; i < values.length; i++) {
+					try {
+						row[i] = Double.parseDouble(values[i].trim());
+					} catch (NumberFormatException e) {
+						throw new IllegalArgumentException("The value " + values[i] + " is not a number.");
+					}
+				}
+				if (row.length != numberOfInputs) {
+					throw new IllegalArgumentException(
+							"An example must have " + numberOfInputs + " features, not " + row.length + ".");
+				}
+				rows.add(row);
+			}
+		}
+
+		if (rows.isEmpty()) {
+			throw new IllegalArgumentException("No examples were provided.");
+		}
+		return Nd4j.create(rows.toArray(new double[rows.size()][]));
+	}
+
+	private String createPredictionText(INDArray output) {
+		StringBuilder textBuilder = new StringBuilder();
+		for (int i = 0; i < output.rows(); i++) {
+			int predictedClass = 0;
+			StringBuilder probabilitiesBuilder = new StringBuilder();
+			for (int j = 0; j < output.columns(); j++) {
+				double probability = output.getDouble(i, j);
+				if (probability > output.getDouble(i, predictedClass)) {
+					predictedClass = j;
+				}
+				probabilitiesBuilder.append(SEPARATOR).append(String.format(Locale.ROOT, "%.6f", probability));
+			}
+			textBuilder.append(predictedClass).append(probabilitiesBuilder).append('\n');
+		}
+		return textBuilder.toString();
+	}
+
+	private String createStatisticsText() {
+		return String.format(Locale.ROOT, "{\"requests\":%d,\"p50_ms\":%s,\"p99_ms\":%s,\"mean_batch_size\":%.2f}",
+				latencyStatistics.getNumberOfRequests(), formatMillis(latencyStatistics.getPercentileMillis(50)),
+				formatMillis(latencyStatistics.getPercentileMillis(99)), predictor.getMeanBatchSize());
+	}
+
+	private String formatMillis(double millis) {
+		return Double.isNaN(millis) ? "null" : String.format(Locale.ROOT, "%.3f", millis);
+	}
+
+	private void sendResponse(HttpExchange exchange, int statusCode, String text) throws IOException {
+		byte[] body = text.getBytes(StandardCharsets.UTF_8);
+		exchange.sendResponseHeaders(statusCode, body.length);
+		try (OutputStream outputStream = exchange.getResponseBody()) {
+			outputStream.write(body);
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package io.github.kjrg.mgr.serving;
+
+import java.util.Arrays;
+
+/**
+ * A class collecting the latencies of requests and computing their
+ * percentiles. Only the most recent latencies are kept, so the percentiles
+ * describe the current load.
+ *
+ * @author Krzysztof Gałka
+ */
+public class LatencyStatistics {
+
+	private static final int DEFAULT_WINDOW_SIZE = 1 << 16;
+	private static final double NANOSECONDS_IN_MILLISECOND = 1e6;
+
+	private final long[] latencies;
+	private long numberOfRequests;
+
+	public LatencyStatistics() {
+		this(DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * @param windowSize number of the most recent latencies kept
+	 */
+	public LatencyStatistics(int windowSize) {
+		if (windowSize < 1) {
+			throw new IllegalArgumentException("The window size has to be at least 1.");
+		}
+		this.latencies = new long[windowSize];
+	}
+
+	/**
+	 * Record the latency of a request.
+	 *
+	 * @param latencyNanos latency in nanoseconds
+	 */
+	public synchronized void record(long latencyNanos) {
+		latencies[(int) (numberOfRequests % latencies.length)] = latencyNanos;
+		numberOfRequests++;
+	}
+
+	/**
+	 * @return number of recorded requests, including the ones out of the
+	 *         window
+	 */
+	public synchronized long getNumberOfRequests() {
+		return numberOfRequests;
+	}
+
+	/**
+	 * Compute a percentile of the latencies in the window.
+	 *
+	 * @param percentile percentile, from 0 to 100
+	 * @return the latency in milliseconds, NaN if no request was recorded
+	 */
+	public double getPercentileMillis(double percentile) {
+		long[] window;
+		synchronized (this) {
+			window = Arrays.copyOf(latencies, (int) Math.min(numberOfRequests, latencies.length));
+		}
+		if (window.length == 0) {
+			return Double.NaN;
+		}
+
+		// Nearest-rank percentile
+		Arrays.sort(window);
+		int rank = (int) Math.ceil(percentile / 100.0 * window.length);
+		return window[Math.max(0, Math.min(window.length - 1, rank - 1))] / NANOSECONDS_IN_MILLISECOND;
+	}
+}
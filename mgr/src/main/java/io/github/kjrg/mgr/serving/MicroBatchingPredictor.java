@@ -0,0 +1,186 @@
+package io.github.kjrg.mgr.serving;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import io.github.kjrg.mgr.StandardizationStatistics;
+
+/**
+ * A class computing the predictions of a network for concurrent requests. The
+ * requests waiting at the same time are merged into a single batch, so that
+ * the network is called once for all of them. A batch is computed when it has
+ * reached the maximal size or when its first request has waited for the
+ * maximal time.
+ *
+ * The network is used by a single thread only, because it is not thread-safe.
+ *
+ * @author Krzysztof Gałka
+ */
+public class MicroBatchingPredictor implements Closeable {
+
+	private final MultiLayerNetwork model;
+	private final StandardizationStatistics statistics;
+	private final int maxBatchSize;
+	private final long maxWaitNanos;
+	private final BlockingQueue<PredictionRequest> requests = new LinkedBlockingQueue<>();
+	private final Thread batchingThread;
+	private long numberOfBatches;
+	private long numberOfBatchedExamples;
+	private volatile boolean closed;
+
+	/**
+	 * Create a predictor and start its batching thread.
+	 *
+	 * @param model trained network
+	 * @param statistics statistics used to normalize the features, may be
+	 *            null
+	 * @param maxBatchSize maximal number of examples in a batch
+	 * @param maxWaitMillis maximal time a request waits for other requests
+	 */
+	public MicroBatchingPredictor(MultiLayerNetwork model, StandardizationStatistics statistics, int maxBatchSize,
+			long maxWaitMillis) {
+		if (maxBatchSize < 1) {
+			throw new IllegalArgumentException("The maximal batch size has to be at least 1.");
+		}
+		if (maxWaitMillis < 0) {
+			throw new IllegalArgumentException("The maximal waiting time cannot be negative.");
+		}
+
+		this.model = model;
+		this.statistics = statistics;
+		this.maxBatchSize = maxBatchSize;
+		this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+		this.batchingThread = new Thread(this::processRequests, "micro-batching");
+		this.batchingThread.setDaemon(true);
+		this.batchingThread.start();
+	}
+
+	/**
+	 * Compute the output of the network.
+	 *
+	 * @param features features of the examples, one example per row, not
+	 *            normalized; the array may be modified by the predictor
+	 * @return future of the output of the network (probabilities of the
+	 *         classes), one example per row
+	 */
+	public CompletableFuture<INDArray> predict(INDArray features) {
+		if (closed) {
+			throw new IllegalStateException("The predictor has already been closed.");
+		}
+
+		PredictionRequest request = new PredictionRequest(features);
+		requests.add(request);
+		return request.result;
+	}
+
+	/**
+	 * @return mean number of examples in a batch
+	 */
+	public synchronized double getMeanBatchSize() {
+		return numberOfBatches == 0 ? 0 : (double) numberOfBatchedExamples / numberOfBatches;
+	}
+
+	/**
+	 * Stop the batching thread. The requests which have not been computed yet
+	 * are failed.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		batchingThread.interrupt();
+		try {
+			batchingThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		PredictionRequest request;
+		while ((request = requests.poll()) != null) {
+			request.result.completeExceptionally(new IllegalStateException("The predictor has been closed."));
+		}
+	}
+
+	private void processRequests() {
+		List<PredictionRequest> batch = new ArrayList<>();
+		try {
+			while (!closed) {
+				batch.clear();
+				PredictionRequest firstRequest = requests.take();
+				batch.add(firstRequest);
+				int batchSize = firstRequest.features.rows();
+
+				long deadline = System.nanoTime() + maxWaitNanos;
+				while (batchSize < maxBatchSize) {
+					long remainingTime = deadline - System.nanoTime();
+					PredictionRequest request = remainingTime > 0
+							? requests.poll(remainingTime, TimeUnit.NANOSECONDS)
+							: requests.poll();
+					if (request == null) {
+						break;
+					}
+					batch.add(request);
+					batchSize += request.features.rows();
+				}
+
+				computeBatch(batch, batchSize);
+			}
+		} catch (InterruptedException e) {
+			for (PredictionRequest request : batch) {
+				request.result.completeExceptionally(e);
+			}
+		}
+	}
+
+	private void computeBatch(List<PredictionRequest> batch, int batchSize) {
+		try {
+			INDArray[] featuresOfRequests = new INDArray[batch.size()];
+			for (int i = 0; i < featuresOfRequests.length; i++) {
+				featuresOfRequests[i] = batch.get(i).features;
+			}
+			// The features of the requests are not used after the batch is
+			// computed, so they can be normalized in place
+			INDArray features = Nd4j.vstack(featuresOfRequests);
+			if (statistics != null) {
+				statistics.transform(features);
+			}
+
+			INDArray output = model.output(features, false);
+
+			int row = 0;
+			for (PredictionRequest request : batch) {
+				int rows = request.features.rows();
+				request.result.complete(output.get(NDArrayIndex.interval(row, row + rows), NDArrayIndex.all()));
+				row += rows;
+			}
+		} catch (RuntimeException e) {
+			for (PredictionRequest request : batch) {
+				request.result.completeExceptionally(e);
+			}
+		}
+
+		synchronized (this) {
+			numberOfBatches++;
+			numberOfBatchedExamples += batchSize;
+		}
+	}
+
+	private static class PredictionRequest {
+
+		private final INDArray features;
+		private final CompletableFuture<INDArray> result = new CompletableFuture<>();
+
+		public PredictionRequest(INDArray features) {
+			this.features = features;
+		}
+	}
+}
@@ -0,0 +1,224 @@
+package io.github.kjrg.mgr;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.deeplearning4j.eval.Evaluation;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.Updater;
+import org.deeplearning4j.nn.conf.layers.FeedForwardLayer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import io.github.kjrg.mgr.dto.ExperimentInfoDTO;
+
+/**
+ * Tests of a distributed sweep run by several worker processes (separate
+ * JVMs) sharing a work directory. The workers do not train the networks, the
+ * result of a task is made up from its configuration - its number of neurons
+ * is the position of the task in the grid plus 1.
+ *
+ * @author Krzysztof Gałka
+ */
+public class DistributedSweepTest {
+
+	private static final int NUMBER_OF_TASKS = 12;
+	private static final int NUMBER_OF_WORKERS = 3;
+	private static final int NUMBER_OF_INPUTS = 4;
+	private static final int NUMBER_OF_CLASSES = 2;
+	private static final String FINGERPRINT = "test_sweep";
+	private static final long HEARTBEAT_INTERVAL_MILLIS = 100;
+	private static final long STALE_CLAIM_TIMEOUT_MILLIS = 2000;
+	private static final long PROCESS_TIMEOUT_SECONDS = 120;
+	private static final long POLL_INTERVAL_MILLIS = 50;
+	private static final String RUN_MODE = "run";
+	private static final String ABANDON_MODE = "abandon";
+	private static final Pattern NEURONS_PATTERN = Pattern.compile("\"neurons\":(\\d+)");
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void everyTaskIsClaimedOnceAndTheClaimOfAKilledWorkerIsRequeued() throws Exception {
+		File workDirectory = temporaryFolder.newFolder("work");
+		File logDirectory = temporaryFolder.newFolder("logs");
+		WorkQueue workQueue = new WorkQueue(workDirectory.getPath());
+		assertEquals(NUMBER_OF_TASKS, workQueue.createTasks(createGrid(), FINGERPRINT));
+
+		// A worker claims a task and is killed before it completes the task
+		Process killedWorker = startWorker(ABANDON_MODE, workDirectory, logDirectory, 0);
+		String abandonedTaskName = waitForFirstLine(getClaimLog(logDirectory, 0), killedWorker);
+		killedWorker.destroyForcibly();
+		assertTrue(killedWorker.waitFor(PROCESS_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		assertArrayEquals(new int[] { NUMBER_OF_TASKS - 1, 1, 0 }, workQueue.countTasks());
+
+		// The claim becomes stale, as no heartbeat touches it anymore
+		Thread.sleep(STALE_CLAIM_TIMEOUT_MILLIS + HEARTBEAT_INTERVAL_MILLIS);
+		runWorkers(workDirectory, logDirectory);
+
+		Map<String, Integer> numbersOfClaims = new HashMap<>();
+		for (int worker = 1; worker <= NUMBER_OF_WORKERS; worker++) {
+			for (String taskName : Files.readAllLines(getClaimLog(logDirectory, worker).toPath())) {
+				numbersOfClaims.merge(taskName, 1, Integer::sum);
+			}
+		}
+		assertEquals(NUMBER_OF_TASKS, numbersOfClaims.size());
+		assertEquals(Collections.nCopies(NUMBER_OF_TASKS, 1), new ArrayList<>(numbersOfClaims.values()));
+		assertTrue(numbersOfClaims.containsKey(abandonedTaskName));
+		assertArrayEquals(new int[] { 0, 0, NUMBER_OF_TASKS }, workQueue.countTasks());
+	}
+
+	@Test
+	public void mergeWritesTheResultsInTheOrderOfTheGrid() throws Exception {
+		File workDirectory = temporaryFolder.newFolder("work");
+		File logDirectory = temporaryFolder.newFolder("logs");
+		File reportDirectory = temporaryFolder.newFolder("report");
+		new WorkQueue(workDirectory.getPath()).createTasks(createGrid(), FINGERPRINT);
+		runWorkers(workDirectory, logDirectory);
+
+		Properties properties = new Properties();
+		properties.setProperty("distributed.work_directory_path", workDirectory.getPath());
+		properties.setProperty("data.number_of_labels", String.valueOf(NUMBER_OF_CLASSES));
+		properties.setProperty("report_directory_path", reportDirectory.getPath());
+		properties.setProperty("report.sinks", "jsonl");
+		File configurationFile = temporaryFolder.newFile("configuration.properties");
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(configurationFile),
+				StandardCharsets.UTF_8)) {
+			properties.store(writer, null);
+		}
+		DistributedSweep.main(new String[] { "merge", configurationFile.getPath() });
+
+		File[] reports = reportDirectory.listFiles((directory, name) -> name.endsWith(".jsonl"));
+		assertNotNull(reports);
+		assertEquals(1, reports.length);
+		List<Integer> numbersOfNeurons = new ArrayList<>();
+		for (String line : Files.readAllLines(reports[0].toPath(), StandardCharsets.UTF_8)) {
+			Matcher matcher = NEURONS_PATTERN.matcher(line);
+			assertTrue(line, matcher.find());
+			numbersOfNeurons.add(Integer.parseInt(matcher.group(1)));
+		}
+		List<Integer> expectedNumbersOfNeurons = new ArrayList<>();
+		for (int i = 1; i <= NUMBER_OF_TASKS; i++) {
+			expectedNumbersOfNeurons.add(i);
+		}
+		assertEquals(expectedNumbersOfNeurons, numbersOfNeurons);
+	}
+
+	/*
+	 * The grid has a single hidden layer with 1 to NUMBER_OF_TASKS neurons.
+	 */
+	private static ConfigurationGrid createGrid() {
+		List<Topology> topologies = new ArrayList<>();
+		for (int i = 1; i <= NUMBER_OF_TASKS; i++) {
+			topologies.add(Topology.ofSingleLayer(i));
+		}
+		return new ConfigurationGrid(NUMBER_OF_INPUTS, NUMBER_OF_CLASSES, 123, 1, 0.05, topologies,
+				Arrays.asList("tanh"), Arrays.asList(Updater.SGD), Arrays.asList(0.0));
+	}
+
+	private void runWorkers(File workDirectory, File logDirectory) throws IOException, InterruptedException {
+		List<Process> workers = new ArrayList<>();
+		for (int worker = 1; worker <= NUMBER_OF_WORKERS; worker++) {
+			workers.add(startWorker(RUN_MODE, workDirectory, logDirectory, worker));
+		}
+		for (Process worker : workers) {
+			assertTrue(worker.waitFor(PROCESS_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+			assertEquals(0, worker.exitValue());
+		}
+	}
+
+	private static Process startWorker(String mode, File workDirectory, File logDirectory, int worker)
+			throws IOException {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), Worker.class.getName(), mode,
+				workDirectory.getPath(), getClaimLog(logDirectory, worker).getPath())
+						.redirectErrorStream(true)
+						.redirectOutput(new File(logDirectory, "worker_" + worker + ".out"))
+						.start();
+	}
+
+	private static File getClaimLog(File logDirectory, int worker) {
+		return new File(logDirectory, "worker_" + worker + ".claims");
+	}
+
+	private static String waitForFirstLine(File file, Process process) throws IOException, InterruptedException {
+		long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(PROCESS_TIMEOUT_SECONDS);
+		while (System.currentTimeMillis() < deadline) {
+			if (file.isFile()) {
+				List<String> lines = Files.readAllLines(file.toPath());
+				if (!lines.isEmpty()) {
+					return lines.get(0);
+				}
+			}
+			assertTrue("The worker exited without claiming a task", process.isAlive());
+			Thread.sleep(POLL_INTERVAL_MILLIS);
+		}
+		throw new AssertionError("The worker did not claim a task");
+	}
+
+	/**
+	 * A worker process. In the run mode it claims the tasks until none are
+	 * left and completes them, in the abandon mode it claims a single task
+	 * and waits, without heartbeats, until it is killed. The names of the
+	 * claimed tasks are written to the claim log.
+	 *
+	 * Arguments: mode, work directory, claim log.
+	 */
+	public static class Worker {
+
+		public static void main(String[] args) throws Exception {
+			WorkQueue workQueue = new WorkQueue(args[1]);
+			workQueue.verifyFingerprint(FINGERPRINT);
+
+			try (PrintWriter claimLog = new PrintWriter(new FileWriter(args[2]), true)) {
+				if (ABANDON_MODE.equals(args[0])) {
+					WorkQueue.Task task = workQueue.claim();
+					claimLog.println(task.getName());
+					Thread.sleep(Long.MAX_VALUE);
+				}
+
+				ExperimentInfoCodec codec = new ExperimentInfoCodec(NUMBER_OF_CLASSES);
+				workQueue.startHeartbeat(HEARTBEAT_INTERVAL_MILLIS);
+				try {
+					for (WorkQueue.Task task : workQueue.claimAll(STALE_CLAIM_TIMEOUT_MILLIS)) {
+						claimLog.println(task.getName());
+						workQueue.complete(task, codec.encode(createResult(task.getConfiguration())));
+					}
+				} finally {
+					workQueue.stopHeartbeat();
+				}
+			}
+		}
+
+		private static ExperimentInfoDTO createResult(MultiLayerConfiguration configuration) {
+			Evaluation evaluation = new Evaluation(NUMBER_OF_CLASSES);
+			evaluation.eval(0, 0);
+			evaluation.eval(1, 1);
+			int numberOfNeurons = ((FeedForwardLayer) configuration.getConf(0).getLayer()).getNOut();
+			return new ExperimentInfoDTO(numberOfNeurons, "tanh", Updater.SGD, 1, evaluation);
+		}
+	}
+}